@@ -0,0 +1,71 @@
+package osplus.syncdb2.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zweck
+ * -----
+ * Vergleicht die kanonische Serialisierung über den Streaming-Writer ({@link EnvelopeJson#toCanonicalJson})
+ * mit der bisherigen baumbasierten Variante ({@code ObjectNode} + {@code valueToTree}).
+ * <p>
+ * Hinweise
+ * --------
+ * - {@code params}: Anzahl der Parameter (gemischte Typen, eine verschachtelte Map).
+ * - Start: siehe Profil {@code jmh} in {@code core/pom.xml}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeJsonBenchmark {
+
+    @Param({"4", "32"})
+    public int params;
+
+    private SyncEnvelope envelope;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < params; i++) {
+            switch (i % 4) {
+                case 0 -> values.put("id" + i, 1_000_000L + i);
+                case 1 -> values.put("name" + i, "Kunde " + i);
+                case 2 -> values.put("amount" + i, new BigDecimal("42.50").add(BigDecimal.valueOf(i)));
+                default -> values.put("tags" + i, List.of("a", "b", Map.of("k", i)));
+            }
+        }
+        envelope = new SyncEnvelope("mid-1", "com.company.sqlj.OrderSqlj", "insertOrder", values, "scn-1", 1,
+                "v1", "corr-1", Instant.parse("2025-08-27T10:00:00Z")).withSequence("corr-1", 42);
+    }
+
+    @Benchmark
+    public String streaming() {
+        return EnvelopeJson.toCanonicalJson(envelope);
+    }
+
+    @Benchmark
+    public String tree() {
+        return EnvelopeJson.toCanonicalJsonTree(envelope);
+    }
+}
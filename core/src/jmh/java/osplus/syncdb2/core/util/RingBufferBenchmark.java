@@ -0,0 +1,138 @@
+package osplus.syncdb2.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zweck
+ * -----
+ * Vergleicht die Übergabe Leser → Worker über {@link ShardedRingBuffer} mit je einer begrenzten
+ * {@link LinkedBlockingQueue} pro Worker (gleiche Kapazität, Ende per Poison Pill).
+ * <p>
+ * Hinweise
+ * --------
+ * - Je Aufruf werden {@value #MESSAGES} Einträge vom Benchmark-Thread auf {@code consumers} Worker
+ * verteilt (Round-Robin), die Worker entnehmen in Fenstern von {@value #WINDOW}.
+ * - Start: siehe Profil {@code jmh} in {@code core/pom.xml}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingBufferBenchmark {
+
+    static final int MESSAGES = 100_000;
+    static final int WINDOW = 100;
+    private static final Object POISON = new Object();
+
+    @Param({"1024"})
+    public int capacity;
+
+    @Param({"1", "4"})
+    public int consumers;
+
+    private ExecutorService pool;
+    private ShardedRingBuffer<Object> ring;
+    private Object[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(consumers);
+        ring = new ShardedRingBuffer<>(capacity, consumers);
+        payload = new Object[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            payload[i] = "m" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long ringBuffer() throws Exception {
+        ring.reset();
+        List<Future<Long>> results = new ArrayList<>(consumers);
+        for (int s = 0; s < consumers; s++) {
+            int shard = s;
+            results.add(pool.submit(() -> {
+                List<Object> window = new ArrayList<>(WINDOW);
+                long seen = 0;
+                int n;
+                while ((n = ring.drain(shard, window, WINDOW)) >= 0) {
+                    seen += n;
+                    window.clear();
+                }
+                return seen;
+            }));
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            ring.publish(payload[i], i % consumers);
+        }
+        ring.close();
+        return sum(results);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long linkedBlockingQueue() throws Exception {
+        List<BlockingQueue<Object>> queues = new ArrayList<>(consumers);
+        List<Future<Long>> results = new ArrayList<>(consumers);
+        for (int s = 0; s < consumers; s++) {
+            BlockingQueue<Object> queue = new LinkedBlockingQueue<>(Math.max(1, capacity / consumers));
+            queues.add(queue);
+            results.add(pool.submit(() -> {
+                List<Object> window = new ArrayList<>(WINDOW);
+                long seen = 0;
+                while (true) {
+                    window.add(queue.take());
+                    queue.drainTo(window, WINDOW - 1);
+                    boolean done = window.get(window.size() - 1) == POISON;
+                    seen += done ? window.size() - 1 : window.size();
+                    window.clear();
+                    if (done) return seen;
+                }
+            }));
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            queues.get(i % consumers).put(payload[i]);
+        }
+        for (BlockingQueue<Object> queue : queues) {
+            queue.put(POISON);
+        }
+        return sum(results);
+    }
+
+    private static long sum(List<Future<Long>> results) throws Exception {
+        long total = 0;
+        for (Future<Long> f : results) {
+            total += f.get();
+        }
+        return total;
+    }
+}
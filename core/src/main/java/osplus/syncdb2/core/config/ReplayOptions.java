@@ -0,0 +1,268 @@
+package osplus.syncdb2.core.config;
+
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.ParkingLot;
+import osplus.syncdb2.core.exec.ProcessedMessageCache;
+import osplus.syncdb2.core.exec.ProcessedMessageRetention;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
+import osplus.syncdb2.core.exec.SequenceTracker;
+
+/**
+ * Zweck
+ * -----
+ * Tuning-Optionen für das Replay auf der Secondary-DB
+ * ({@link osplus.syncdb2.core.exec.impl.MqReceiveServiceImpl}).
+ * <p>
+ * Hinweise
+ * --------
+ * - Die Defaults entsprechen dem ursprünglichen Verhalten (ein Envelope je Commit,
+ * AutoCommit der Connection bleibt unangetastet).
+ * - In einer Spring-Boot-Umgebung können die Werte aus den syncdb2-Properties übernommen werden.
+ */
+public class ReplayOptions {
+
+    /**
+     * Anzahl Envelopes je Secondary-Transaktion. Werte &gt; 1 aktivieren den Chunk-Modus:
+     * Adapter-Schreibzugriffe und processed-Marker eines Chunks werden gemeinsam
+     * committet (Marker per JDBC-Batch).
+     */
+    private int chunkSize = 1;
+
+    /**
+     * Chunk-Modus mit Savepoint je Envelope: ein fehlerhaftes Envelope wird per
+     * {@code rollback(Savepoint)} zurückgenommen, der Rest des Chunks bleibt in derselben
+     * Transaktion (statt Chunk-Rollback und Einzelwiederholung).
+     */
+    private boolean savepoints = false;
+
+    /**
+     * Zeitgrenze je Chunk-Transaktion in Millisekunden (nur Savepoint-Modus, 0 = keine):
+     * der Chunk wird nach N Envelopes oder nach T ms committet, je nachdem was zuerst eintritt.
+     */
+    private long chunkMaxMillis = 0;
+
+    /**
+     * Liest den `READ_FROM_MQ`-CLOB als Stream und wendet Envelopes fensterweise an, während
+     * noch dekodiert wird (statt den ganzen Batch als String und Liste zu materialisieren).
+     * Greift nur, wenn eine eigene Apply-Connection (Worker-Connection) vorhanden ist, da auf der
+     * Lese-Connection während des Streamings nicht committet werden darf.
+     */
+    private boolean streamingRead = false;
+
+    /**
+     * Fenstergröße im Streaming-Modus: so viele Envelopes werden dekodiert, gemeinsam auf
+     * Duplikate geprüft und dann angewendet.
+     */
+    private int streamWindowSize = 100;
+
+    /**
+     * Ringpuffer zwischen Dekodierung und Replay im Streaming-Modus (Slots, Zweierpotenz; 0 = aus).
+     * Der lesende Thread dekodiert weiter, während die Worker anwenden; ist der Puffer voll, wartet
+     * er (Backpressure) statt den Heap wachsen zu lassen.
+     */
+    private int ringBufferSize = 0;
+
+    /**
+     * Read-ahead: Anzahl vorab gelesener Batches (0 = aus). Ein eigener Thread ruft `READ_FROM_MQ`
+     * auf der Lese-Connection auf, während der aktuelle Batch auf den Worker-Connections angewendet
+     * wird. Schließt sich mit {@link #streamingRead} aus.
+     */
+    private int prefetchDepth = 0;
+
+    /**
+     * Im Chunk-Modus aufeinanderfolgende Envelopes desselben Adapters (Klasse + Methode) als
+     * einen JDBC-Batch ausführen ({@link osplus.syncdb2.core.exec.SqljAdapter#executeBatch}).
+     * Die Reihenfolge über Adaptergrenzen hinweg bleibt unverändert.
+     */
+    private boolean adapterBatching = false;
+
+    /**
+     * Szenario-Modus: Schritte eines Szenarios ({@code scenarioId} + {@code correlationId}) werden nach
+     * {@code stepIndex} geordnet und gemeinsam in einer Secondary-Transaktion angewendet.
+     */
+    private boolean scenarioTransactions = false;
+
+    /**
+     * Optionaler Cache verarbeiteter Ids vor der DB-Duplikatprüfung ({@code null} = aus).
+     */
+    private ProcessedMessageCache processedCache;
+
+    /**
+     * Replay-Partitionen auf virtuellen Threads statt auf einem festen Plattform-Thread-Pool ausführen.
+     * Im Pool-Betrieb begrenzt dann nur der {@link osplus.syncdb2.core.exec.SecondaryConnectionPool} die
+     * gleichzeitig genutzten Connections, sodass mehr Partitionen als Connections möglich sind.
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * Optionaler Parkplatz für dauerhaft fehlschlagende Envelopes ({@code null} = aus: Fehler werden
+     * nur geloggt). Geparkte Envelopes werden nach {@link RetryPolicy} erneut versucht.
+     */
+    private ParkingLot parkingLot;
+
+    /**
+     * Optionaler Aufbewahrungs-Job für `processed_message` ({@code null} = aus). Dessen Watermark
+     * weist Envelopes ab, deren processed-Marker bereits gelöscht sein können.
+     */
+    private ProcessedMessageRetention retention;
+
+    /**
+     * Optionales Sequenz-Idempotenzmodell ({@code null} = aus): Envelopes mit Partitionssequenz werden
+     * gegen eine Watermark je Partition geprüft statt gegen `processed_message`.
+     */
+    private SequenceTracker sequenceTracker;
+
+    /**
+     * Optionaler AIMD-Regler für die `READ_FROM_MQ`-Batch-Größe ({@code null} = festes {@code maxBatch}
+     * aus dem Konstruktor des Receivers).
+     */
+    private AdaptiveBatchSize adaptiveBatchSize;
+
+    /**
+     * Ziel für Messwerte des Receive-Pfads (Default: verwerfen).
+     */
+    private ReplicationMetrics metrics = ReplicationMetrics.NOOP;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize muss >= 1 sein: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isSavepoints() {
+        return savepoints;
+    }
+
+    public void setSavepoints(boolean savepoints) {
+        this.savepoints = savepoints;
+    }
+
+    public long getChunkMaxMillis() {
+        return chunkMaxMillis;
+    }
+
+    public void setChunkMaxMillis(long chunkMaxMillis) {
+        if (chunkMaxMillis < 0) {
+            throw new IllegalArgumentException("chunkMaxMillis muss >= 0 sein: " + chunkMaxMillis);
+        }
+        this.chunkMaxMillis = chunkMaxMillis;
+    }
+
+    public boolean isStreamingRead() {
+        return streamingRead;
+    }
+
+    public void setStreamingRead(boolean streamingRead) {
+        this.streamingRead = streamingRead;
+    }
+
+    public int getStreamWindowSize() {
+        return streamWindowSize;
+    }
+
+    public void setStreamWindowSize(int streamWindowSize) {
+        if (streamWindowSize < 1) {
+            throw new IllegalArgumentException("streamWindowSize muss >= 1 sein: " + streamWindowSize);
+        }
+        this.streamWindowSize = streamWindowSize;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(int ringBufferSize) {
+        if (ringBufferSize < 0 || (ringBufferSize > 0 && Integer.bitCount(ringBufferSize) != 1)) {
+            throw new IllegalArgumentException("ringBufferSize muss 0 oder eine Zweierpotenz sein: " + ringBufferSize);
+        }
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public void setPrefetchDepth(int prefetchDepth) {
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth muss >= 0 sein: " + prefetchDepth);
+        }
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    public boolean isAdapterBatching() {
+        return adapterBatching;
+    }
+
+    public void setAdapterBatching(boolean adapterBatching) {
+        this.adapterBatching = adapterBatching;
+    }
+
+    public boolean isScenarioTransactions() {
+        return scenarioTransactions;
+    }
+
+    public void setScenarioTransactions(boolean scenarioTransactions) {
+        this.scenarioTransactions = scenarioTransactions;
+    }
+
+    public ProcessedMessageCache getProcessedCache() {
+        return processedCache;
+    }
+
+    public void setProcessedCache(ProcessedMessageCache processedCache) {
+        this.processedCache = processedCache;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public ParkingLot getParkingLot() {
+        return parkingLot;
+    }
+
+    public void setParkingLot(ParkingLot parkingLot) {
+        this.parkingLot = parkingLot;
+    }
+
+    public ProcessedMessageRetention getRetention() {
+        return retention;
+    }
+
+    public void setRetention(ProcessedMessageRetention retention) {
+        this.retention = retention;
+    }
+
+    public SequenceTracker getSequenceTracker() {
+        return sequenceTracker;
+    }
+
+    public void setSequenceTracker(SequenceTracker sequenceTracker) {
+        this.sequenceTracker = sequenceTracker;
+    }
+
+    public AdaptiveBatchSize getAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    public void setAdaptiveBatchSize(AdaptiveBatchSize adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    public ReplicationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(ReplicationMetrics metrics) {
+        this.metrics = metrics != null ? metrics : ReplicationMetrics.NOOP;
+    }
+}
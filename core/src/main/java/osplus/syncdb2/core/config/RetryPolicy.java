@@ -0,0 +1,81 @@
+package osplus.syncdb2.core.config;
+
+import java.time.Duration;
+
+/**
+ * Zweck
+ * -----
+ * Wiederholungsstrategie für geparkte Envelopes
+ * ({@link osplus.syncdb2.core.exec.ParkingLot}): exponentieller Backoff zwischen den Versuchen,
+ * Übergang in den Dead-Letter-Zustand nach {@code maxAttempts} Fehlversuchen.
+ * <p>
+ * Hinweise
+ * --------
+ * - Wartezeit nach dem n-ten Fehlversuch: {@code initialBackoff * multiplier^(n-1)}, begrenzt durch
+ * {@code maxBackoff}.
+ */
+public class RetryPolicy {
+
+    private int maxAttempts = 5;
+    private Duration initialBackoff = Duration.ofSeconds(5);
+    private Duration maxBackoff = Duration.ofMinutes(30);
+    private double multiplier = 2.0;
+
+    /**
+     * @param attempts Anzahl bisheriger Fehlversuche (&gt;= 1)
+     * @return Wartezeit bis zum nächsten Versuch
+     */
+    public Duration backoffAfter(int attempts) {
+        double factor = Math.pow(multiplier, Math.max(0, attempts - 1));
+        double millis = initialBackoff.toMillis() * factor;
+        if (Double.isInfinite(millis) || millis >= maxBackoff.toMillis()) {
+            return maxBackoff;
+        }
+        return Duration.ofMillis((long) millis);
+    }
+
+    /**
+     * @return true, wenn nach {@code attempts} Fehlversuchen nicht mehr wiederholt wird (Dead Letter)
+     */
+    public boolean isExhausted(int attempts) {
+        return attempts >= maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts muss >= 1 sein: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier muss >= 1 sein: " + multiplier);
+        }
+        this.multiplier = multiplier;
+    }
+}
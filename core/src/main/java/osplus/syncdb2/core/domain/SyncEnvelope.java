@@ -17,6 +17,9 @@ import java.util.Map;
  * - `messageId` ist ein Hash über deterministische Felder (z. B. SHA-256), um Idempotenz
  * auf Secondary sicherzustellen (Mehrfache Zustellung führt nicht zu Mehrfachausführung).
  * - Optionale Tracing-Felder (`scenarioId`, `stepIndex`, `correlationId`) erleichtern Beobachtbarkeit.
+ * - Optional `partition` + `sequence`: lückenlos steigende Sequenz je Partition, vergeben auf Primary
+ * ({@link osplus.syncdb2.core.exec.PartitionSequencer}). Secondary kann damit statt je `messageId`
+ * nur eine Watermark je Partition führen ({@link osplus.syncdb2.core.exec.SequenceTracker}).
  * <p>
  * Verwendung (Beispiel)
  * ---------------------
@@ -44,6 +47,32 @@ public record SyncEnvelope(
         Integer stepIndex,        // optional
         String version,           // z. B. "v1"
         String correlationId,
-        Instant createdAt
+        Instant createdAt,
+        String partition,         // optional
+        Long sequence             // optional, nur zusammen mit partition
 ) {
+
+    /**
+     * Envelope ohne Partitionssequenz (ursprüngliche Signatur).
+     */
+    public SyncEnvelope(String messageId, String sqljClassName, String sqljMethodName, Map<String, Object> params,
+                        String scenarioId, Integer stepIndex, String version, String correlationId, Instant createdAt) {
+        this(messageId, sqljClassName, sqljMethodName, params, scenarioId, stepIndex, version, correlationId, createdAt,
+                null, null);
+    }
+
+    /**
+     * @return true, wenn Partition und Sequenz gesetzt sind
+     */
+    public boolean hasSequence() {
+        return partition != null && sequence != null;
+    }
+
+    /**
+     * Kopie mit gesetzter Partitionssequenz.
+     */
+    public SyncEnvelope withSequence(String partition, long sequence) {
+        return new SyncEnvelope(messageId, sqljClassName, sqljMethodName, params, scenarioId, stepIndex, version,
+                correlationId, createdAt, partition, sequence);
+    }
 }
@@ -0,0 +1,130 @@
+package osplus.syncdb2.core.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Zweck
+ * -----
+ * AIMD-Regler für die `READ_FROM_MQ`-Batch-Größe: wächst additiv, solange volle Batches mit einer
+ * Anwendungsdauer je Envelope unter dem Zielwert verarbeitet werden, und schrumpft multiplikativ bei
+ * Verlangsamung oder Fehlern.
+ * <p>
+ * Hinweise
+ * --------
+ * - Wachstum nur nach **vollen** Batches: bei fast leerer Queue gibt es keinen Grund, das Limit zu erhöhen.
+ * - Leere Polls ohne Fehler ändern nichts (kein Messwert).
+ * - Ein Poll mit mindestens einem endgültig fehlgeschlagenen Envelope oder ein technischer Fehler
+ * zählt als Verlangsamung.
+ * - {@link #current()} ist thread-sicher (z. B. für Gauges oder den Read-ahead-Thread).
+ */
+public class AdaptiveBatchSize {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveBatchSize.class);
+
+    private final int min;
+    private final int max;
+    private final int increment;
+    private final double decreaseFactor;
+    private final long targetNanosPerEnvelope;
+    private final AtomicInteger current;
+
+    /**
+     * Mit additivem Schritt {@code max(1, min)} und Halbierung bei Verlangsamung.
+     */
+    public AdaptiveBatchSize(int min, int max, int initial, Duration targetPerEnvelope) {
+        this(min, max, initial, targetPerEnvelope, Math.max(1, min), 0.5);
+    }
+
+    /**
+     * @param min               Untergrenze (&gt;= 1)
+     * @param max               Obergrenze
+     * @param initial           Startwert (wird auf [min, max] begrenzt)
+     * @param targetPerEnvelope Ziel-Anwendungsdauer je Envelope
+     * @param increment         additiver Schritt nach einem vollen, schnellen Batch
+     * @param decreaseFactor    multiplikativer Faktor bei Verlangsamung/Fehler (0 &lt; f &lt; 1)
+     */
+    public AdaptiveBatchSize(int min, int max, int initial, Duration targetPerEnvelope,
+                             int increment, double decreaseFactor) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Ungültige Grenzen: min=" + min + ", max=" + max);
+        }
+        if (increment < 1) {
+            throw new IllegalArgumentException("increment muss >= 1 sein: " + increment);
+        }
+        if (!(decreaseFactor > 0 && decreaseFactor < 1)) {
+            throw new IllegalArgumentException("decreaseFactor muss in (0, 1) liegen: " + decreaseFactor);
+        }
+        this.min = min;
+        this.max = max;
+        this.increment = increment;
+        this.decreaseFactor = decreaseFactor;
+        this.targetNanosPerEnvelope = targetPerEnvelope.toNanos();
+        this.current = new AtomicInteger(Math.max(min, Math.min(max, initial)));
+    }
+
+    /**
+     * Aktuelles Limit für den nächsten `READ_FROM_MQ`-Aufruf.
+     */
+    public int current() {
+        return current.get();
+    }
+
+    /**
+     * Meldet einen abgeschlossenen Poll.
+     *
+     * @param envelopes Anzahl empfangener Envelopes
+     * @param elapsed   Dauer von Lesen und Anwenden
+     * @param failures  Anzahl endgültig fehlgeschlagener Envelopes
+     * @return neues Limit
+     */
+    public int onBatch(int envelopes, Duration elapsed, int failures) {
+        if (failures > 0) {
+            return decrease("Fehler");
+        }
+        if (envelopes <= 0) {
+            return current.get();
+        }
+        if (elapsed.toNanos() / envelopes > targetNanosPerEnvelope) {
+            return decrease("Verlangsamung");
+        }
+        int limit = current.get();
+        if (envelopes < limit) {
+            return limit;
+        }
+        int next = current.updateAndGet(c -> (int) Math.min(max, (long) c + increment));
+        if (next != limit) {
+            log.debug("READ_FROM_MQ-Batch-Größe erhöht: {} -> {}", limit, next);
+        }
+        return next;
+    }
+
+    /**
+     * Meldet einen technischen Fehler (Fehlerstatus oder Exception) des Polls.
+     *
+     * @return neues Limit
+     */
+    public int onError() {
+        return decrease("Poll-Fehler");
+    }
+
+    public int min() {
+        return min;
+    }
+
+    public int max() {
+        return max;
+    }
+
+    private int decrease(String reason) {
+        int before = current.get();
+        int next = current.updateAndGet(c -> Math.max(min, (int) (c * decreaseFactor)));
+        if (next != before) {
+            log.info("READ_FROM_MQ-Batch-Größe reduziert ({}): {} -> {}", reason, before, next);
+        }
+        return next;
+    }
+}
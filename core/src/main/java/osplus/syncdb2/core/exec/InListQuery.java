@@ -0,0 +1,106 @@
+package osplus.syncdb2.core.exec;
+
+import osplus.syncdb2.core.util.MessageIds;
+import osplus.syncdb2.core.util.MessageKey;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Zweck
+ * -----
+ * Gemeinsame Mengenabfrage `SELECT &lt;spalte&gt; ... WHERE &lt;spalte&gt; IN (?, ..., ?)` in Chunks
+ * fester Größe für die Repositories des Receive-Pfads.
+ * <p>
+ * Hinweise
+ * --------
+ * - Der letzte Chunk wird mit der letzten Id aufgefüllt, sodass stets dasselbe SQL verwendet wird
+ * (ein Statement, Plan-Cache-freundlich).
+ * - Binäre Id-Spalten: {@link #selectBinary} bindet die Binärform ({@link MessageIds}) und liefert
+ * die übergebenen Ids in ihrer ursprünglichen Textform zurück. Ids ohne Binärform (z. B. Altbestand,
+ * Großbuchstaben) können dort nicht gespeichert sein und gelten als nicht gefunden.
+ */
+final class InListQuery {
+
+    private final String sql;
+    private final int chunkSize;
+
+    /**
+     * @param selectPrefix SQL bis einschließlich `IN (`, z. B. `SELECT id FROM t WHERE id IN (`
+     * @param chunkSize    Anzahl Platzhalter je Abfrage
+     */
+    InListQuery(String selectPrefix, int chunkSize) {
+        StringBuilder sb = new StringBuilder(selectPrefix);
+        for (int i = 0; i < chunkSize; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        this.sql = sb.append(')').toString();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return Werte der ersten Ergebnisspalte für alle Treffer
+     */
+    Set<String> select(Connection connection, Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) return Set.of();
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        Set<String> found = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < unique.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, unique.size());
+                for (int i = 0; i < chunkSize; i++) {
+                    // Auffüllen mit der letzten Id des Chunks (ändert das Ergebnis nicht)
+                    ps.setString(i + 1, unique.get(Math.min(from + i, to - 1)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Wie {@link #select}, für Spalten mit der Binärform der Ids.
+     *
+     * @return übergebene Ids (Textform), deren Binärform gefunden wurde
+     */
+    Set<String> selectBinary(Connection connection, Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) return Set.of();
+        Map<MessageKey, String> byKey = new HashMap<>();
+        for (String id : ids) {
+            byte[] binary = MessageIds.tryToBinary(id);
+            if (binary != null) byKey.putIfAbsent(MessageKey.ofBinary(binary), id);
+        }
+        if (byKey.isEmpty()) return Set.of();
+        List<MessageKey> unique = new ArrayList<>(byKey.keySet());
+        Set<String> found = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < unique.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, unique.size());
+                for (int i = 0; i < chunkSize; i++) {
+                    ps.setBytes(i + 1, unique.get(Math.min(from + i, to - 1)).bytes());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String id = byKey.get(MessageKey.ofBinary(rs.getBytes(1)));
+                        if (id != null) found.add(id);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+}
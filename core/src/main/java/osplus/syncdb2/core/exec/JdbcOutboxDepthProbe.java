@@ -0,0 +1,62 @@
+package osplus.syncdb2.core.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+/**
+ * Zweck
+ * -----
+ * {@link OutboxDepthProbe} per `SELECT COUNT(*)` über die Outbox-Tabelle (oder eine View, die nur
+ * noch nicht replizierte Einträge enthält) auf der Primary-{@link DataSource}.
+ * <p>
+ * Hinweise
+ * --------
+ * - Je Abfrage wird eine Connection ausgeliehen und sofort zurückgegeben; das Abfrageintervall
+ * bestimmt das Metrik-System.
+ * - Der Tabellenname wird in das SQL eingesetzt und daher auf einen (ggf. schema-qualifizierten)
+ * Bezeichner geprüft.
+ * - Fehler werden geloggt und als {@code -1} gemeldet.
+ */
+public class JdbcOutboxDepthProbe implements OutboxDepthProbe {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcOutboxDepthProbe.class);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final DataSource dataSource;
+    private final String sql;
+
+    public JdbcOutboxDepthProbe(DataSource dataSource) {
+        this(dataSource, "OUTBOX");
+    }
+
+    /**
+     * @param table Outbox-Tabelle oder View, z. B. {@code SYNC.OUTBOX}
+     */
+    public JdbcOutboxDepthProbe(DataSource dataSource, String table) {
+        if (table == null || !IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Ungültiger Tabellenname für die Outbox-Tiefe: " + table);
+        }
+        this.dataSource = dataSource;
+        this.sql = "SELECT COUNT(*) FROM " + table;
+    }
+
+    @Override
+    public long currentDepth() {
+        try (Connection c = dataSource.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            log.warn("Outbox-Tiefe konnte nicht ermittelt werden ({}): {}", sql, e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -18,4 +18,16 @@ public interface MqReceiveService {
      * Führt genau einen Poll-/Verarbeitungszyklus aus (z. B. vom Scheduler aufgerufen).
      */
     void pollOnce();
+
+    /**
+     * Wie {@link #pollOnce()}, liefert aber die Anzahl empfangener Envelopes zurück
+     * (Grundlage für adaptives Polling, siehe {@link osplus.syncdb2.core.exec.impl.ContinuousMqReceiver}).
+     *
+     * @return Anzahl empfangener Envelopes; {@code -1} bei Fehlerstatus oder technischem Fehler.
+     * Der Default ruft {@link #pollOnce()} auf und meldet {@code 0}.
+     */
+    default int pollAndCount() {
+        pollOnce();
+        return 0;
+    }
 }
@@ -2,6 +2,8 @@ package osplus.syncdb2.core.exec;
 
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
+import java.util.List;
+
 /**
  * Zweck
  * -----
@@ -23,4 +25,17 @@ public interface MqSendService {
      * @param envelope Replay-Payload (deterministisch, JSON-serialisierbar)
      */
     void send(SyncEnvelope envelope);
+
+    /**
+     * Übergibt alle Envelopes einer Transaktion in einem `SEND_TO_MQ`-Aufruf (kürzere Transaktion,
+     * kürzere Sperrdauer). Schlägt der Aufruf fehl, gilt keines als gesendet.
+     * Default: {@link #send} je Envelope.
+     *
+     * @param envelopes Replay-Payloads in Sendereihenfolge
+     */
+    default void sendAll(List<SyncEnvelope> envelopes) {
+        for (SyncEnvelope envelope : envelopes) {
+            send(envelope);
+        }
+    }
 }
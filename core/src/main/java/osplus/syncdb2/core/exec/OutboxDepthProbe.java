@@ -0,0 +1,19 @@
+package osplus.syncdb2.core.exec;
+
+/**
+ * Zweck
+ * -----
+ * Liefert die aktuelle Tiefe der Outbox (noch nicht replizierte Envelopes) für Metriken, z. B. per
+ * `SELECT COUNT(*) FROM OUTBOX` oder über die Queue-Tiefe des MQ-Systems.
+ * <p>
+ * Hinweise
+ * --------
+ * - JDBC-Variante: {@link JdbcOutboxDepthProbe}.
+ * - Wird periodisch vom Metrik-System abgefragt; Fehler sollten als negativer Wert gemeldet werden
+ * statt eine Exception zu werfen.
+ */
+@FunctionalInterface
+public interface OutboxDepthProbe {
+
+    long currentDepth();
+}
@@ -0,0 +1,164 @@
+package osplus.syncdb2.core.exec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Zweck
+ * -----
+ * JDBC-Zugriff auf die Parkplatz-Tabelle für fehlgeschlagene Envelopes auf Secondary:
+ * <p>
+ * parked_message(message_id VARCHAR(128) PK, envelope_json CLOB, attempts INT,
+ * next_attempt_at TIMESTAMP, state VARCHAR(8), last_error VARCHAR(1024), parked_at TIMESTAMP)
+ * <p>
+ * Hinweise
+ * --------
+ * - Führt **kein** COMMIT aus; die Transaktionsgrenze liegt beim Aufrufer.
+ * - {@link #park} ist ein portables Upsert (UPDATE, bei 0 Zeilen INSERT).
+ */
+public class ParkedMessageRepository {
+
+    /**
+     * Zustand eines geparkten Envelopes.
+     */
+    public enum State {
+        /**
+         * Wird zu {@code next_attempt_at} erneut versucht.
+         */
+        RETRY,
+        /**
+         * Dead Letter: kein automatischer Versuch mehr, nur per Reinject.
+         */
+        DEAD
+    }
+
+    public record ParkedMessage(String messageId, String envelopeJson, int attempts, Instant nextAttemptAt,
+                                State state, String lastError) {
+    }
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private static final InListQuery SELECT_IN = new InListQuery(
+            "SELECT message_id FROM parked_message WHERE message_id IN (", ProcessedMessageRepository.IN_CHUNK_SIZE);
+
+    private static final String COLUMNS = "message_id, envelope_json, attempts, next_attempt_at, state, last_error";
+
+    public void park(Connection connection, ParkedMessage message) throws SQLException {
+        String error = truncate(message.lastError());
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE parked_message SET envelope_json = ?, attempts = ?, next_attempt_at = ?, state = ?, last_error = ? "
+                        + "WHERE message_id = ?")) {
+            ps.setString(1, message.envelopeJson());
+            ps.setInt(2, message.attempts());
+            ps.setTimestamp(3, Timestamp.from(message.nextAttemptAt()));
+            ps.setString(4, message.state().name());
+            ps.setString(5, error);
+            ps.setString(6, message.messageId());
+            if (ps.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO parked_message(" + COLUMNS + ", parked_at) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, message.messageId());
+            ps.setString(2, message.envelopeJson());
+            ps.setInt(3, message.attempts());
+            ps.setTimestamp(4, Timestamp.from(message.nextAttemptAt()));
+            ps.setString(5, message.state().name());
+            ps.setString(6, error);
+            ps.setTimestamp(7, Timestamp.from(Instant.now()));
+            ps.executeUpdate();
+        }
+    }
+
+    public Optional<ParkedMessage> find(Connection connection, String messageId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM parked_message WHERE message_id = ?")) {
+            ps.setString(1, messageId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Fällige Einträge im Zustand RETRY, älteste Fälligkeit zuerst.
+     */
+    public List<ParkedMessage> findDue(Connection connection, Instant now, int limit) throws SQLException {
+        List<ParkedMessage> due = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM parked_message WHERE state = ? AND next_attempt_at <= ? "
+                        + "ORDER BY next_attempt_at")) {
+            ps.setMaxRows(limit);
+            ps.setString(1, State.RETRY.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    due.add(map(rs));
+                }
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return Teilmenge der Ids, die geparkt sind (beliebiger Zustand)
+     */
+    public Set<String> parkedIds(Connection connection, Collection<String> messageIds) throws SQLException {
+        return SELECT_IN.select(connection, messageIds);
+    }
+
+    public void delete(Connection connection, String messageId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM parked_message WHERE message_id = ?")) {
+            ps.setString(1, messageId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Setzt einen Eintrag auf RETRY mit 0 Versuchen und sofortiger Fälligkeit.
+     *
+     * @return true, wenn der Eintrag existierte
+     */
+    public boolean reinject(Connection connection, String messageId, Instant now) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE parked_message SET state = ?, attempts = 0, next_attempt_at = ? WHERE message_id = ?")) {
+            ps.setString(1, State.RETRY.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setString(3, messageId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Setzt alle Dead-Letter-Einträge zurück auf RETRY.
+     *
+     * @return Anzahl reaktivierter Einträge
+     */
+    public int reinjectDead(Connection connection, Instant now) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE parked_message SET state = ?, attempts = 0, next_attempt_at = ? WHERE state = ?")) {
+            ps.setString(1, State.RETRY.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setString(3, State.DEAD.name());
+            return ps.executeUpdate();
+        }
+    }
+
+    private static ParkedMessage map(ResultSet rs) throws SQLException {
+        return new ParkedMessage(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getTimestamp(4).toInstant(),
+                State.valueOf(rs.getString(5)), rs.getString(6));
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) return error;
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,172 @@
+package osplus.syncdb2.core.exec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import osplus.syncdb2.core.config.RetryPolicy;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.ParkedMessage;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.State;
+import osplus.syncdb2.core.util.EnvelopeJson;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Zweck
+ * -----
+ * Parkplatz für Envelopes, deren Replay auf Secondary dauerhaft fehlschlägt ("Poison Messages").
+ * Geparkte Envelopes verlassen den regulären Receive-Pfad und werden nach {@link RetryPolicy}
+ * mit exponentiellem Backoff erneut versucht; nach {@code maxAttempts} Fehlversuchen landen sie
+ * im Zustand {@link State#DEAD} und werden nur noch per {@link #reinject} reaktiviert.
+ * <p>
+ * Hinweise
+ * --------
+ * - Führt **kein** COMMIT aus; {@link #park} läuft in der Transaktion des Aufrufers.
+ * - Das Envelope wird als kanonisches JSON ({@link EnvelopeJson}) abgelegt; mit überholten Envelopes
+ * (Conflation) als JSON-Array {@code [überholt..., Envelope]}, damit sie mit ihm aufgelöst werden.
+ * - Schritte eines gescheiterten Szenarios erhalten je einen eigenen Eintrag (Redeliveries jedes Schritts
+ * werden übersprungen), der alle Schritte in Schrittfolge enthält ({@link #parkScenarioStep}).
+ */
+public class ParkingLot {
+
+    private final ParkedMessageRepository repository;
+    private final RetryPolicy policy;
+    private final ObjectMapper mapper;
+    private final Clock clock;
+
+    public ParkingLot(ParkedMessageRepository repository, RetryPolicy policy, ObjectMapper mapper) {
+        this(repository, policy, mapper, Clock.systemUTC());
+    }
+
+    public ParkingLot(ParkedMessageRepository repository, RetryPolicy policy, ObjectMapper mapper, Clock clock) {
+        this.repository = repository;
+        this.policy = policy;
+        this.mapper = mapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Parkt ein fehlgeschlagenes Envelope bzw. zählt den Fehlversuch eines bereits geparkten hoch.
+     *
+     * @return der neue Parkplatz-Eintrag (Zustand RETRY oder DEAD)
+     */
+    public ParkedMessage park(Connection connection, SyncEnvelope env, Exception cause) throws SQLException {
+        return park(connection, env, List.of(), cause);
+    }
+
+    /**
+     * Wie {@link #park(Connection, SyncEnvelope, Exception)}; die von {@code env} überholten Envelopes
+     * werden im selben Eintrag abgelegt ({@link #envelopesOf}).
+     */
+    public ParkedMessage park(Connection connection, SyncEnvelope env, List<SyncEnvelope> superseded, Exception cause)
+            throws SQLException {
+        if (superseded.isEmpty()) {
+            return park(connection, env.messageId(), EnvelopeJson.toCanonicalJson(env), cause);
+        }
+        List<SyncEnvelope> all = new ArrayList<>(superseded);
+        all.add(env);
+        return park(connection, env.messageId(), toJsonArray(all), cause);
+    }
+
+    /**
+     * Parkt einen Schritt eines gescheiterten Szenarios unter seiner messageId; der Eintrag enthält alle
+     * {@code steps} (in Schrittfolge), damit das Szenario als Ganzes wiederholt wird.
+     */
+    public ParkedMessage parkScenarioStep(Connection connection, SyncEnvelope step, List<SyncEnvelope> steps,
+                                          Exception cause) throws SQLException {
+        return park(connection, step.messageId(), toJsonArray(steps), cause);
+    }
+
+    private static String toJsonArray(List<SyncEnvelope> envelopes) {
+        StringBuilder json = new StringBuilder("[");
+        for (SyncEnvelope env : envelopes) {
+            if (json.length() > 1) json.append(',');
+            json.append(EnvelopeJson.toCanonicalJson(env));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Zählt einen gescheiterten Wiederholungsversuch für einen geparkten Eintrag.
+     */
+    public ParkedMessage retryFailed(Connection connection, ParkedMessage parked, Exception cause) throws SQLException {
+        return park(connection, parked.messageId(), parked.envelopeJson(), cause);
+    }
+
+    /**
+     * @return Teilmenge der Ids, die geparkt sind; deren Redeliveries werden übersprungen
+     */
+    public Set<String> parkedIds(Connection connection, Collection<String> messageIds) throws SQLException {
+        return repository.parkedIds(connection, messageIds);
+    }
+
+    /**
+     * @return fällige Einträge (RETRY, {@code next_attempt_at} erreicht), höchstens {@code limit}
+     */
+    public List<ParkedMessage> due(Connection connection, int limit) throws SQLException {
+        return repository.findDue(connection, clock.instant(), limit);
+    }
+
+    public SyncEnvelope envelopeOf(ParkedMessage parked) {
+        List<SyncEnvelope> envelopes = envelopesOf(parked);
+        return envelopes.get(envelopes.size() - 1);
+    }
+
+    /**
+     * @return die mitgeparkten überholten Envelopes (in ursprünglicher Reihenfolge), zuletzt das geparkte Envelope;
+     * bei Szenario-Schritten alle Schritte des Szenarios in Schrittfolge
+     */
+    public List<SyncEnvelope> envelopesOf(ParkedMessage parked) {
+        String json = parked.envelopeJson();
+        try {
+            if (json.startsWith("[")) {
+                return mapper.readerForListOf(SyncEnvelope.class).readValue(json);
+            }
+            return List.of(mapper.readValue(json, SyncEnvelope.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Geparktes Envelope nicht lesbar: " + parked.messageId(), e);
+        }
+    }
+
+    /**
+     * Entfernt einen erfolgreich wiederholten Eintrag.
+     */
+    public void resolved(Connection connection, String messageId) throws SQLException {
+        repository.delete(connection, messageId);
+    }
+
+    /**
+     * Reaktiviert einen Eintrag (auch DEAD) mit zurückgesetztem Versuchszähler zur sofortigen Wiederholung.
+     *
+     * @return true, wenn der Eintrag existierte
+     */
+    public boolean reinject(Connection connection, String messageId) throws SQLException {
+        return repository.reinject(connection, messageId, clock.instant());
+    }
+
+    /**
+     * Reaktiviert alle Dead-Letter-Einträge.
+     *
+     * @return Anzahl reaktivierter Einträge
+     */
+    public int reinjectDead(Connection connection) throws SQLException {
+        return repository.reinjectDead(connection, clock.instant());
+    }
+
+    private ParkedMessage park(Connection connection, String messageId, String envelopeJson, Exception cause)
+            throws SQLException {
+        int attempts = repository.find(connection, messageId).map(ParkedMessage::attempts).orElse(0) + 1;
+        Instant now = clock.instant();
+        State state = policy.isExhausted(attempts) ? State.DEAD : State.RETRY;
+        ParkedMessage parked = new ParkedMessage(messageId, envelopeJson, attempts,
+                now.plus(policy.backoffAfter(attempts)), state, String.valueOf(cause.getMessage()));
+        repository.park(connection, parked);
+        return parked;
+    }
+}
@@ -0,0 +1,58 @@
+package osplus.syncdb2.core.exec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+/**
+ * Zweck
+ * -----
+ * Vergibt auf Primary lückenlos steigende Sequenzen je Partition:
+ * <p>
+ * outbox_sequence(partition_key VARCHAR(128) PK, last_sequence BIGINT)
+ * <p>
+ * Hinweise
+ * --------
+ * - Läuft in der Primary-Transaktion (kein COMMIT). Das UPDATE sperrt die Partitionszeile bis zum
+ * Commit: parallele Transaktionen derselben Partition werden serialisiert, Sequenz- und
+ * Commit-Reihenfolge stimmen überein; ein Rollback gibt die Nummer wieder frei (keine Lücke).
+ */
+public class PartitionSequenceRepository {
+
+    /**
+     * @return nächste Sequenz der Partition (beginnend bei 1)
+     */
+    public long next(Connection connection, String partition) throws SQLException {
+        Long next = increment(connection, partition);
+        if (next != null) return next;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO outbox_sequence(partition_key, last_sequence) VALUES (?, 1)")) {
+            ps.setString(1, partition);
+            ps.executeUpdate();
+            return 1L;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Parallel angelegt: jetzt existiert die Zeile
+            next = increment(connection, partition);
+            if (next == null) throw e;
+            return next;
+        }
+    }
+
+    private static Long increment(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE outbox_sequence SET last_sequence = last_sequence + 1 WHERE partition_key = ?")) {
+            ps.setString(1, partition);
+            if (ps.executeUpdate() == 0) return null;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT last_sequence FROM outbox_sequence WHERE partition_key = ?")) {
+            ps.setString(1, partition);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package osplus.syncdb2.core.exec;
+
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Zweck
+ * -----
+ * Stempelt Envelopes auf Primary mit Partition und nächster Partitionssequenz
+ * ({@link PartitionSequenceRepository}), bevor sie an `SEND_TO_MQ` gehen.
+ * <p>
+ * Hinweise
+ * --------
+ * - Default-Partition ist die `correlationId` (wie der Default von {@link SqljAdapter#partitionKey});
+ * ohne `correlationId` die Partition {@value #DEFAULT_PARTITION}.
+ * - Bereits gestempelte Envelopes bleiben unverändert (kein doppeltes Hochzählen).
+ */
+public class PartitionSequencer {
+
+    public static final String DEFAULT_PARTITION = "default";
+
+    private final PartitionSequenceRepository repository;
+    private final Function<SyncEnvelope, String> partitioner;
+
+    public PartitionSequencer(PartitionSequenceRepository repository) {
+        this(repository, env -> env.correlationId() != null ? env.correlationId() : DEFAULT_PARTITION);
+    }
+
+    public PartitionSequencer(PartitionSequenceRepository repository, Function<SyncEnvelope, String> partitioner) {
+        this.repository = repository;
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * @return Envelope mit Partition und Sequenz (innerhalb der Primary-Transaktion vergeben)
+     */
+    public SyncEnvelope stamp(Connection connection, SyncEnvelope envelope) throws SQLException {
+        if (envelope.hasSequence()) return envelope;
+        String partition = partitioner.apply(envelope);
+        return envelope.withSequence(partition, repository.next(connection, partition));
+    }
+}
@@ -0,0 +1,72 @@
+package osplus.syncdb2.core.exec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Zweck
+ * -----
+ * Persistiert auf Secondary die höchste angewendete Sequenz je Partition:
+ * <p>
+ * partition_watermark(partition_key VARCHAR(128) PK, last_sequence BIGINT, updated_at TIMESTAMP)
+ * <p>
+ * Hinweise
+ * --------
+ * - Führt **kein** COMMIT aus; die Watermark wird in derselben Transaktion wie die
+ * Adapter-Schreibzugriffe angehoben (ersetzt dort den processed-Marker).
+ * - {@link #raise} senkt nie ab (nachträglich angewendete Lücken-Envelopes sind unkritisch).
+ */
+public class PartitionWatermarkRepository {
+
+    public OptionalLong find(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT last_sequence FROM partition_watermark WHERE partition_key = ?")) {
+            ps.setString(1, partition);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? OptionalLong.of(rs.getLong(1)) : OptionalLong.empty();
+            }
+        }
+    }
+
+    public Map<String, Long> findAll(Connection connection) throws SQLException {
+        Map<String, Long> all = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT partition_key, last_sequence FROM partition_watermark");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                all.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Hebt die Watermark auf {@code sequence} an, sofern sie darunter liegt (UPDATE, bei 0 Zeilen INSERT).
+     */
+    public void raise(Connection connection, String partition, long sequence) throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE partition_watermark SET last_sequence = CASE WHEN last_sequence < ? THEN ? ELSE last_sequence END, "
+                        + "updated_at = ? WHERE partition_key = ?")) {
+            ps.setLong(1, sequence);
+            ps.setLong(2, sequence);
+            ps.setTimestamp(3, now);
+            ps.setString(4, partition);
+            if (ps.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO partition_watermark(partition_key, last_sequence, updated_at) VALUES (?, ?, ?)")) {
+            ps.setString(1, partition);
+            ps.setLong(2, sequence);
+            ps.setTimestamp(3, now);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package osplus.syncdb2.core.exec;
+
+import osplus.syncdb2.core.util.BloomFilter;
+import osplus.syncdb2.core.util.MessageIds;
+import osplus.syncdb2.core.util.MessageKey;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zweck
+ * -----
+ * In-Memory-Cache kürzlich verarbeiteter `messageId`s vor {@link ProcessedMessageRepository}.
+ * Duplikatprüfungen für Redeliveries und Re-Reads werden damit meist ohne DB-Zugriff beantwortet.
+ * <p>
+ * Hinweise
+ * --------
+ * - Befüllung ausschließlich **nach erfolgreichem Commit** ({@link #recordProcessed(Collection)}):
+ * ein Cache-Treffer bedeutet daher stets "verarbeitet". Ein Fehlschlag bedeutet nur "unbekannt"
+ * und wird gegen die DB geprüft.
+ * - Begrenzung über maximale Größe (FIFO-Verdrängung) und TTL (Prüfung beim Zugriff). Die Warteschlange
+ * merkt sich je Eintrag dessen Ablaufzeit; veraltete Einträge (abgelaufen und erneut aufgenommen) werden
+ * beim Verdrängen übersprungen, sodass stets der älteste gültige Eintrag weicht.
+ * - Optionaler {@link BloomFilter} für sichere Negative ("nie verarbeitet"). Er ist erst nach
+ * {@link #warmUp(ProcessedMessageRepository, Connection)} maßgeblich und setzt voraus, dass nur
+ * dieser Prozess in `processed_message` schreibt (ein Receiver je Secondary).
+ * - Optional kompakte Schlüssel ({@code compactKeys}): Ids in UUID-/Hex-Form werden als {@link MessageKey}
+ * (Binärform) gehalten, andere Ids unverändert als String.
+ */
+public class ProcessedMessageCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final BloomFilter bloom;
+    private volatile boolean bloomWarmed;
+
+    private final boolean compactKeys;
+
+    private final Map<Object, Long> expiries = new ConcurrentHashMap<>();
+    private final Queue<Queued> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+
+    public ProcessedMessageCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, null);
+    }
+
+    /**
+     * @param maxSize maximale Anzahl gecachter Ids
+     * @param ttl     Lebensdauer eines Eintrags
+     * @param bloom   optionaler Bloom-Filter für sichere Negative (oder {@code null})
+     */
+    public ProcessedMessageCache(int maxSize, Duration ttl, BloomFilter bloom) {
+        this(maxSize, ttl, bloom, false);
+    }
+
+    /**
+     * @param compactKeys true: Ids in Binärform halten (weniger Speicher je Eintrag)
+     */
+    public ProcessedMessageCache(int maxSize, Duration ttl, BloomFilter bloom, boolean compactKeys) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize muss >= 1 sein: " + maxSize);
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl muss > 0 sein: " + ttl);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.bloom = bloom;
+        this.compactKeys = compactKeys;
+    }
+
+    /**
+     * @return true, wenn die Id sicher verarbeitet ist (nicht abgelaufener Cache-Eintrag)
+     */
+    public boolean isProcessed(String messageId) {
+        Object key = key(messageId);
+        Long expiry = expiries.get(key);
+        if (expiry == null) return false;
+        if (System.nanoTime() - expiry >= 0) {
+            expiries.remove(key, expiry);
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * @return true, wenn die Id sicher **nicht** verarbeitet ist (nur mit vorgewärmtem Bloom-Filter)
+     */
+    public boolean isDefinitelyNew(String messageId) {
+        if (bloom == null || !bloomWarmed) return false;
+        if (bloom.mightContain(messageId)) return false;
+        bloomNegatives.increment();
+        return true;
+    }
+
+    /**
+     * Übernimmt committete Ids in Cache und Bloom-Filter. Darf nur nach erfolgreichem Commit
+     * aufgerufen werden.
+     */
+    public void recordProcessed(Collection<String> messageIds) {
+        long expiry = System.nanoTime() + ttlNanos;
+        for (String id : messageIds) {
+            if (bloom != null) bloom.add(id);
+            Object key = key(id);
+            Long previous = expiries.put(key, expiry);
+            if (previous == null || previous != expiry) {
+                insertionOrder.add(new Queued(key, expiry));
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Lädt alle vorhandenen Ids aus `processed_message` in den Bloom-Filter; danach sind
+     * Bloom-Negative maßgeblich. Ohne Bloom-Filter ein No-op.
+     */
+    public void warmUp(ProcessedMessageRepository repository, Connection connection) throws SQLException {
+        if (bloom == null) return;
+        repository.forEachId(connection, bloom::add);
+        bloomWarmed = true;
+    }
+
+    public int size() {
+        return expiries.size();
+    }
+
+    /**
+     * Anzahl Duplikatprüfungen, die durch Cache-Treffer beantwortet wurden.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Anzahl Duplikatprüfungen, die durch sichere Bloom-Negative beantwortet wurden.
+     */
+    public long bloomNegativeCount() {
+        return bloomNegatives.sum();
+    }
+
+    private Object key(String messageId) {
+        if (!compactKeys) return messageId;
+        byte[] binary = MessageIds.tryToBinary(messageId);
+        return binary != null ? MessageKey.ofBinary(binary) : messageId;
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        Queued head;
+        while ((head = insertionOrder.peek()) != null) {
+            Long expiry = expiries.get(head.key());
+            boolean live = expiry != null && expiry == head.expiry() && now - expiry < 0;
+            if (live && expiries.size() <= maxSize) break;
+            Queued polled = insertionOrder.poll();
+            if (polled == null) break;
+            // Nur entfernen, wenn der Eintrag noch zu dieser Aufnahme gehört (sonst veraltet)
+            expiries.remove(polled.key(), polled.expiry());
+        }
+    }
+
+    /**
+     * Eintrag der Verdrängungsreihenfolge: Schlüssel mit der Ablaufzeit seiner Aufnahme.
+     */
+    private record Queued(Object key, long expiry) {
+    }
+}
@@ -1,35 +1,217 @@
 package osplus.syncdb2.core.exec;
 
+import osplus.syncdb2.core.util.MessageIds;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Zweck
  * -----
  * Idempotenzkontrolle für empfangene Envelopes auf Secondary: Prüft, ob eine
  * `messageId` bereits verarbeitet wurde und markiert erfolgreiche Verarbeitungen.
+ * <p>
+ * Hinweise
+ * --------
+ * - {@link #existingIds(Connection, Collection)} prüft einen ganzen Batch mit
+ * wenigen `IN`-Abfragen (je {@value #IN_CHUNK_SIZE} Ids) statt einer Abfrage pro Envelope.
+ * Der letzte Chunk wird mit der letzten Id aufgefüllt, sodass stets dasselbe SQL
+ * verwendet wird (ein Statement, Plan-Cache-freundlich; siehe {@link InListQuery}).
+ * - Aufräumen alter Einträge und die zugehörige Watermark (Tabelle
+ * processed_watermark(name VARCHAR(64) PK, watermark TIMESTAMP)) siehe
+ * {@link ProcessedMessageRetention}.
+ * - Binäre Ids ({@link #ProcessedMessageRepository(boolean)}): `message_id` wird in der Binärform
+ * ({@link MessageIds}, 16/32/38 Bytes) gespeichert, z. B.
+ * processed_message(message_id VARBINARY(64) PK, processed_at TIMESTAMP), DB2: VARCHAR(64) FOR BIT DATA.
+ * Index und Vergleiche werden damit etwa halb so groß; an der Schnittstelle bleiben Ids in Textform.
+ * Ids ohne Binärform gelten bei der Prüfung als unbekannt; ihr Markieren scheitert mit
+ * {@link SQLDataException}, sodass nur das betroffene Envelope fehlschlägt (und geparkt wird).
  */
 public class ProcessedMessageRepository {
 
+    /**
+     * Anzahl Platzhalter je `IN`-Liste (deutlich unter üblichen Treiber-/DB-Grenzen).
+     */
+    public static final int IN_CHUNK_SIZE = 100;
+
+    private static final String WATERMARK_NAME = "processed_message";
+
+    private static final InListQuery SELECT_IN = new InListQuery(
+            "SELECT message_id FROM processed_message WHERE message_id IN (", IN_CHUNK_SIZE);
+
+    private final boolean binaryIds;
+
+    /**
+     * Ids als Text (VARCHAR).
+     */
+    public ProcessedMessageRepository() {
+        this(false);
+    }
+
+    /**
+     * @param binaryIds true: `message_id` als Binärform (Ids müssen UUID- oder Hex-Form haben)
+     */
+    public ProcessedMessageRepository(boolean binaryIds) {
+        this.binaryIds = binaryIds;
+    }
+
+    public boolean isBinaryIds() {
+        return binaryIds;
+    }
+
     public boolean exists(Connection connection, String messageId) throws SQLException {
         try (PreparedStatement ps = connection.prepareStatement(
                 "SELECT 1 FROM processed_message WHERE message_id = ?")) {
-            ps.setString(1, messageId);
+            bindId(ps, 1, messageId);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next();
             }
         }
     }
 
+    /**
+     * Liefert die Teilmenge der übergebenen Ids, die bereits als verarbeitet markiert sind.
+     *
+     * @param connection Secondary-Connection
+     * @param messageIds zu prüfende Ids (Duplikate erlaubt)
+     * @return bereits verarbeitete Ids (leer, wenn keine)
+     */
+    public Set<String> existingIds(Connection connection, Collection<String> messageIds) throws SQLException {
+        return binaryIds ? SELECT_IN.selectBinary(connection, messageIds) : SELECT_IN.select(connection, messageIds);
+    }
+
     public void markProcessed(Connection connection, String messageId) throws SQLException {
         try (PreparedStatement ps = connection.prepareStatement(
                 "INSERT INTO processed_message(message_id, processed_at) VALUES (?, ?)")) {
-            ps.setString(1, messageId);
+            bindId(ps, 1, messageId);
             ps.setObject(2, Instant.now());
             ps.executeUpdate();
         }
     }
+
+    /**
+     * Markiert mehrere Ids mit einem Statement per `addBatch/executeBatch`.
+     * Führt **kein** COMMIT aus.
+     */
+    public void markProcessedBatch(Connection connection, Collection<String> messageIds) throws SQLException {
+        if (messageIds.isEmpty()) return;
+        Instant now = Instant.now();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO processed_message(message_id, processed_at) VALUES (?, ?)")) {
+            for (String id : messageIds) {
+                bindId(ps, 1, id);
+                ps.setObject(2, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Liest alle verarbeiteten Ids zeilenweise (z. B. zum Vorwärmen eines {@link ProcessedMessageCache});
+     * bei binären Ids in kanonischer Textform.
+     */
+    public void forEachId(Connection connection, Consumer<String> consumer) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT message_id FROM processed_message")) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(readId(rs, 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Löscht höchstens {@code limit} Einträge mit {@code processed_at < cutoff}.
+     * Führt **kein** COMMIT aus.
+     *
+     * @return Anzahl gelöschter Einträge
+     */
+    public int deleteProcessedBefore(Connection connection, Instant cutoff, int limit) throws SQLException {
+        List<String> ids = new ArrayList<>(limit);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT message_id FROM processed_message WHERE processed_at < ?")) {
+            ps.setMaxRows(limit);
+            ps.setTimestamp(1, Timestamp.from(cutoff));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(readId(rs, 1));
+                }
+            }
+        }
+        if (ids.isEmpty()) return 0;
+        int deleted = 0;
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM processed_message WHERE message_id = ?")) {
+            for (String id : ids) {
+                bindId(ps, 1, id);
+                ps.addBatch();
+            }
+            for (int n : ps.executeBatch()) {
+                deleted += Math.max(n, 0);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Bindet die Id; ohne Binärform als {@link SQLDataException}, damit nur das betroffene Envelope scheitert.
+     */
+    private void bindId(PreparedStatement ps, int index, String messageId) throws SQLException {
+        if (binaryIds) {
+            byte[] binary = MessageIds.tryToBinary(messageId);
+            if (binary == null) {
+                throw new SQLDataException("messageId nicht in kanonischer UUID-/Hex-Form: " + messageId);
+            }
+            ps.setBytes(index, binary);
+        } else {
+            ps.setString(index, messageId);
+        }
+    }
+
+    private String readId(ResultSet rs, int index) throws SQLException {
+        return binaryIds ? MessageIds.fromBinary(rs.getBytes(index)) : rs.getString(index);
+    }
+
+    /**
+     * @return aktuelle Watermark: Envelopes mit {@code createdAt} davor gelten als verarbeitet
+     */
+    public Optional<Instant> findWatermark(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT watermark FROM processed_watermark WHERE name = ?")) {
+            ps.setString(1, WATERMARK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getTimestamp(1).toInstant()) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Setzt die Watermark (UPDATE, bei 0 Zeilen INSERT). Führt **kein** COMMIT aus.
+     */
+    public void saveWatermark(Connection connection, Instant watermark) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE processed_watermark SET watermark = ? WHERE name = ?")) {
+            ps.setTimestamp(1, Timestamp.from(watermark));
+            ps.setString(2, WATERMARK_NAME);
+            if (ps.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO processed_watermark(name, watermark) VALUES (?, ?)")) {
+            ps.setString(1, WATERMARK_NAME);
+            ps.setTimestamp(2, Timestamp.from(watermark));
+            ps.executeUpdate();
+        }
+    }
 }
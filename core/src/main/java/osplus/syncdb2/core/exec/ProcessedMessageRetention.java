@@ -0,0 +1,174 @@
+package osplus.syncdb2.core.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zweck
+ * -----
+ * Aufbewahrungs-Job für `processed_message`: löscht Einträge, die älter als der Horizont sind,
+ * in kleinen, gedrosselten Chunks (je Chunk ein Commit) und hält eine Watermark, damit
+ * Redeliveries älterer Envelopes weiterhin ohne Tabellenzugriff abgewiesen werden.
+ * <p>
+ * Watermark
+ * ---------
+ * - Vor dem ersten Löschen wird die Watermark auf {@code jetzt - horizon} angehoben und committet;
+ * sie steigt nur monoton.
+ * - Envelopes mit {@code createdAt} vor der Watermark gelten als verarbeitet
+ * ({@link #isBeforeWatermark(SyncEnvelope, Connection)}). Der Horizont muss daher deutlich über der
+ * maximalen Replikationsverzögerung (inkl. Uhrenabweichung Primary/Secondary) liegen.
+ * - Im Receiver wird der gecachte Wert genutzt und höchstens alle {@code refreshInterval} aus der DB
+ * nachgeladen. Läuft der Job in einem anderen Prozess, kann der Receiver entsprechend lange eine ältere
+ * Watermark sehen; den Job daher bevorzugt im Receiver-Prozess betreiben.
+ * <p>
+ * Hinweise
+ * --------
+ * - Portables Löschen per Id-Liste (kein DB-spezifisches `DELETE ... FETCH FIRST`).
+ * - Bei zeitpartitionierten Tabellen (z. B. DB2 Range Partitioning) kann das Löschen durch
+ * `DETACH PARTITION` ersetzt werden; die Watermark ist davon unabhängig ({@link #advanceWatermark}).
+ */
+public class ProcessedMessageRetention {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedMessageRetention.class);
+
+    /**
+     * Ergebnis eines Laufs.
+     *
+     * @param cutoff  Grenze (exklusiv) für {@code processed_at}
+     * @param deleted gelöschte Einträge
+     * @param chunks  Anzahl Lösch-Transaktionen
+     */
+    public record Result(Instant cutoff, int deleted, int chunks) {
+    }
+
+    private final ProcessedMessageRepository repository;
+    private final Duration horizon;
+    private final int chunkSize;
+    private final Duration pause;
+    private final Duration refreshInterval;
+    private final Clock clock;
+
+    private volatile Instant watermark;
+    private volatile long refreshedAtNanos;
+    private volatile boolean loaded;
+
+    public ProcessedMessageRetention(ProcessedMessageRepository repository, Duration horizon) {
+        this(repository, horizon, 1000, Duration.ofMillis(50), Duration.ofMinutes(1), Clock.systemUTC());
+    }
+
+    /**
+     * @param horizon         Aufbewahrungsdauer ab {@code processed_at}
+     * @param chunkSize       Einträge je Lösch-Transaktion
+     * @param pause           Pause zwischen zwei Chunks (Drosselung)
+     * @param refreshInterval maximales Alter der gecachten Watermark
+     */
+    public ProcessedMessageRetention(ProcessedMessageRepository repository, Duration horizon, int chunkSize,
+                                     Duration pause, Duration refreshInterval, Clock clock) {
+        if (horizon.isNegative() || horizon.isZero()) {
+            throw new IllegalArgumentException("horizon muss > 0 sein: " + horizon);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize muss >= 1 sein: " + chunkSize);
+        }
+        this.repository = repository;
+        this.horizon = horizon;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.refreshInterval = refreshInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Hebt die Watermark an und löscht anschließend alle Einträge vor dem Horizont.
+     * Die AutoCommit-Einstellung der Connection wird danach wiederhergestellt.
+     */
+    public Result runOnce(Connection connection) throws SQLException {
+        // Auf Millisekunden gekürzt: TIMESTAMP-Präzision variiert je DB, gecachter und gespeicherter Wert sollen gleich sein
+        Instant cutoff = clock.instant().minus(horizon).truncatedTo(ChronoUnit.MILLIS);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        int deleted = 0;
+        int chunks = 0;
+        try {
+            // Erst die Watermark committen, dann löschen: kein Zeitfenster ohne Schutz
+            advanceWatermark(connection, cutoff);
+            connection.commit();
+            int n;
+            do {
+                n = repository.deleteProcessedBefore(connection, cutoff, chunkSize);
+                connection.commit();
+                deleted += n;
+                chunks++;
+            } while (n == chunkSize && pauseBetweenChunks());
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        log.info("processed_message bereinigt: {} Einträge vor {} gelöscht ({} Chunks)", deleted, cutoff, chunks);
+        return new Result(cutoff, deleted, chunks);
+    }
+
+    /**
+     * Setzt die Watermark auf {@code candidate}, sofern sie dadurch steigt. Führt **kein** COMMIT aus.
+     */
+    public void advanceWatermark(Connection connection, Instant candidate) throws SQLException {
+        Instant current = repository.findWatermark(connection).orElse(null);
+        if (current == null || candidate.isAfter(current)) {
+            repository.saveWatermark(connection, candidate);
+            current = candidate;
+        }
+        remember(current);
+    }
+
+    /**
+     * @return true, wenn das Envelope vor der (ggf. nachgeladenen) Watermark erzeugt wurde
+     */
+    public boolean isBeforeWatermark(SyncEnvelope env, Connection connection) throws SQLException {
+        Instant current = watermark(connection);
+        return current != null && env.createdAt() != null && env.createdAt().isBefore(current);
+    }
+
+    /**
+     * Gecachte Watermark; wird nachgeladen, wenn sie älter als {@code refreshInterval} ist.
+     *
+     * @return Watermark oder {@code null}, wenn noch nie bereinigt wurde
+     */
+    public Instant watermark(Connection connection) throws SQLException {
+        if (!loaded || System.nanoTime() - refreshedAtNanos >= refreshInterval.toNanos()) {
+            remember(repository.findWatermark(connection).orElse(null));
+        }
+        return watermark;
+    }
+
+    private void remember(Instant value) {
+        Instant current = watermark;
+        if (current == null || (value != null && value.isAfter(current))) {
+            watermark = value;
+        }
+        refreshedAtNanos = System.nanoTime();
+        loaded = true;
+    }
+
+    private boolean pauseBetweenChunks() {
+        if (pause.isZero()) return true;
+        try {
+            TimeUnit.NANOSECONDS.sleep(pause.toNanos());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Bereinigung von processed_message unterbrochen");
+            return false;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package osplus.syncdb2.core.exec;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.CallableStatement;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Types;
@@ -17,11 +20,16 @@ import java.sql.Types;
  * --------
  * - Diese Methode öffnet **keine** Transaktion; sie läuft außerhalb der Primary-Tx
  * und verwendet eine Secondary-Connection.
+ * - {@link #streamFromMq} liest den CLOB als Zeichenstrom ({@link Clob#getCharacterStream()})
+ * und übergibt ihn an einen Handler, solange das Statement noch offen ist. So muss der
+ * Batch nie vollständig als String im Heap liegen.
  */
 public class ReadFromMqRepository {
 
+    private static final String CALL_SQL = "{ CALL READ_FROM_MQ(?, ?, ?, ?) }";
+
     public Result callReadFromMq(Connection connection, int maxBatch) throws SQLException {
-        try (CallableStatement cs = connection.prepareCall("{ CALL READ_FROM_MQ(?, ?, ?, ?) }")) {
+        try (CallableStatement cs = connection.prepareCall(CALL_SQL)) {
             cs.setInt(1, maxBatch);
             cs.registerOutParameter(2, Types.CLOB);     // je nach Treiber ggf. VARCHAR
             cs.registerOutParameter(3, Types.INTEGER);
@@ -34,6 +42,46 @@ public class ReadFromMqRepository {
         }
     }
 
+    /**
+     * Ruft `READ_FROM_MQ` auf und reicht das Envelopes-Array als {@link Reader} an den Handler.
+     * Der Reader ist nur innerhalb des Handlers gültig (Statement/CLOB werden danach freigegeben).
+     *
+     * @param connection Secondary-Connection (während des Handlers nicht committen)
+     * @param maxBatch   maximale Anzahl Envelopes
+     * @param handler    Verarbeitung von Payload-Stream (ggf. {@code null}), Status und Fehlertext
+     * @return Rückgabewert des Handlers
+     */
+    public <T> T streamFromMq(Connection connection, int maxBatch, PayloadHandler<T> handler) throws SQLException {
+        try (CallableStatement cs = connection.prepareCall(CALL_SQL)) {
+            cs.setInt(1, maxBatch);
+            cs.registerOutParameter(2, Types.CLOB);
+            cs.registerOutParameter(3, Types.INTEGER);
+            cs.registerOutParameter(4, Types.VARCHAR);
+            cs.execute();
+            int status = cs.getInt(3);
+            String err = cs.getString(4);
+            Clob clob = cs.getClob(2);
+            if (clob == null) {
+                return handler.handle(null, status, err);
+            }
+            try (Reader reader = clob.getCharacterStream()) {
+                return handler.handle(reader, status, err);
+            } catch (IOException e) {
+                throw new SQLException("Envelopes-CLOB konnte nicht gelesen werden", e);
+            } finally {
+                clob.free();
+            }
+        }
+    }
+
     public record Result(String envelopesJson, int status, String errorMessage) {
     }
+
+    /**
+     * Callback für {@link #streamFromMq}: erhält den Payload-Stream, solange das Statement offen ist.
+     */
+    @FunctionalInterface
+    public interface PayloadHandler<T> {
+        T handle(Reader envelopesJson, int status, String errorMessage) throws SQLException;
+    }
 }
@@ -0,0 +1,66 @@
+package osplus.syncdb2.core.exec;
+
+import java.time.Duration;
+
+/**
+ * Zweck
+ * -----
+ * Messpunkte der Replikationsstrecke (Senden auf Primary, Lesen und Anwenden auf Secondary).
+ * Implementierungen leiten die Werte an ein Metrik-System weiter (z. B. Micrometer im
+ * spring-support-Modul); {@link #NOOP} verwirft sie.
+ * <p>
+ * Hinweise
+ * --------
+ * - Alle Methoden haben leere Defaults; Implementierungen überschreiben nur, was sie brauchen.
+ * - Aufrufe erfolgen auf dem Hot Path: Implementierungen müssen schnell, nicht blockierend und
+ * thread-sicher sein.
+ * - Raten (Envelopes/s) ergeben sich aus den Zählern im Metrik-Backend.
+ */
+public interface ReplicationMetrics {
+
+    ReplicationMetrics NOOP = new ReplicationMetrics() {
+    };
+
+    /**
+     * Ein Envelope wurde per `SEND_TO_MQ` übergeben (innerhalb der Primary-Transaktion).
+     */
+    default void envelopeSent() {
+    }
+
+    /**
+     * Ein `READ_FROM_MQ`-Aufruf lieferte {@code size} Envelopes in {@code duration}
+     * (im Streaming-Modus inkl. Anwenden).
+     */
+    default void batchRead(int size, Duration duration) {
+    }
+
+    /**
+     * Envelopes wurden auf Secondary angewendet und committet.
+     */
+    default void envelopesApplied(int count) {
+    }
+
+    /**
+     * Ende-zu-Ende-Verzögerung eines Envelopes: {@code createdAt} bis Commit auf Secondary.
+     */
+    default void replicationLag(Duration lag) {
+    }
+
+    /**
+     * Envelopes wurden als Duplikat (bereits verarbeitet, geparkt oder vor der Watermark) übersprungen.
+     */
+    default void duplicatesSkipped(int count) {
+    }
+
+    /**
+     * Überholte Envelopes wurden per Konfliktschlüssel zusammengefasst (nicht ausgeführt, nur markiert).
+     */
+    default void envelopesConflated(int count) {
+    }
+
+    /**
+     * Ein Envelope ist endgültig (nach Einzelwiederholung) fehlgeschlagen.
+     */
+    default void envelopeFailed() {
+    }
+}
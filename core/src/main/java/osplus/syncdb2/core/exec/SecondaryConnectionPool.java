@@ -0,0 +1,236 @@
+package osplus.syncdb2.core.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zweck
+ * -----
+ * Schlanker, begrenzter Connection-Pool über einer Secondary-{@link DataSource} für den
+ * Receive-Pfad. Connections werden je Poll/Chunk/Worker ausgeliehen und zurückgegeben,
+ * statt eine einzige langlebige Connection zu teilen.
+ * <p>
+ * Hinweise
+ * --------
+ * - Obergrenze per {@link Semaphore}; {@link #borrow()} wartet höchstens {@code borrowTimeout}
+ * und wirft danach {@link SQLTransientConnectionException}.
+ * - Validierung beim Ausleihen per {@link Connection#isValid(int)}, sofern die Connection länger als
+ * {@code validationWindow} ungenutzt war; defekte Connections werden geschlossen und ersetzt.
+ * - Aufrufer, die einen Verbindungsfehler beobachtet haben ({@link #isConnectionFailure}), geben die
+ * Connection mit {@code broken=true} zurück; sonst würde sie innerhalb des Validierungsfensters erneut
+ * ungeprüft ausgegeben.
+ * - Bei Rückgabe wird eine offene Transaktion zurückgerollt und AutoCommit (JDBC-Default)
+ * wiederhergestellt.
+ * - Liegt bereits ein Pool (HikariCP o. ä.) vor, kann dessen DataSource übergeben werden;
+ * diese Klasse begrenzt dann nur die Parallelität und liefert die Sättigungswerte.
+ */
+public class SecondaryConnectionPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SecondaryConnectionPool.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long validationWindowNanos;
+    private final Semaphore permits;
+    private final Deque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+
+    public SecondaryConnectionPool(DataSource dataSource, int maxSize) {
+        this(dataSource, maxSize, Duration.ofSeconds(30), Duration.ofMillis(500));
+    }
+
+    /**
+     * @param dataSource       Secondary-DataSource
+     * @param maxSize          maximale Anzahl gleichzeitig ausgeliehener Connections
+     * @param borrowTimeout    maximale Wartezeit in {@link #borrow()}
+     * @param validationWindow Connections, die kürzer ungenutzt waren, werden ohne Validierung ausgegeben
+     */
+    public SecondaryConnectionPool(DataSource dataSource, int maxSize, Duration borrowTimeout, Duration validationWindow) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize muss >= 1 sein: " + maxSize);
+        }
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+        this.validationWindowNanos = validationWindow.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Leiht eine (validierte) Connection aus. Muss mit {@link #release(Connection)} zurückgegeben werden.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("SecondaryConnectionPool ist geschlossen");
+        }
+        if (!permits.tryAcquire()) {
+            waits.increment();
+            long start = System.nanoTime();
+            try {
+                boolean acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+                waitNanos.add(System.nanoTime() - start);
+                if (!acquired) {
+                    timeouts.increment();
+                    throw new SQLTransientConnectionException("Keine Secondary-Connection verfügbar nach "
+                            + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + " ms (maxSize=" + maxSize + ")");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Warten auf Secondary-Connection unterbrochen", e);
+            }
+        }
+        try {
+            Connection c = takeIdle();
+            if (c == null) {
+                c = dataSource.getConnection();
+                created.increment();
+            }
+            active.incrementAndGet();
+            return c;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(Connection connection) {
+        release(connection, false);
+    }
+
+    /**
+     * Gibt eine Connection zurück.
+     *
+     * @param broken true, wenn der Aufrufer die Connection als defekt erkannt hat (wird geschlossen)
+     */
+    public void release(Connection connection, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (broken || closed || connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idle.offerFirst(new Idle(connection, System.nanoTime()));
+        } catch (SQLException e) {
+            log.warn("Secondary-Connection konnte nicht zurückgesetzt werden, wird verworfen: {}", e.getMessage());
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(maxSize, active.get(), idle.size(), waits.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()), timeouts.sum(), created.sum(), replaced.sum());
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Verbindungsfehler (SQLState-Klasse 08 bzw. {@link SQLNonTransientConnectionException}), auch als
+     * Ursache eines anderen Fehlers (z. B. vom Adapter verpackt)?
+     */
+    public static boolean isConnectionFailure(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof SQLNonTransientConnectionException) return true;
+            if (c instanceof SQLException e && e.getSQLState() != null && e.getSQLState().startsWith("08")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Schließt alle ungenutzten Connections; ausgeliehene werden bei Rückgabe geschlossen.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Idle i;
+        while ((i = idle.pollFirst()) != null) {
+            closeQuietly(i.connection());
+        }
+    }
+
+    private Connection takeIdle() {
+        Idle i;
+        while ((i = idle.pollFirst()) != null) {
+            if (System.nanoTime() - i.releasedAt() < validationWindowNanos || isValid(i.connection())) {
+                return i.connection();
+            }
+            log.warn("Defekte Secondary-Connection erkannt, wird ersetzt");
+            discard(i.connection());
+        }
+        return null;
+    }
+
+    private void discard(Connection connection) {
+        replaced.increment();
+        closeQuietly(connection);
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // bereits defekt
+        }
+    }
+
+    private record Idle(Connection connection, long releasedAt) {
+    }
+
+    /**
+     * Momentaufnahme der Pool-Auslastung.
+     *
+     * @param waitCount   Anzahl Ausleihen, die warten mussten
+     * @param waitMillis  summierte Wartezeit
+     * @param timeouts    Ausleihen, die am Timeout gescheitert sind
+     * @param created     neu geöffnete Connections
+     * @param replaced    verworfene (defekte/geschlossene) Connections
+     */
+    public record Stats(int maxSize, int active, int idle, long waitCount, long waitMillis,
+                        long timeouts, long created, long replaced) {
+
+        /**
+         * Anteil ausgeliehener Connections (0..1).
+         */
+        public double saturation() {
+            return (double) active / maxSize;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -13,6 +15,14 @@ import java.util.Optional;
  * -----
  * Führt ein in {@link SyncEnvelope} beschriebenes SQLJ über die Secondary-Connection aus.
  * Dazu wird der passende {@link SqljAdapter} über die Registry aufgelöst.
+ * <p>
+ * Hinweise
+ * --------
+ * - Für paralleles Replay kann die Connection je Aufruf übergeben werden
+ * ({@link #execute(SyncEnvelope, Connection)}); die im Konstruktor übergebene
+ * Connection bleibt der Default.
+ * - {@link #executeBatch(List, Connection)} führt einen Lauf von Envelopes desselben Adapters
+ * über {@link SqljAdapter#executeBatch} aus.
  */
 public class SecondarySqljExecutor {
 
@@ -26,20 +36,80 @@ public class SecondarySqljExecutor {
         this.secondaryConnection = secondaryConnection;
     }
 
+    /**
+     * Ohne gebundene Connection (z. B. mit {@link SecondaryConnectionPool}); nur
+     * {@link #execute(SyncEnvelope, Connection)} ist dann nutzbar.
+     */
+    public SecondarySqljExecutor(SqljRegistry registry) {
+        this(registry, null);
+    }
+
     public void execute(SyncEnvelope env) {
-        Optional<SqljAdapter<?>> opt = registry.findAdapter(env.sqljClassName(), env.sqljMethodName());
-        if (opt.isEmpty()) {
-            throw new IllegalStateException("Kein SqljAdapter registriert für "
-                    + env.sqljClassName() + "#" + env.sqljMethodName());
+        if (secondaryConnection == null) {
+            throw new IllegalStateException("Keine Secondary-Connection gebunden; execute(env, connection) verwenden");
         }
-        SqljAdapter<?> adapter = opt.get();
+        execute(env, secondaryConnection);
+    }
+
+    /**
+     * Führt das Envelope auf der angegebenen Connection aus (z. B. Worker-Connection).
+     */
+    public void execute(SyncEnvelope env, Connection connection) {
+        SqljAdapter<?> adapter = resolve(env);
         @SuppressWarnings("unchecked")
         Map<String, Object> params = env.params();
         try {
-            adapter.execute(secondaryConnection, params);
+            adapter.execute(connection, params);
         } catch (Exception e) {
             log.error("Fehler bei Secondary-SQLJ-Ausführung für messageId={}", env.messageId(), e);
             throw new RuntimeException("Secondary-Ausführung fehlgeschlagen: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Führt mehrere Envelopes **desselben** Adapters als einen Batch auf der angegebenen Connection aus.
+     */
+    public void executeBatch(List<SyncEnvelope> envelopes, Connection connection) {
+        if (envelopes.isEmpty()) return;
+        SyncEnvelope first = envelopes.get(0);
+        SqljAdapter<?> adapter = resolve(first);
+        List<Map<String, Object>> paramsList = new ArrayList<>(envelopes.size());
+        for (SyncEnvelope env : envelopes) {
+            if (!first.sqljClassName().equals(env.sqljClassName()) || !first.sqljMethodName().equals(env.sqljMethodName())) {
+                throw new IllegalArgumentException("Batch enthält unterschiedliche Adapter: "
+                        + first.sqljClassName() + "#" + first.sqljMethodName() + " / "
+                        + env.sqljClassName() + "#" + env.sqljMethodName());
+            }
+            paramsList.add(env.params());
+        }
+        try {
+            adapter.executeBatch(connection, paramsList);
+        } catch (Exception e) {
+            log.error("Fehler bei Secondary-SQLJ-Batch ({} Envelopes ab messageId={})", envelopes.size(), first.messageId(), e);
+            throw new RuntimeException("Secondary-Batch fehlgeschlagen: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Liefert den Partitionsschlüssel des zuständigen Adapters (siehe {@link SqljAdapter#partitionKey}).
+     */
+    public String partitionKey(SyncEnvelope env) {
+        return resolve(env).partitionKey(env);
+    }
+
+    /**
+     * Liefert den Konfliktschlüssel des zuständigen Adapters (siehe {@link SqljAdapter#conflationKey}).
+     */
+    public String conflationKey(SyncEnvelope env) {
+        return resolve(env).conflationKey(env);
+    }
+
+    private SqljAdapter<?> resolve(SyncEnvelope env) {
+        Optional<SqljAdapter<?>> opt = registry.findAdapter(env.sqljClassName(), env.sqljMethodName());
+        if (opt.isEmpty()) {
+            throw new IllegalStateException("Kein SqljAdapter registriert für "
+                    + env.sqljClassName() + "#" + env.sqljMethodName());
+        }
+        return opt.get();
+    }
 }
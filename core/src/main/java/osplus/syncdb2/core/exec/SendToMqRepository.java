@@ -2,6 +2,7 @@ package osplus.syncdb2.core.exec;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Zweck
@@ -40,9 +41,16 @@ public class SendToMqRepository {
         this(new DefaultSqlj());
     }
 
+    /**
+     * Batch-Aufruf über {@link #sqlj}: nur, wenn die Bindung einen echten Batch bietet und
+     * {@link #callSendToMq} nicht von einer Unterklasse ersetzt wurde.
+     */
+    private final boolean sqljBatch;
+
     /** Erlaubt explizite Injektion (z. B. für Tests). */
     public SendToMqRepository(SendToMqSqlj sqlj) {
         this.sqlj = sqlj;
+        this.sqljBatch = sqlj.supportsBatch() && !overridesCallSendToMq();
     }
 
     /**
@@ -58,6 +66,37 @@ public class SendToMqRepository {
         return new Result(r.status(), r.errorMessage());
     }
 
+    /**
+     * Übergibt mehrere Envelopes einer Transaktion.
+     * Bietet die SQLJ-Bindung einen echten Batch ({@link SendToMqSqlj#supportsBatch}), genügt ein Aufruf
+     * von {@link SendToMqSqlj#callSendToMqBatch}; sonst wird {@link #callSendToMq} je Envelope aufgerufen
+     * (auch in Unterklassen, die nur diese Methode überschreiben) und beim ersten Fehlerstatus abgebrochen.
+     *
+     * @param connection    von Spring gebundene TX-Connection (gleiche Transaktion)
+     * @param envelopeJsons JSON-Payloads in Sendereihenfolge
+     * @return Ergebnisobjekt (Status != 0: keines der Envelopes gilt als gesendet)
+     * @throws SQLException Weiterreichen von DB-/SQLJ-Fehlern (Rollback steuert Spring)
+     */
+    public Result callSendToMqBatch(Connection connection, List<String> envelopeJsons) throws SQLException {
+        if (sqljBatch) {
+            SendToMqSqlj.Result r = sqlj.callSendToMqBatch(connection, envelopeJsons);
+            return new Result(r.status(), r.errorMessage());
+        }
+        for (String json : envelopeJsons) {
+            Result r = callSendToMq(connection, json);
+            if (r.status() != 0) return r;
+        }
+        return new Result(0, null);
+    }
+
+    private boolean overridesCallSendToMq() {
+        try {
+            return getClass().getMethod("callSendToMq", Connection.class, String.class)
+                    .getDeclaringClass() != SendToMqRepository.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     /**
      * Default-Implementierung, die **direkt an die generierte SQLJ-Klasse** delegiert.
@@ -83,6 +122,12 @@ public class SendToMqRepository {
             String err = "";//r.getErrorMessage();      // oder r.errorMessage()
             return new Result(status, err);
         }
+
+        // Batch: ohne Batch-Prozedur greift der Default (ein Aufruf je Envelope). Mit einer Prozedur, die
+        // ein JSON-Array annimmt, callSendToMqBatch überschreiben und supportsBatch() auf true setzen, z. B.:
+        //
+        //   var r = SendToMqBatch_Sqlj.callSendToMqBatch(connection, "[" + String.join(",", envelopeJsons) + "]");
+        //   return new Result(r.getStatus(), r.getErrorMessage());
     }
 
     /** Kleines, unveränderliches Ergebnisobjekt für Aufrufer dieses Repositories. */
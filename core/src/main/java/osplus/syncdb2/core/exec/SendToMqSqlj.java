@@ -5,6 +5,7 @@ package osplus.syncdb2.core.exec;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Abstraktes SQLJ-API, das von der generierten Klasse abgebildet wird.
@@ -15,4 +16,26 @@ public interface SendToMqSqlj {
     record Result(int status, String errorMessage) {}
     /** Führt den SQLJ-Call aus. */
     Result callSendToMq(Connection connection, String envelopeJson) throws SQLException;
+
+    /**
+     * Übergibt alle Envelopes einer Transaktion in **einem** Aufruf, z. B. als JSON-Array
+     * ({@code "[" + String.join(",", envelopeJsons) + "]"}) an eine Batch-Prozedur oder als JDBC-Batch.
+     * Default: {@link #callSendToMq} je Envelope, Abbruch beim ersten Fehlerstatus.
+     * Wer diese Methode mit einem echten Batch-Aufruf überschreibt, meldet das über {@link #supportsBatch}.
+     */
+    default Result callSendToMqBatch(Connection connection, List<String> envelopeJsons) throws SQLException {
+        for (String json : envelopeJsons) {
+            Result r = callSendToMq(connection, json);
+            if (r.status() != 0) return r;
+        }
+        return new Result(0, null);
+    }
+
+    /**
+     * {@code true}, wenn {@link #callSendToMqBatch} einen echten Batch-Aufruf ausführt; sonst ruft
+     * {@link SendToMqRepository} {@link SendToMqRepository#callSendToMq} je Envelope auf.
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
 }
@@ -0,0 +1,171 @@
+package osplus.syncdb2.core.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zweck
+ * -----
+ * Alternatives Idempotenzmodell für Envelopes mit Partitionssequenz ({@link SyncEnvelope#hasSequence()}):
+ * statt eines `processed_message`-Eintrags je `messageId` wird nur die höchste angewendete Sequenz je
+ * Partition geführt ({@link PartitionWatermarkRepository}). Die Duplikatprüfung ist ein Vergleich im
+ * Speicher.
+ * <p>
+ * Lückenerkennung
+ * ---------------
+ * - Wird eine Sequenz größer als {@code watermark + 1} committet, wird die fehlende Spanne als
+ * {@link Gap} gemeldet (WARN-Log, {@link #openGaps()}, {@link #gapCount()}).
+ * - Sequenzen innerhalb einer offenen Lücke gelten **nicht** als Duplikat; trifft ein fehlendes Envelope
+ * später ein (z. B. Redelivery), wird es angewendet und die Lücke geschlossen.
+ * - Offene Lücken werden nur im Speicher geführt; nach einem Neustart gelten sie als abgeschlossen.
+ * Gemeldete Lücken müssen daher betrieblich geprüft werden.
+ * <p>
+ * Hinweise
+ * --------
+ * - Watermarks werden je Partition beim ersten Zugriff aus der DB geladen (oder per {@link #warmUp}).
+ * - Voraussetzung: ein Receiver je Secondary und Replay einer Partition in Reihenfolge (gleicher Worker).
+ * - Zustände sind unveränderlich und werden per {@link ConcurrentHashMap#compute} ersetzt.
+ */
+public class SequenceTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(SequenceTracker.class);
+
+    /**
+     * Fehlende Sequenzen {@code fromSequence..toSequence} (inklusive) einer Partition.
+     */
+    public record Gap(String partition, long fromSequence, long toSequence, Instant detectedAt) {
+    }
+
+    private record State(long watermark, List<Gap> gaps) {
+    }
+
+    private final PartitionWatermarkRepository repository;
+    private final Map<String, State> partitions = new ConcurrentHashMap<>();
+    private final LongAdder gapsDetected = new LongAdder();
+
+    public SequenceTracker(PartitionWatermarkRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Lädt alle gespeicherten Watermarks.
+     */
+    public void warmUp(Connection connection) throws SQLException {
+        repository.findAll(connection).forEach((p, w) -> partitions.putIfAbsent(p, new State(w, List.of())));
+    }
+
+    /**
+     * @return true, wenn die Sequenz bereits angewendet wurde (kleiner/gleich Watermark, nicht in offener Lücke)
+     */
+    public boolean isDuplicate(Connection connection, SyncEnvelope env) throws SQLException {
+        State state = load(connection, env.partition());
+        long seq = env.sequence();
+        return seq <= state.watermark() && !inGap(state, seq);
+    }
+
+    /**
+     * Hebt die gespeicherten Watermarks der angewendeten Envelopes an (je Partition das Maximum).
+     * Führt **kein** COMMIT aus; nach dem Commit ist {@link #committed(List)} aufzurufen.
+     */
+    public void markApplied(Connection connection, List<SyncEnvelope> applied) throws SQLException {
+        Map<String, Long> max = new LinkedHashMap<>();
+        for (SyncEnvelope env : applied) {
+            if (env.hasSequence()) max.merge(env.partition(), env.sequence(), Math::max);
+        }
+        for (Map.Entry<String, Long> e : max.entrySet()) {
+            load(connection, e.getKey());
+            repository.raise(connection, e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Übernimmt committete Sequenzen in den Speicher und meldet dabei erkannte Lücken.
+     */
+    public void committed(List<SyncEnvelope> applied) {
+        for (SyncEnvelope env : applied) {
+            if (!env.hasSequence()) continue;
+            partitions.compute(env.partition(), (p, state) -> advance(p, state, env.sequence()));
+        }
+    }
+
+    public OptionalLong watermark(String partition) {
+        State state = partitions.get(partition);
+        return state == null ? OptionalLong.empty() : OptionalLong.of(state.watermark());
+    }
+
+    /**
+     * @return aktuell offene Lücken aller Partitionen
+     */
+    public List<Gap> openGaps() {
+        List<Gap> all = new ArrayList<>();
+        for (State state : partitions.values()) {
+            all.addAll(state.gaps());
+        }
+        return all;
+    }
+
+    /**
+     * Anzahl seit Start erkannter Lücken.
+     */
+    public long gapCount() {
+        return gapsDetected.sum();
+    }
+
+    private State load(Connection connection, String partition) throws SQLException {
+        State state = partitions.get(partition);
+        if (state != null) return state;
+        long watermark = repository.find(connection, partition).orElse(0L);
+        State loaded = partitions.putIfAbsent(partition, new State(watermark, List.of()));
+        return loaded != null ? loaded : partitions.get(partition);
+    }
+
+    private State advance(String partition, State state, long seq) {
+        if (state == null) {
+            // Nur möglich ohne vorheriges markApplied; Watermark übernehmen, keine Lückenprüfung
+            return new State(seq, List.of());
+        }
+        if (seq > state.watermark()) {
+            List<Gap> gaps = state.gaps();
+            if (seq > state.watermark() + 1) {
+                Gap gap = new Gap(partition, state.watermark() + 1, seq - 1, Instant.now());
+                gapsDetected.increment();
+                log.warn("Sequenzlücke in Partition {}: {}..{} fehlen", partition, gap.fromSequence(), gap.toSequence());
+                gaps = new ArrayList<>(gaps);
+                gaps.add(gap);
+            }
+            return new State(seq, List.copyOf(gaps));
+        }
+        if (!inGap(state, seq)) return state;
+        // Nachzügler aus einer offenen Lücke: Lücke verkleinern bzw. teilen
+        List<Gap> gaps = new ArrayList<>(state.gaps().size() + 1);
+        for (Gap g : state.gaps()) {
+            if (seq < g.fromSequence() || seq > g.toSequence()) {
+                gaps.add(g);
+                continue;
+            }
+            if (g.fromSequence() < seq) gaps.add(new Gap(partition, g.fromSequence(), seq - 1, g.detectedAt()));
+            if (seq < g.toSequence()) gaps.add(new Gap(partition, seq + 1, g.toSequence(), g.detectedAt()));
+        }
+        log.info("Sequenzlücke in Partition {} teilweise geschlossen (sequence={})", partition, seq);
+        return new State(state.watermark(), List.copyOf(gaps));
+    }
+
+    private static boolean inGap(State state, long seq) {
+        for (Gap g : state.gaps()) {
+            if (seq >= g.fromSequence() && seq <= g.toSequence()) return true;
+        }
+        return false;
+    }
+}
@@ -1,7 +1,10 @@
 package osplus.syncdb2.core.exec;
 
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -56,6 +59,40 @@ public interface SqljAdapter<R> {
         return raw;
     }
 
+    /**
+     * Optional: Partitionsschlüssel für das parallele Replay auf der Secondary-DB.
+     * Envelopes mit gleichem Schlüssel werden in Eingangsreihenfolge nacheinander
+     * ausgeführt; unterschiedliche Schlüssel dürfen parallel laufen.
+     * <p>
+     * Default: {@code correlationId}, ersatzweise {@code messageId} (ohne Korrelation
+     * besteht keine fachliche Reihenfolgeanforderung).
+     *
+     * @param envelope zu replayendes Envelope
+     * @return Partitionsschlüssel (nie {@code null})
+     */
+    default String partitionKey(SyncEnvelope envelope) {
+        return envelope.correlationId() != null ? envelope.correlationId() : envelope.messageId();
+    }
+
+    /**
+     * Optional: Konfliktschlüssel für "last write wins" beim Replay. Envelopes dieses Adapters mit
+     * gleichem Schlüssel (z. B. Primärschlüssel der Zielzeile) innerhalb einer Partition eines Batches
+     * werden zusammengefasst: nur das letzte wird ausgeführt, die überholten werden mit ihm als
+     * verarbeitet markiert.
+     * <p>
+     * Nur für Aufrufe geeignet, die den Zielzustand vollständig überschreiben (z. B. UPDATE aller
+     * Spalten einer Zeile), und nur, wenn der Partitionsschlüssel Envelopes mit gleichem
+     * Konfliktschlüssel derselben Partition zuordnet.
+     * <p>
+     * Default: {@code null} (keine Zusammenfassung).
+     *
+     * @param envelope zu replayendes Envelope
+     * @return Konfliktschlüssel oder {@code null}
+     */
+    default String conflationKey(SyncEnvelope envelope) {
+        return null;
+    }
+
     /**
      * Führt die angegebene SQLJ-Methode gegen die bereitgestellte JDBC-Connection aus.
      *
@@ -65,4 +102,22 @@ public interface SqljAdapter<R> {
      * @throws SQLException bei Datenbankfehlern
      */
     R execute(Connection connection, Map<String, Object> params) throws SQLException;
+
+    /**
+     * Optional: Führt mehrere Aufrufe derselben Methode als **einen** JDBC-Batch aus
+     * (z. B. {@code PreparedStatement#addBatch}/{@code executeBatch}). Wird beim Replay für
+     * aufeinanderfolgende Envelopes desselben Adapters genutzt.
+     * <p>
+     * Default: ruft {@link #execute} der Reihe nach auf. Schlägt der Batch fehl, ist nicht
+     * bekannt, welcher Eintrag betroffen war; der Aufrufer muss die Transaktion zurückrollen.
+     *
+     * @param connection JDBC-Connection
+     * @param paramsList Eingabeparameter je Aufruf, in Ausführungsreihenfolge
+     * @throws SQLException bei Datenbankfehlern
+     */
+    default void executeBatch(Connection connection, List<Map<String, Object>> paramsList) throws SQLException {
+        for (Map<String, Object> params : paramsList) {
+            execute(connection, params);
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package osplus.syncdb2.core.exec.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.MqReceiveService;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Zweck
+ * -----
+ * Kontinuierlicher Empfänger auf Basis von {@link MqReceiveService#pollAndCount()} als Alternative
+ * zum Fixed-Delay-Scheduling: Solange Batches **voll** zurückkommen, wird sofort erneut gepollt
+ * (Drain-Modus). Bei kurzen Batches wird die minimale Wartezeit eingehalten, bei leeren Batches
+ * oder Fehlern wächst die Wartezeit exponentiell bis zum Maximum (jeweils mit Jitter).
+ * <p>
+ * Hinweise
+ * --------
+ * - Ein eigener (Daemon-)Thread `syncdb2-receiver`; {@link #start()} / {@link #stop(Duration)}.
+ * - Drain beim Herunterfahren: nach {@link #stop(Duration)} wird ohne Wartezeit weiter gepollt,
+ * bis ein Batch nicht mehr voll ist oder das Drain-Timeout abläuft. Ein laufender Poll wird nie
+ * unterbrochen.
+ * - Jitter ("equal jitter"): gewartet wird zwischen der Hälfte und dem vollen Backoff-Wert, damit
+ * mehrere Instanzen die Secondary nicht im Gleichtakt abfragen.
+ * - Mit {@link AdaptiveBatchSize} gilt ein Batch als "voll", wenn er das aktuelle Limit des Reglers erreicht.
+ */
+public class ContinuousMqReceiver implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ContinuousMqReceiver.class);
+
+    /**
+     * Default-Drain-Timeout für {@link #close()}.
+     */
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final MqReceiveService service;
+    private final IntSupplier maxBatch;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Duration drainTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+    private Thread worker;
+    private volatile boolean running;
+    private volatile long drainDeadline;
+
+    /**
+     * @param service    Receive-Service (z. B. {@link MqReceiveServiceImpl})
+     * @param maxBatch   Batch-Größe des Service; ein Poll mit genau so vielen Envelopes gilt als "voll"
+     * @param minBackoff Wartezeit nach kurzem Batch bzw. Startwert des exponentiellen Backoffs
+     * @param maxBackoff Obergrenze des Backoffs (entspricht in etwa dem bisherigen fixed-delay)
+     */
+    public ContinuousMqReceiver(MqReceiveService service, int maxBatch, Duration minBackoff, Duration maxBackoff) {
+        this(service, maxBatch, minBackoff, maxBackoff, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * @param drainTimeout Drain-Timeout für {@link #close()}
+     */
+    public ContinuousMqReceiver(MqReceiveService service, int maxBatch, Duration minBackoff, Duration maxBackoff,
+                                Duration drainTimeout) {
+        this(service, fixed(maxBatch), minBackoff, maxBackoff, drainTimeout);
+    }
+
+    /**
+     * Variante für einen Receiver mit {@link AdaptiveBatchSize} (derselbe Regler wie in dessen ReplayOptions).
+     */
+    public ContinuousMqReceiver(MqReceiveService service, AdaptiveBatchSize batchSize, Duration minBackoff,
+                                Duration maxBackoff, Duration drainTimeout) {
+        this(service, (IntSupplier) batchSize::current, minBackoff, maxBackoff, drainTimeout);
+    }
+
+    private ContinuousMqReceiver(MqReceiveService service, IntSupplier maxBatch, Duration minBackoff,
+                                 Duration maxBackoff, Duration drainTimeout) {
+        if (minBackoff.isNegative() || maxBackoff.compareTo(minBackoff) < 0) {
+            throw new IllegalArgumentException("Ungültiger Backoff: min=" + minBackoff + ", max=" + maxBackoff);
+        }
+        this.service = service;
+        this.maxBatch = maxBatch;
+        this.minBackoffNanos = minBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Startet den Empfangs-Thread (idempotent).
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (worker != null) return;
+            running = true;
+            worker = new Thread(this::run, "syncdb2-receiver");
+            worker.setDaemon(true);
+            worker.start();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Kontinuierlicher Empfang gestartet (maxBatch={}, backoff={}..{} ms)", maxBatch.getAsInt(),
+                TimeUnit.NANOSECONDS.toMillis(minBackoffNanos), TimeUnit.NANOSECONDS.toMillis(maxBackoffNanos));
+    }
+
+    /**
+     * Stoppt den Empfang: volle Batches werden noch bis {@code drainTimeout} abgearbeitet,
+     * danach wird auf das Ende des Threads gewartet.
+     */
+    public void stop(Duration drainTimeout) throws InterruptedException {
+        Thread t;
+        lock.lock();
+        try {
+            t = worker;
+            if (t == null) return;
+            drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+            running = false;
+            wakeUp.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        t.join();
+        lock.lock();
+        try {
+            worker = null;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Kontinuierlicher Empfang gestoppt");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stop(drainTimeout);
+    }
+
+    private void run() {
+        long backoff = minBackoffNanos;
+        while (running) {
+            // Limit vor dem Poll: ein Regler passt es danach bereits an
+            int limit = maxBatch.getAsInt();
+            int received = pollSafely();
+            if (received >= limit) {
+                backoff = minBackoffNanos;
+                continue;
+            }
+            if (received > 0) {
+                backoff = minBackoffNanos;
+                await(jitter(minBackoffNanos));
+            } else {
+                await(jitter(backoff));
+                backoff = Math.min(maxBackoffNanos, Math.max(1, backoff) * 2);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Nach stop(): so lange ohne Pause pollen, wie volle Batches kommen (begrenzt durch das Drain-Timeout).
+     */
+    private void drain() {
+        int drained = 0;
+        while (System.nanoTime() - drainDeadline < 0) {
+            int limit = maxBatch.getAsInt();
+            int received = pollSafely();
+            if (received > 0) drained += received;
+            if (received < limit) break;
+        }
+        log.info("Drain beendet ({} Envelopes)", drained);
+    }
+
+    private int pollSafely() {
+        try {
+            return service.pollAndCount();
+        } catch (RuntimeException e) {
+            log.error("Poll fehlgeschlagen: {}", e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    private static IntSupplier fixed(int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch muss >= 1 sein: " + maxBatch);
+        }
+        return () -> maxBatch;
+    }
+
+    private long jitter(long nanos) {
+        if (nanos <= 1) return nanos;
+        long half = nanos / 2;
+        return half + ThreadLocalRandom.current().nextLong(nanos - half + 1);
+    }
+
+    private void await(long nanos) {
+        lock.lock();
+        try {
+            long remaining = nanos;
+            while (running && remaining > 0) {
+                remaining = wakeUp.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drainDeadline = System.nanoTime();
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
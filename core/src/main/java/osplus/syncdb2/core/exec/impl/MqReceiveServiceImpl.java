@@ -4,16 +4,49 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import osplus.syncdb2.core.config.ReplayOptions;
 import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.MqReadBatch;
 import osplus.syncdb2.core.exec.MqReceiveService;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.ParkedMessage;
+import osplus.syncdb2.core.exec.ParkingLot;
+import osplus.syncdb2.core.exec.ProcessedMessageCache;
 import osplus.syncdb2.core.exec.ProcessedMessageRepository;
+import osplus.syncdb2.core.exec.ProcessedMessageRetention;
 import osplus.syncdb2.core.exec.ReadFromMqRepository;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
+import osplus.syncdb2.core.exec.SecondaryConnectionPool;
 import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SequenceTracker;
 import osplus.syncdb2.core.logging.MdcKeys;
 import osplus.syncdb2.core.util.EnvelopeParser;
+import osplus.syncdb2.core.util.ShardedRingBuffer;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Zweck
@@ -22,74 +55,1406 @@ import java.util.List;
  * einen Batch von Envelopes, parst das JSON-Array, führt jeden Eintrag idempotent
  * auf der Secondary-DB aus und markiert ihn als verarbeitet.
  * <p>
+ * Idempotenz
+ * ----------
+ * - Bereits verarbeitete Envelopes werden **vor** dem Replay mit einer Set-Abfrage je Batch
+ * aussortiert ({@link ProcessedMessageRepository#existingIds}); ebenso Mehrfach-Vorkommen
+ * derselben `messageId` innerhalb eines Batches (erstes Vorkommen gewinnt).
+ * - Mit {@link ReplayOptions#getProcessedCache()} werden bekannte Ids vorher im Speicher
+ * beantwortet; der Cache wird erst nach dem Commit der Marker befüllt.
+ * - Mit {@link ReplayOptions#getRetention()} werden Envelopes, die vor der Aufbewahrungs-Watermark
+ * erzeugt wurden, ohne Abfrage verworfen (ihre processed-Marker sind ggf. bereits gelöscht).
+ * - Mit {@link ReplayOptions#getSequenceTracker()} werden Envelopes mit Partitionssequenz gegen die
+ * Watermark ihrer Partition geprüft (im Speicher) und schreiben statt eines processed-Markers nur die
+ * Watermark fort; solche Envelopes werden nach ihrer Sequenz-Partition auf die Worker verteilt.
+ * <p>
+ * Paralleles Replay
+ * -----------------
+ * - Werden mehrere Worker-Connections übergeben, wird jeder Batch anhand des
+ * Partitionsschlüssels ({@link osplus.syncdb2.core.exec.SqljAdapter#partitionKey},
+ * Default `correlationId`) auf die Worker verteilt.
+ * - Gleicher Schlüssel => gleicher Worker => Eingangsreihenfolge bleibt erhalten.
+ * Unterschiedliche Schlüssel laufen parallel, je Worker auf **einer eigenen** Connection.
+ * - Ohne Worker-Connections (oder mit genau einer) bleibt es beim sequentiellen Replay.
+ * - Der MDC-Kontext des pollenden Threads wird in jede Partition übernommen.
+ * <p>
+ * Virtuelle Threads
+ * -----------------
+ * - Mit {@link ReplayOptions#isVirtualThreads()} läuft jede Partition auf einem eigenen virtuellen
+ * Thread statt in einem festen Plattform-Thread-Pool.
+ * - Im Pool-Betrieb darf die Anzahl Partitionen ({@code workers}) dann die Pool-Größe übersteigen:
+ * die Semaphore des {@link SecondaryConnectionPool} begrenzt die gleichzeitig genutzten Connections,
+ * wartende Partitionen blockieren nur ihren virtuellen Thread.
+ * - Läuft das Ausleihen für Duplikatprüfung oder Replay in den Timeout des Pools, wird erneut gewartet
+ * (Rückstau): die Envelopes sind bereits aus der MQ entnommen und dürfen nicht verworfen werden.
+ * - Der Replay-Pfad verwendet keine {@code synchronized}-Blöcke (kein Pinning des Träger-Threads);
+ * Sperren innerhalb des JDBC-Treibers liegen außerhalb dieser Klasse.
+ * <p>
+ * Chunk-Modus
+ * -----------
+ * - Mit {@link ReplayOptions#getChunkSize()} &gt; 1 werden je Partition bis zu N Envelopes in
+ * einer Secondary-Transaktion angewendet; die processed-Marker werden per JDBC-Batch in
+ * derselben Transaktion geschrieben (ein Commit je Chunk statt zwei je Envelope).
+ * - Die AutoCommit-Einstellung der Connection wird danach wiederhergestellt.
+ * - Mit {@link ReplayOptions#isAdapterBatching()} werden aufeinanderfolgende Envelopes desselben
+ * Adapters als ein JDBC-Batch ausgeführt; schlägt der Batch fehl, greift die Einzelwiederholung.
+ * - Mit {@link ReplayOptions#isSavepoints()} erhält jedes Envelope einen Savepoint: ein Fehler nimmt
+ * nur dieses Envelope zurück, der Chunk wird trotzdem mit einem Commit abgeschlossen. Optional
+ * begrenzt {@link ReplayOptions#getChunkMaxMillis()} die Dauer einer Chunk-Transaktion.
+ * <p>
+ * Zusammenfassung (Conflation)
+ * ----------------------------
+ * - Liefert der Adapter einen Konfliktschlüssel ({@link osplus.syncdb2.core.exec.SqljAdapter#conflationKey}),
+ * wird je Partition eines Batches (bzw. Fensters) nur das letzte Envelope je Adapter und Schlüssel
+ * ausgeführt ("last write wins"). Die überholten Envelopes werden in derselben Transaktion wie dieses
+ * als verarbeitet markiert; scheitert es, bleiben auch sie unmarkiert.
+ * <p>
+ * Szenarien
+ * ---------
+ * - Mit {@link ReplayOptions#isScenarioTransactions()} bilden Envelopes mit gleicher {@code scenarioId}
+ * und {@code correlationId} eine Kette: sie werden demselben Worker zugeordnet, nach {@code stepIndex}
+ * geordnet und gemeinsam in **einer** Secondary-Transaktion angewendet (z. B. insertOrder → updateStock).
+ * Unabhängige Szenarien laufen parallel auf den übrigen Workern.
+ * - Der Worker ergibt sich wie bei losen Envelopes aus dem Partitionsschlüssel, und zwar dem des zuerst
+ * eingetroffenen Schritts; die Reihenfolge je Schlüssel bleibt so auch neben Szenarien erhalten.
+ * - Schlägt ein Schritt fehl, wird das ganze Szenario zurückgerollt; mit Parkplatz wird jeder Schritt mit
+ * allen Schritten des Szenarios geparkt und später das ganze Szenario in einer Transaktion wiederholt.
+ * - Es werden nur Schritte zusammengefasst, die im selben Batch (bzw. Streaming-Fenster) ankommen;
+ * Envelopes ohne {@code scenarioId} laufen wie gewohnt (Chunk-/Savepoint-Optionen gelten nur für sie).
+ * <p>
+ * Streaming
+ * ---------
+ * - Mit {@link ReplayOptions#isStreamingRead()} wird der `READ_FROM_MQ`-CLOB als Zeichenstrom
+ * gelesen und inkrementell dekodiert; je {@link ReplayOptions#getStreamWindowSize()} Envelopes
+ * werden geprüft und angewendet, bevor weiter gelesen wird. Der Heap-Bedarf ist damit
+ * unabhängig von der Batch-Größe.
+ * - Voraussetzung ist mindestens eine Worker-Connection; sonst wird materialisiert gelesen.
+ * - Mit {@link ReplayOptions#getRingBufferSize()} &gt; 0 sind Dekodierung und Replay entkoppelt: der
+ * lesende Thread veröffentlicht die Envelopes in einen begrenzten, lock-freien {@link ShardedRingBuffer},
+ * je Partition entnimmt ein Worker seine Envelopes in Fenstern. Ein voller Puffer bremst den Leser.
+ * - Lesen und Verteilen übernimmt die {@link StreamingPipeline}. Ein Fenster, das nicht geprüft oder
+ * angewendet werden kann, wird geparkt (ohne Parkplatz gezählt und geloggt), statt verworfen zu werden.
+ * <p>
+ * Read-ahead
+ * ----------
+ * - Mit {@link ReplayOptions#getPrefetchDepth()} &gt; 0 liest ein eigener Thread (`syncdb2-prefetch`,
+ * {@link PrefetchPipeline}) die nächsten Batches auf der Lese-Connection, während der aktuelle Batch auf
+ * den Worker-Connections angewendet wird. Die Queue-Tiefe begrenzt den Speicherbedarf.
+ * - Wie beim Streaming ist mindestens eine Worker-Connection nötig; Streaming und Read-ahead schließen
+ * sich aus.
+ * - {@link #close()} wartet auf einen laufenden Poll und das Ende des Prefetch-Threads und wendet erst
+ * dann die verbliebenen Batches an.
+ * <p>
+ * Parkplatz
+ * ---------
+ * - Mit {@link ReplayOptions#getParkingLot()} wird ein Envelope, das auch einzeln fehlschlägt, geparkt
+ * statt nur geloggt. Zu Beginn jedes Polls werden fällige geparkte Envelopes (höchstens {@code maxBatch})
+ * je in einer eigenen Transaktion wiederholt; nach erschöpfter {@link osplus.syncdb2.core.config.RetryPolicy}
+ * bleiben sie als Dead Letter liegen.
+ * - Redeliveries geparkter Ids werden wie Duplikate übersprungen.
+ * - Ein geparktes Envelope hält nachfolgende Envelopes desselben Partitionsschlüssels **nicht** auf;
+ * die Reihenfolge gilt für geparkte Envelopes daher nicht mehr.
+ * <p>
  * Hinweise
  * --------
  * - Läuft **außerhalb** der Primary-Transaktion.
  * - Fehler bei einzelnen Envelopes werden geloggt; die Verarbeitung der übrigen
  * Envelopes wird fortgesetzt (At-least-once).
+ * - Im parallelen Modus hält die Instanz einen Thread-Pool; {@link #close()} gibt ihn frei.
+ * - Mit {@link ReplayOptions#getAdaptiveBatchSize()} ersetzt ein AIMD-Regler das feste {@code maxBatch}:
+ * nach jedem Poll werden Anzahl, Dauer (Lesen + Anwenden) und Fehler gemeldet, der nächste Aufruf von
+ * `READ_FROM_MQ` nutzt das angepasste Limit.
+ * - Messwerte (Batch-Größe/-Dauer, angewendete Envelopes, Verzögerung, Duplikate, Fehler) gehen an
+ * {@link ReplayOptions#getMetrics()}.
+ * - Alternativ zu festen Connections kann ein {@link SecondaryConnectionPool} übergeben werden:
+ * Connections werden dann je Lesevorgang, Duplikatprüfung und Worker-Partition ausgeliehen,
+ * defekte beim nächsten Ausleihen erkannt und ersetzt.
  */
-public class MqReceiveServiceImpl implements MqReceiveService {
+public class MqReceiveServiceImpl implements MqReceiveService, AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(MqReceiveServiceImpl.class);
 
+    /** Schrittfolge innerhalb eines Szenarios; Schritte ohne {@code stepIndex} zuletzt, sonst stabil. */
+    private static final Comparator<SyncEnvelope> STEP_ORDER =
+            Comparator.comparing(SyncEnvelope::stepIndex, Comparator.nullsLast(Comparator.naturalOrder()));
+
     private final ReadFromMqRepository repository;
     private final ProcessedMessageRepository processedRepo;
     private final SecondarySqljExecutor secondaryExecutor;
     private final Connection secondaryConnection;
+    private final List<Connection> workerConnections;
+    private final SecondaryConnectionPool pool;
+    private final int workers;
     private final int maxBatch;
     private final ObjectMapper mapper;
     private final EnvelopeParser envelopeParser;
+    private final ExecutorService workerPool;
+    private final ReplayOptions options;
+    /** Read-ahead ({@code null} ohne {@link ReplayOptions#getPrefetchDepth()}). */
+    private final PrefetchPipeline prefetch;
+    /** Streaming-Lesen ({@code null} ohne {@link ReplayOptions#isStreamingRead()}). */
+    private final StreamingPipeline stream;
+    /** Endgültig fehlgeschlagene Envelopes (Signal für {@link AdaptiveBatchSize}). */
+    private final AtomicInteger failures = new AtomicInteger();
+    /** Überholte Envelopes je überlebender messageId (nur während des Replays der Partition). */
+    private final Map<String, List<SyncEnvelope>> superseded = new ConcurrentHashMap<>();
+    /** Pool-Connections mit Verbindungsfehler während des Replays; werden als defekt zurückgegeben. */
+    private final Set<Connection> lostConnections = ConcurrentHashMap.newKeySet();
 
     public MqReceiveServiceImpl(ReadFromMqRepository repository,
                                 ProcessedMessageRepository processedRepo,
                                 SecondarySqljExecutor secondaryExecutor,
                                 Connection secondaryConnection,
                                 int maxBatch, ObjectMapper mapper) {
+        this(repository, processedRepo, secondaryExecutor, secondaryConnection, List.of(), maxBatch, mapper);
+    }
+
+    /**
+     * Konstruktor für paralleles Replay.
+     *
+     * @param secondaryConnection Connection für `READ_FROM_MQ`
+     * @param workerConnections   je Worker eine eigene Secondary-Connection (Anzahl = Parallelität)
+     */
+    public MqReceiveServiceImpl(ReadFromMqRepository repository,
+                                ProcessedMessageRepository processedRepo,
+                                SecondarySqljExecutor secondaryExecutor,
+                                Connection secondaryConnection,
+                                List<Connection> workerConnections,
+                                int maxBatch, ObjectMapper mapper) {
+        this(repository, processedRepo, secondaryExecutor, secondaryConnection, workerConnections, maxBatch, mapper,
+                new ReplayOptions());
+    }
+
+    /**
+     * Vollständiger Konstruktor inkl. {@link ReplayOptions} (Chunk-Größe etc.).
+     */
+    public MqReceiveServiceImpl(ReadFromMqRepository repository,
+                                ProcessedMessageRepository processedRepo,
+                                SecondarySqljExecutor secondaryExecutor,
+                                Connection secondaryConnection,
+                                List<Connection> workerConnections,
+                                int maxBatch, ObjectMapper mapper,
+                                ReplayOptions options) {
+        this(repository, processedRepo, secondaryExecutor, secondaryConnection, workerConnections, null,
+                workerConnections.size(), maxBatch, mapper, options);
+    }
+
+    /**
+     * Konstruktor für den Pool-Betrieb: Lese-, Prüf- und Worker-Connections werden je Poll/Worker aus
+     * dem {@link SecondaryConnectionPool} ausgeliehen und danach zurückgegeben.
+     *
+     * @param pool    Secondary-Pool (gehört dem Aufrufer; Größe mindestens {@code workers + 1}, mit
+     *                virtuellen Threads mindestens 2)
+     * @param workers Anzahl paralleler Replay-Worker bzw. Partitionen (1 = sequentiell)
+     */
+    public MqReceiveServiceImpl(ReadFromMqRepository repository,
+                                ProcessedMessageRepository processedRepo,
+                                SecondarySqljExecutor secondaryExecutor,
+                                SecondaryConnectionPool pool,
+                                int workers,
+                                int maxBatch, ObjectMapper mapper,
+                                ReplayOptions options) {
+        this(repository, processedRepo, secondaryExecutor, null, List.of(), pool,
+                requireWorkers(pool, workers, options), maxBatch, mapper, options);
+    }
+
+    private MqReceiveServiceImpl(ReadFromMqRepository repository,
+                                 ProcessedMessageRepository processedRepo,
+                                 SecondarySqljExecutor secondaryExecutor,
+                                 Connection secondaryConnection,
+                                 List<Connection> workerConnections,
+                                 SecondaryConnectionPool pool,
+                                 int workers,
+                                 int maxBatch, ObjectMapper mapper,
+                                 ReplayOptions options) {
         this.repository = repository;
         this.processedRepo = processedRepo;
         this.secondaryExecutor = secondaryExecutor;
         this.secondaryConnection = secondaryConnection;
+        this.workerConnections = List.copyOf(workerConnections);
+        this.pool = pool;
+        this.workers = workers;
         this.maxBatch = maxBatch;
         this.mapper = mapper;
         this.envelopeParser = new EnvelopeParser(mapper);
+        this.options = options;
+        if (options.isStreamingRead() && options.getPrefetchDepth() > 0) {
+            throw new IllegalArgumentException("streamingRead und prefetchDepth schließen sich aus");
+        }
+        this.prefetch = options.getPrefetchDepth() > 0 && hasApplyConnections()
+                ? new PrefetchPipeline(options.getPrefetchDepth(), this::readBatch)
+                : null;
+        // Streaming nur mit separater Apply-Connection: auf der Lese-Connection darf während des
+        // offenen CLOB nicht committet werden (LOB-Locator würde ungültig)
+        boolean streaming = options.isStreamingRead() && hasApplyConnections();
+        ShardedRingBuffer<SyncEnvelope> ring = streaming && options.getRingBufferSize() > 0
+                ? new ShardedRingBuffer<>(options.getRingBufferSize(), workers)
+                : null;
+        this.workerPool = workers > 1 || ring != null ? newWorkerPool(workers, options) : null;
+        this.stream = streaming
+                ? new StreamingPipeline(envelopeParser, options.getStreamWindowSize(), ring, workerPool)
+                : null;
     }
 
     @Override
     public void pollOnce() {
-        log.info("READ_FROM_MQ: Starte Poll (maxBatch={})", maxBatch);
+        pollAndCount();
+    }
+
+    @Override
+    public int pollAndCount() {
+        AdaptiveBatchSize adaptive = options.getAdaptiveBatchSize();
+        if (adaptive == null) return poll();
+        long start = System.nanoTime();
+        int failedBefore = failures.get();
+        int received = poll();
+        if (received < 0) {
+            adaptive.onError();
+        } else {
+            adaptive.onBatch(received, Duration.ofNanos(System.nanoTime() - start), failures.get() - failedBefore);
+        }
+        return received;
+    }
+
+    private int poll() {
+        log.info("READ_FROM_MQ: Starte Poll (maxBatch={})", batchSize());
+        try {
+            if (prefetch != null) {
+                // Duplikatprüfung auf der Worker-Connection: die Lese-Connection gehört dem Prefetch-Thread
+                return prefetch.poll(this::retryParked, batch -> apply(batch, firstWorkerConnection()));
+            }
+            retryParked();
+            return stream != null ? pollStreaming() : pollMaterialized();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("READ_FROM_MQ: Poll unterbrochen");
+            return -1;
+        } catch (Exception e) {
+            log.error("READ_FROM_MQ: Technischer Fehler: {}", e.getMessage(), e);
+            return -1;
+        } finally {
+            log.info("READ_FROM_MQ: Poll Ende");
+        }
+    }
+
+    /**
+     * Limit für `READ_FROM_MQ`: fest aus dem Konstruktor oder vom {@link AdaptiveBatchSize}-Regler.
+     */
+    private int batchSize() {
+        AdaptiveBatchSize adaptive = options.getAdaptiveBatchSize();
+        return adaptive != null ? adaptive.current() : maxBatch;
+    }
+
+    private int pollMaterialized() throws SQLException, InterruptedException {
+        return apply(readBatch(), secondaryConnection);
+    }
+
+    /**
+     * Eigene Apply-Connections vorhanden (Worker-Connections oder Pool)? Voraussetzung für
+     * Streaming und Read-ahead, bei denen die Lese-Connection nicht für das Replay genutzt wird.
+     */
+    private static int requireWorkers(SecondaryConnectionPool pool, int workers, ReplayOptions options) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers muss >= 1 sein: " + workers);
+        }
+        // Virtuelle Threads warten auf Connections; es muss nur neben der Lese-Connection eine frei bleiben
+        int required = options.isVirtualThreads() ? Math.min(workers + 1, 2) : workers + 1;
+        if (pool.maxSize() < required) {
+            throw new IllegalArgumentException("Pool zu klein: maxSize=" + pool.maxSize() + ", benötigt "
+                    + required + " (Worker + Lese-Connection)");
+        }
+        return workers;
+    }
+
+    private static ExecutorService newWorkerPool(int workers, ReplayOptions options) {
+        if (options.isVirtualThreads()) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("syncdb2-replay-vt-", 1).factory());
+        }
+        return Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+    }
+
+    private boolean hasApplyConnections() {
+        return pool != null || !workerConnections.isEmpty();
+    }
+
+    private int apply(MqReadBatch batch, Connection dedupConnection) throws SQLException, InterruptedException {
+        if (batch.status() != 0) {
+            log.warn("READ_FROM_MQ lieferte Fehlerstatus (status={}, msg={})", batch.status(), batch.errorMessage());
+            return -1;
+        }
+        List<SyncEnvelope> list = batch.envelopes();
+        log.info("READ_FROM_MQ: {} Envelopes empfangen", list.size());
+        dispatch(dropDuplicates(dedupConnection, list));
+        return list.size();
+    }
+
+    private MqReadBatch readBatch() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = borrow(secondaryConnection);
+        boolean broken = true;
         try {
-            ReadFromMqRepository.Result r = repository.callReadFromMq(secondaryConnection, maxBatch);
+            ReadFromMqRepository.Result r = repository.callReadFromMq(connection, batchSize());
+            broken = false;
             if (r.status() != 0) {
-                log.warn("READ_FROM_MQ lieferte Fehlerstatus (status={}, msg={})", r.status(), r.errorMessage());
+                return new MqReadBatch(List.of(), r.status(), r.errorMessage());
+            }
+            List<SyncEnvelope> envelopes = envelopeParser.fromJsonArray(r.envelopesJson());
+            options.getMetrics().batchRead(envelopes.size(), Duration.ofNanos(System.nanoTime() - start));
+            return new MqReadBatch(envelopes, 0, null);
+        } finally {
+            giveBack(connection, broken);
+        }
+    }
+
+    /**
+     * Streaming-Modus: Envelopes werden direkt aus dem CLOB dekodiert und fensterweise angewendet,
+     * solange das `READ_FROM_MQ`-Statement offen ist. Duplikatprüfung und Replay laufen dabei auf den
+     * Worker-Connections, die Lese-Connection bleibt unberührt.
+     */
+    private int pollStreaming() throws SQLException {
+        Connection dedupConnection = firstWorkerConnection();
+        long start = System.nanoTime();
+        Connection readConnection = borrow(secondaryConnection);
+        boolean broken = true;
+        Integer received;
+        try {
+            received = repository.streamFromMq(readConnection, batchSize(), (reader, status, err) -> {
+                if (status != 0) {
+                    log.warn("READ_FROM_MQ lieferte Fehlerstatus (status={}, msg={})", status, err);
+                    return -1;
+                }
+                return stream.run(reader, new WindowReplay(dedupConnection));
+            });
+            broken = false;
+        } finally {
+            giveBack(readConnection, broken);
+        }
+        if (received >= 0) {
+            options.getMetrics().batchRead(received, Duration.ofNanos(System.nanoTime() - start));
+        }
+        log.info("READ_FROM_MQ: {} Envelopes empfangen (Streaming)", received);
+        return received;
+    }
+
+    /**
+     * Fenster-Replay des Streaming-Modus: ohne Ringpuffer über {@link #dispatch}, im Ringpuffer-Modus
+     * auf der Connection des Shards. Gescheiterte Fenster werden geparkt ({@link #parkWindow}).
+     */
+    private final class WindowReplay implements StreamingPipeline.WindowHandler {
+
+        private final Connection dedupConnection;
+        private final ShardAssignment shards = new ShardAssignment();
+
+        WindowReplay(Connection dedupConnection) {
+            this.dedupConnection = dedupConnection;
+        }
+
+        @Override
+        public int shardOf(SyncEnvelope env) {
+            return shards.shardOf(env);
+        }
+
+        @Override
+        public void apply(int shard, List<SyncEnvelope> window) throws Exception {
+            if (shard < 0) {
+                dispatch(dropDuplicates(dedupConnection, window));
                 return;
             }
-            List<SyncEnvelope> list = envelopeParser.fromJsonArray(r.envelopesJson());
-            log.info("READ_FROM_MQ: {} Envelopes empfangen", list.size());
-            for (SyncEnvelope env : list) {
-                MDC.put(MdcKeys.MESSAGE_ID, env.messageId());
-                MDC.put(MdcKeys.SQLJ_CLASS, env.sqljClassName());
-                MDC.put(MdcKeys.SQLJ_METHOD, env.sqljMethodName());
+            Connection connection = workerConnection(shard);
+            List<SyncEnvelope> fresh = dropDuplicates(connection, window);
+            if (!fresh.isEmpty()) replayOn(connection, fresh);
+        }
+
+        @Override
+        public void failed(int shard, List<SyncEnvelope> window, Exception cause) {
+            parkWindow(shard < 0 ? dedupConnection : workerConnection(shard), window, cause);
+        }
+    }
+
+    private void dispatch(List<SyncEnvelope> list) throws InterruptedException, SQLException {
+        if (list.isEmpty()) return;
+        if (workers <= 1) {
+            replayOn(applyConnection(), list);
+        } else {
+            replayPartitioned(list);
+        }
+    }
+
+    /**
+     * Entfernt bereits verarbeitete sowie im Batch mehrfach enthaltene Envelopes (eine DB-Abfrage je Chunk).
+     */
+    private List<SyncEnvelope> dropDuplicates(Connection fixedConnection, List<SyncEnvelope> list) throws SQLException {
+        if (list.isEmpty()) return list;
+        Connection connection = borrowAwaiting(fixedConnection);
+        boolean broken = true;
+        try {
+            List<SyncEnvelope> fresh = dropDuplicatesOn(connection, list);
+            broken = false;
+            return fresh;
+        } finally {
+            giveBack(connection, broken);
+        }
+    }
+
+    private List<SyncEnvelope> dropDuplicatesOn(Connection connection, List<SyncEnvelope> list) throws SQLException {
+        Map<String, SyncEnvelope> unique = new LinkedHashMap<>();
+        ProcessedMessageRetention retention = options.getRetention();
+        for (SyncEnvelope env : list) {
+            if (retention != null && retention.isBeforeWatermark(env, connection)) {
+                log.warn("Envelope vor der Aufbewahrungs-Watermark verworfen (messageId={}, createdAt={})",
+                        env.messageId(), env.createdAt());
+                continue;
+            }
+            unique.putIfAbsent(env.messageId(), env);
+        }
+        ProcessedMessageCache cache = options.getProcessedCache();
+        Set<String> existing = new HashSet<>();
+        List<String> unknown = new ArrayList<>(unique.size());
+        SequenceTracker tracker = options.getSequenceTracker();
+        for (SyncEnvelope env : unique.values()) {
+            String id = env.messageId();
+            if (tracked(env)) {
+                if (tracker.isDuplicate(connection, env)) existing.add(id);
+            } else if (cache == null) {
+                unknown.add(id);
+            } else if (cache.isProcessed(id)) {
+                existing.add(id);
+            } else if (!cache.isDefinitelyNew(id)) {
+                unknown.add(id);
+            }
+        }
+        existing.addAll(processedRepo.existingIds(connection, unknown));
+        ParkingLot parkingLot = options.getParkingLot();
+        if (parkingLot != null) {
+            // Geparkte Ids werden über den Parkplatz wiederholt, nicht über die Redelivery
+            List<String> candidates = new ArrayList<>(unique.size());
+            for (String id : unique.keySet()) {
+                if (!existing.contains(id)) candidates.add(id);
+            }
+            existing.addAll(parkingLot.parkedIds(connection, candidates));
+        }
+        List<SyncEnvelope> fresh = new ArrayList<>(unique.size());
+        for (SyncEnvelope env : unique.values()) {
+            if (!existing.contains(env.messageId())) fresh.add(env);
+        }
+        if (fresh.size() < list.size()) {
+            options.getMetrics().duplicatesSkipped(list.size() - fresh.size());
+            log.debug("Duplikate übersprungen: {} von {} Envelopes", list.size() - fresh.size(), list.size());
+        }
+        return fresh;
+    }
+
+    /**
+     * Verteilt den Batch nach Partitionsschlüssel auf die Worker und wartet auf alle Partitionen.
+     */
+    private void replayPartitioned(List<SyncEnvelope> list) throws InterruptedException {
+        List<List<SyncEnvelope>> partitions = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        ShardAssignment shards = new ShardAssignment();
+        for (SyncEnvelope env : list) {
+            partitions.get(shards.shardOf(env)).add(env);
+        }
+
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            List<SyncEnvelope> part = partitions.get(i);
+            if (part.isEmpty()) continue;
+            Connection c = workerConnection(i);
+            tasks.add(() -> {
+                if (mdc != null) MDC.setContextMap(mdc);
+                try {
+                    replayOn(c, part);
+                } finally {
+                    MDC.clear();
+                }
+                return null;
+            });
+        }
+        for (Future<Void> f : workerPool.invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                log.error("Replay-Partition abgebrochen: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Shard-Zuordnung innerhalb eines Batches bzw. Streams: jedes Envelope nach seinem Partitionsschlüssel;
+     * alle Schritte eines Szenarios folgen dem Schlüssel seines zuerst eingetroffenen Schritts, damit das
+     * Szenario auf einem Worker zusammenbleibt, ohne die Reihenfolge je Schlüssel zu verletzen.
+     */
+    private final class ShardAssignment {
+
+        private final Map<String, Integer> scenarios = new HashMap<>();
+
+        int shardOf(SyncEnvelope env) {
+            if (options.isScenarioTransactions() && env.scenarioId() != null && !tracked(env)) {
+                return scenarios.computeIfAbsent(scenarioKey(env), k -> shardOfKey(env));
+            }
+            return shardOfKey(env);
+        }
+
+        private int shardOfKey(SyncEnvelope env) {
+            return Math.floorMod(partitionKey(env).hashCode(), workers);
+        }
+    }
+
+    private String partitionKey(SyncEnvelope env) {
+        if (tracked(env)) return env.partition();
+        String key = null;
+        try {
+            key = secondaryExecutor.partitionKey(env);
+        } catch (IllegalStateException e) {
+            // Kein Adapter registriert: Fehler wird beim Replay gemeldet; Default-Schlüssel genügt.
+        }
+        if (key != null) return key;
+        return env.correlationId() != null ? env.correlationId() : String.valueOf(env.messageId());
+    }
+
+    /**
+     * Replay auf der festen Connection bzw. (Pool-Betrieb) auf einer ausgeliehenen.
+     */
+    private void replayOn(Connection fixedConnection, List<SyncEnvelope> envelopes) throws SQLException {
+        Connection connection = borrowAwaiting(fixedConnection);
+        try {
+            replay(connection, envelopes);
+        } finally {
+            giveBack(connection, lostConnections.remove(connection));
+        }
+    }
+
+    /**
+     * Merkt eine Pool-Connection vor, wenn der Fehler die Verbindung selbst betrifft
+     * ({@link SecondaryConnectionPool#isConnectionFailure}); {@link #replayOn} gibt sie dann als defekt
+     * zurück, statt dass der Pool sie innerhalb des Validierungsfensters ungeprüft erneut ausgibt.
+     */
+    private void noteFailure(Connection connection, Exception e) {
+        if (pool != null && SecondaryConnectionPool.isConnectionFailure(e)) {
+            lostConnections.add(connection);
+        }
+    }
+
+    /**
+     * Connection für sequentielles Replay: erste Worker-Connection, sonst die Lese-Connection.
+     */
+    private Connection applyConnection() {
+        return workerConnections.isEmpty() ? secondaryConnection : workerConnections.get(0);
+    }
+
+    private Connection firstWorkerConnection() {
+        return workerConnection(0);
+    }
+
+    /**
+     * Feste Connection des Workers bzw. {@code null} im Pool-Betrieb.
+     */
+    private Connection workerConnection(int worker) {
+        return workerConnections.isEmpty() ? null : workerConnections.get(worker);
+    }
+
+    /**
+     * Feste Connection zurückgeben oder (Pool-Betrieb) eine aus dem Pool ausleihen.
+     */
+    private Connection borrow(Connection fixedConnection) throws SQLException {
+        return pool != null ? pool.borrow() : fixedConnection;
+    }
+
+    /**
+     * Wie {@link #borrow}, behandelt den Ausleih-Timeout des Pools aber als Rückstau und wartet erneut.
+     * Für bereits gelesene Envelopes: ein Abbruch würde sie weder anwenden noch parken. Unterbrechung
+     * und ein geschlossener Pool brechen weiterhin ab.
+     */
+    private Connection borrowAwaiting(Connection fixedConnection) throws SQLException {
+        while (true) {
+            try {
+                return borrow(fixedConnection);
+            } catch (SQLTransientConnectionException e) {
+                if (Thread.currentThread().isInterrupted()) throw e;
+                log.warn("Secondary-Pool erschöpft, warte weiter auf Connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void giveBack(Connection connection, boolean broken) {
+        if (pool != null) {
+            pool.release(connection, broken);
+        }
+    }
+
+    /**
+     * Führt die Envelopes einer Partition in Reihenfolge auf der angegebenen Connection aus.
+     */
+    private void replay(Connection connection, List<SyncEnvelope> envelopes) {
+        List<SyncEnvelope> kept = conflate(envelopes);
+        try {
+            if (options.isScenarioTransactions()) {
+                replayScenarios(connection, kept);
+            } else {
+                replayPlain(connection, kept);
+            }
+        } finally {
+            if (kept.size() < envelopes.size()) {
+                for (SyncEnvelope env : kept) {
+                    superseded.remove(env.messageId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fasst Envelopes mit gleichem Konfliktschlüssel ({@link osplus.syncdb2.core.exec.SqljAdapter#conflationKey})
+     * zusammen: nur das letzte bleibt an seiner Position, die früheren werden in {@link #superseded} an
+     * dieses gehängt und mit ihm markiert.
+     */
+    private List<SyncEnvelope> conflate(List<SyncEnvelope> envelopes) {
+        if (envelopes.size() < 2) return envelopes;
+        String[] keys = new String[envelopes.size()];
+        Map<String, Integer> last = new HashMap<>();
+        for (int i = 0; i < envelopes.size(); i++) {
+            keys[i] = conflationKey(envelopes.get(i));
+            if (keys[i] != null) last.put(keys[i], i);
+        }
+        if (last.isEmpty()) return envelopes;
+        Map<String, List<SyncEnvelope>> riders = new HashMap<>();
+        List<SyncEnvelope> kept = new ArrayList<>(envelopes.size());
+        for (int i = 0; i < envelopes.size(); i++) {
+            SyncEnvelope env = envelopes.get(i);
+            String key = keys[i];
+            if (key != null && last.get(key) != i) {
+                riders.computeIfAbsent(key, k -> new ArrayList<>()).add(env);
+                continue;
+            }
+            kept.add(env);
+            if (key != null && riders.containsKey(key)) {
+                superseded.put(env.messageId(), riders.get(key));
+            }
+        }
+        if (kept.size() < envelopes.size()) {
+            options.getMetrics().envelopesConflated(envelopes.size() - kept.size());
+            log.debug("Überholte Envelopes zusammengefasst: {} von {}", envelopes.size() - kept.size(), envelopes.size());
+        }
+        return kept;
+    }
+
+    /**
+     * Konfliktschlüssel inkl. Adapter-Identität; {@code null} ohne Zusammenfassung (auch für Szenario-Schritte,
+     * die als Einheit angewendet werden).
+     */
+    private String conflationKey(SyncEnvelope env) {
+        if (options.isScenarioTransactions() && env.scenarioId() != null) return null;
+        String key;
+        try {
+            key = secondaryExecutor.conflationKey(env);
+        } catch (IllegalStateException e) {
+            // Kein Adapter registriert: Fehler wird beim Replay gemeldet.
+            return null;
+        }
+        return key == null ? null : env.sqljClassName() + "#" + env.sqljMethodName() + "|" + key;
+    }
+
+    /**
+     * Envelopes samt der an sie gehängten überholten Envelopes (diese jeweils davor).
+     */
+    private List<SyncEnvelope> withSuperseded(List<SyncEnvelope> envelopes) {
+        if (superseded.isEmpty()) return envelopes;
+        List<SyncEnvelope> all = null;
+        for (int i = 0; i < envelopes.size(); i++) {
+            List<SyncEnvelope> riders = superseded.get(envelopes.get(i).messageId());
+            if (riders == null && all == null) continue;
+            if (all == null) all = new ArrayList<>(envelopes.subList(0, i));
+            if (riders != null) all.addAll(riders);
+            all.add(envelopes.get(i));
+        }
+        return all == null ? envelopes : all;
+    }
+
+    /**
+     * Szenario-Modus: zerlegt die Partition in Szenarien (gleiche {@code scenarioId} und
+     * {@code correlationId}, Position des ersten Schritts) und Läufe von Envelopes ohne Szenario.
+     * Szenarien werden nach {@code stepIndex} geordnet und je in einer Transaktion angewendet.
+     */
+    private void replayScenarios(Connection connection, List<SyncEnvelope> envelopes) {
+        Map<String, List<SyncEnvelope>> scenarios = new HashMap<>();
+        List<List<SyncEnvelope>> units = new ArrayList<>();
+        List<SyncEnvelope> loose = null;
+        for (SyncEnvelope env : envelopes) {
+            if (env.scenarioId() == null) {
+                if (loose == null) {
+                    loose = new ArrayList<>();
+                    units.add(loose);
+                }
+                loose.add(env);
+                continue;
+            }
+            List<SyncEnvelope> steps = scenarios.get(scenarioKey(env));
+            if (steps == null) {
+                steps = new ArrayList<>();
+                scenarios.put(scenarioKey(env), steps);
+                units.add(steps);
+                loose = null;
+            }
+            steps.add(env);
+        }
+        for (List<SyncEnvelope> unit : units) {
+            if (unit.get(0).scenarioId() == null) {
+                replayPlain(connection, unit);
+            } else {
+                unit.sort(STEP_ORDER);
+                applyScenario(connection, unit);
+            }
+        }
+    }
+
+    /**
+     * Wendet alle Schritte eines Szenarios samt Markern in **einer** Transaktion an. Schlägt ein Schritt
+     * oder der Commit fehl, wird das ganze Szenario zurückgerollt und (mit Parkplatz) geparkt
+     * ({@link #parkScenario}).
+     */
+    private void applyScenario(Connection connection, List<SyncEnvelope> steps) {
+        SyncEnvelope first = steps.get(0);
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (SyncEnvelope env : steps) {
+                    putMdc(env);
+                    try {
+                        secondaryExecutor.execute(env, connection);
+                    } catch (Exception ex) {
+                        noteFailure(connection, ex);
+                        connection.rollback();
+                        log.error("Szenario {} (correlationId={}) bei Schritt {} zurückgerollt (messageId={}): {}",
+                                first.scenarioId(), first.correlationId(), env.stepIndex(), env.messageId(),
+                                ex.getMessage(), ex);
+                        parkScenario(connection, steps, ex);
+                        if (options.getParkingLot() != null) connection.commit();
+                        return;
+                    } finally {
+                        clearMdc();
+                    }
+                }
                 try {
-                    if (processedRepo.exists(secondaryConnection, env.messageId())) {
-                        log.debug("Envelope bereits verarbeitet, überspringe (messageId={})", env.messageId());
-                        continue;
+                    markAppliedBatch(connection, steps);
+                    connection.commit();
+                } catch (SQLException ex) {
+                    noteFailure(connection, ex);
+                    connection.rollback();
+                    log.error("Commit des Szenarios {} fehlgeschlagen ({} Schritte): {}",
+                            first.scenarioId(), steps.size(), ex.getMessage(), ex);
+                    parkScenario(connection, steps, ex);
+                    if (options.getParkingLot() != null) connection.commit();
+                    return;
+                }
+                committed(steps);
+                log.info("Szenario {} verarbeitet ({} Schritte, 1 Commit)", first.scenarioId(), steps.size());
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            noteFailure(connection, e);
+            log.error("Szenario-Transaktion konnte nicht gesteuert werden: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parkt ein gescheitertes Szenario: jeder Schritt erhält einen Eintrag mit allen Schritten
+     * ({@link ParkingLot#parkScenarioStep}); {@link #retryParked} wiederholt daraus das ganze Szenario in
+     * einer Transaktion. Führt kein COMMIT aus.
+     */
+    private void parkScenario(Connection connection, List<SyncEnvelope> steps, Exception cause) {
+        ParkingLot parkingLot = options.getParkingLot();
+        for (SyncEnvelope step : steps) {
+            countFailure();
+            if (parkingLot != null) writeParkedStep(parkingLot, connection, step, steps, cause);
+        }
+    }
+
+    private void writeParkedStep(ParkingLot parkingLot, Connection connection, SyncEnvelope step,
+                                 List<SyncEnvelope> steps, Exception cause) {
+        try {
+            ParkedMessage parked = parkingLot.parkScenarioStep(connection, step, steps, cause);
+            log.warn("Szenario-Schritt geparkt (messageId={}, Szenario={}, Versuch={}, Zustand={})",
+                    step.messageId(), step.scenarioId(), parked.attempts(), parked.state());
+        } catch (SQLException | RuntimeException e) {
+            log.error("Szenario-Schritt konnte nicht geparkt werden (messageId={}): {}",
+                    step.messageId(), e.getMessage(), e);
+        }
+    }
+
+    private static String scenarioKey(SyncEnvelope env) {
+        return env.scenarioId() + "|" + env.correlationId();
+    }
+
+    /**
+     * Führt die Envelopes ohne Szenario-Klammer aus (Einzel-, Chunk- oder Savepoint-Modus).
+     */
+    private void replayPlain(Connection connection, List<SyncEnvelope> envelopes) {
+        if (options.getChunkSize() > 1) {
+            for (int from = 0; from < envelopes.size(); ) {
+                int to = Math.min(from + options.getChunkSize(), envelopes.size());
+                if (options.isSavepoints()) {
+                    from = replaySavepointChunk(connection, envelopes, from, to);
+                } else {
+                    replayChunk(connection, envelopes.subList(from, to));
+                    from = to;
+                }
+            }
+            return;
+        }
+        for (SyncEnvelope env : envelopes) {
+            putMdc(env);
+            try {
+                execute(env, connection);
+                markApplied(connection, env);
+                if (connection.getAutoCommit()) {
+                    // Nur bei AutoCommit ist der Marker hier bereits committet
+                    committed(List.of(env));
+                }
+                log.info("Envelope verarbeitet (messageId={})", env.messageId());
+            } catch (Exception ex) {
+                noteFailure(connection, ex);
+                log.error("Fehler bei Verarbeitung von messageId={}: {}", env.messageId(), ex.getMessage(), ex);
+                park(connection, env, ex);
+                // continue with next envelope
+            } finally {
+                clearMdc();
+            }
+        }
+    }
+
+    /**
+     * Chunk-Modus: alle Envelopes des Chunks plus ihre processed-Marker (JDBC-Batch) in
+     * **einer** Secondary-Transaktion. Schlägt ein Envelope fehl, wird der Chunk zurückgerollt
+     * und einzeln (je Envelope eine Transaktion) wiederholt, damit die übrigen nicht verloren gehen.
+     */
+    private void replayChunk(Connection connection, List<SyncEnvelope> chunk) {
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (!applyInTx(connection, chunk, false)) {
+                    for (SyncEnvelope env : chunk) {
+                        applyInTx(connection, List.of(env), true);
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            noteFailure(connection, e);
+            log.error("Chunk-Transaktion konnte nicht gesteuert werden: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Savepoint-Modus: wendet Envelopes ab {@code from} in **einer** Transaktion an, bis {@code to}
+     * erreicht oder die Zeitgrenze ({@link ReplayOptions#getChunkMaxMillis()}) überschritten ist.
+     * Jedes Envelope (bzw. jeder Adapter-Lauf) erhält einen Savepoint; ein Fehler nimmt nur dieses
+     * Envelope zurück. Adapter-Schreibzugriffe, processed-Marker und Parkplatz-Einträge werden gemeinsam
+     * committet. Scheitert der Commit oder die Savepoint-Steuerung, wird der Chunk zurückgerollt und
+     * einzeln (je Envelope eine Transaktion) wiederholt, damit jedes Envelope angewendet oder geparkt wird.
+     *
+     * @return Index des ersten nicht mehr verarbeiteten Envelopes
+     */
+    private int replaySavepointChunk(Connection connection, List<SyncEnvelope> envelopes, int from, int to) {
+        long maxNanos = TimeUnit.MILLISECONDS.toNanos(options.getChunkMaxMillis());
+        long start = System.nanoTime();
+        List<SyncEnvelope> applied = new ArrayList<>(to - from);
+        List<SyncEnvelope> failed = new ArrayList<>();
+        int i = from;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                while (i < to) {
+                    int end = options.isAdapterBatching() ? Math.min(adapterRunEnd(envelopes, i), to) : i + 1;
+                    List<SyncEnvelope> run = envelopes.subList(i, end);
+                    i = end;
+                    if (!applyUnderSavepoint(connection, run, applied, failed) && run.size() > 1) {
+                        // Batch fehlgeschlagen: Envelopes des Laufs einzeln, je mit eigenem Savepoint
+                        for (SyncEnvelope env : run) {
+                            applyUnderSavepoint(connection, List.of(env), applied, failed);
+                        }
                     }
-                    secondaryExecutor.execute(env);
-                    processedRepo.markProcessed(secondaryConnection, env.messageId());
-                    log.info("Envelope verarbeitet (messageId={})", env.messageId());
-                } catch (Exception ex) {
+                    if (maxNanos > 0 && System.nanoTime() - start >= maxNanos) break;
+                }
+                markAppliedBatch(connection, applied);
+                connection.commit();
+            } catch (SQLException e) {
+                // Commit oder Savepoint-Steuerung gescheitert: nichts halb committen
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            noteFailure(connection, e);
+            log.error("Chunk-Transaktion fehlgeschlagen ({} Envelopes); wiederhole einzeln: {}",
+                    to - from, e.getMessage(), e);
+            replayEach(connection, envelopes.subList(from, to));
+            return to;
+        }
+        committed(applied);
+        for (int k = 0; k < failed.size(); k++) {
+            countFailure();
+        }
+        log.info("Chunk verarbeitet ({} Envelopes, 1 Commit)", applied.size());
+        return i;
+    }
+
+    /**
+     * Wendet jedes Envelope in einer eigenen Transaktion an; Fehlschläge werden geparkt.
+     */
+    private void replayEach(Connection connection, List<SyncEnvelope> envelopes) {
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (SyncEnvelope env : envelopes) {
+                    applyInTx(connection, List.of(env), true);
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            noteFailure(connection, e);
+            log.error("Einzelwiederholung konnte nicht gesteuert werden: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Führt einen Lauf unter einem Savepoint aus; bei Fehler Rollback bis zum Savepoint.
+     * Ein fehlgeschlagenes Einzel-Envelope wird in derselben Transaktion geparkt und in {@code failed}
+     * vermerkt; gezählt wird es erst nach dem Commit.
+     *
+     * @return true, wenn der Lauf angewendet wurde (Envelopes in {@code applied} übernommen)
+     */
+    private boolean applyUnderSavepoint(Connection connection, List<SyncEnvelope> run, List<SyncEnvelope> applied,
+                                        List<SyncEnvelope> failed) throws SQLException {
+        SyncEnvelope env = run.get(0);
+        Savepoint sp = connection.setSavepoint();
+        putMdc(env);
+        try {
+            if (run.size() > 1) {
+                secondaryExecutor.executeBatch(run, connection);
+            } else {
+                secondaryExecutor.execute(env, connection);
+            }
+            connection.releaseSavepoint(sp);
+            applied.addAll(run);
+            return true;
+        } catch (Exception ex) {
+            noteFailure(connection, ex);
+            connection.rollback(sp);
+            if (run.size() > 1) {
+                log.warn("Batch ab messageId={} zurückgerollt; wiederhole einzeln: {}", env.messageId(), ex.getMessage());
+            } else {
+                log.error("Fehler bei Verarbeitung von messageId={}: {}", env.messageId(), ex.getMessage(), ex);
+                // Parken in derselben Transaktion; wird mit dem Chunk committet
+                writeParked(connection, env, ex);
+                failed.add(env);
+            }
+            return false;
+        } finally {
+            clearMdc();
+        }
+    }
+
+    /**
+     * Wendet die Envelopes an und committet sie samt Markern; bei Fehler Rollback.
+     *
+     * @param parkOnFailure bei Fehler das (einzelne) Envelope bzw. bei gescheitertem Commit die angewendeten
+     *                      Envelopes parken und den Parkplatz-Eintrag committen
+     * @return true bei Commit, false bei Rollback
+     */
+    private boolean applyInTx(Connection connection, List<SyncEnvelope> envelopes, boolean parkOnFailure)
+            throws SQLException {
+        List<SyncEnvelope> applied = new ArrayList<>(envelopes.size());
+        for (int i = 0; i < envelopes.size(); ) {
+            int end = options.isAdapterBatching() ? adapterRunEnd(envelopes, i) : i + 1;
+            List<SyncEnvelope> run = envelopes.subList(i, end);
+            SyncEnvelope env = run.get(0);
+            i = end;
+            putMdc(env);
+            try {
+                if (run.size() > 1) {
+                    secondaryExecutor.executeBatch(run, connection);
+                } else {
+                    secondaryExecutor.execute(env, connection);
+                }
+                applied.addAll(run);
+            } catch (Exception ex) {
+                noteFailure(connection, ex);
+                connection.rollback();
+                if (envelopes.size() > 1) {
+                    log.warn("Chunk zurückgerollt wegen messageId={}; wiederhole einzeln: {}", env.messageId(), ex.getMessage());
+                } else {
                     log.error("Fehler bei Verarbeitung von messageId={}: {}", env.messageId(), ex.getMessage(), ex);
-                    // continue with next envelope
+                }
+                if (parkOnFailure) {
+                    park(connection, env, ex);
+                    if (options.getParkingLot() != null) connection.commit();
+                }
+                return false;
+            } finally {
+                clearMdc();
+            }
+        }
+        try {
+            markAppliedBatch(connection, applied);
+            connection.commit();
+        } catch (SQLException ex) {
+            noteFailure(connection, ex);
+            connection.rollback();
+            log.error("Commit des Chunks fehlgeschlagen ({} Envelopes): {}", applied.size(), ex.getMessage(), ex);
+            if (parkOnFailure) {
+                for (SyncEnvelope env : applied) {
+                    park(connection, env, ex);
+                }
+                if (options.getParkingLot() != null) connection.commit();
+            }
+            return false;
+        }
+        committed(applied);
+        log.info("Chunk verarbeitet ({} Envelopes, 1 Commit)", applied.size());
+        return true;
+    }
+
+    /**
+     * Ende (exklusiv) des Laufs aufeinanderfolgender Envelopes mit gleicher Klasse/Methode ab {@code from}.
+     */
+    private static int adapterRunEnd(List<SyncEnvelope> envelopes, int from) {
+        SyncEnvelope first = envelopes.get(from);
+        int end = from + 1;
+        while (end < envelopes.size()
+                && first.sqljClassName().equals(envelopes.get(end).sqljClassName())
+                && first.sqljMethodName().equals(envelopes.get(end).sqljMethodName())) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Schreibt den Idempotenz-Marker eines Envelopes: processed-Marker bzw. (mit Partitionssequenz)
+     * die Partitions-Watermark. Führt kein COMMIT aus.
+     */
+    private void markApplied(Connection connection, SyncEnvelope env) throws SQLException {
+        List<SyncEnvelope> riders = superseded.get(env.messageId());
+        if (riders != null) markAppliedBatch(connection, riders);
+        if (tracked(env)) {
+            options.getSequenceTracker().markApplied(connection, List.of(env));
+        } else {
+            processedRepo.markProcessed(connection, env.messageId());
+        }
+    }
+
+    /**
+     * Wie {@link #markApplied(Connection, SyncEnvelope)} für einen Chunk (processed-Marker per JDBC-Batch).
+     */
+    private void markAppliedBatch(Connection connection, List<SyncEnvelope> envelopes) throws SQLException {
+        List<SyncEnvelope> applied = withSuperseded(envelopes);
+        List<String> ids = new ArrayList<>(applied.size());
+        for (SyncEnvelope env : applied) {
+            if (!tracked(env)) ids.add(env.messageId());
+        }
+        processedRepo.markProcessedBatch(connection, ids);
+        if (options.getSequenceTracker() != null) {
+            options.getSequenceTracker().markApplied(connection, applied);
+        }
+    }
+
+    /**
+     * Übernimmt committete Envelopes (samt überholter) in Cache bzw. Sequenz-Watermarks. Nur nach erfolgreichem Commit.
+     */
+    private void committed(List<SyncEnvelope> applied) {
+        ReplicationMetrics metrics = options.getMetrics();
+        metrics.envelopesApplied(applied.size());
+        Instant now = Instant.now();
+        for (SyncEnvelope env : applied) {
+            if (env.createdAt() != null) metrics.replicationLag(Duration.between(env.createdAt(), now));
+        }
+        applied = withSuperseded(applied);
+        ProcessedMessageCache cache = options.getProcessedCache();
+        if (cache != null) {
+            List<String> ids = new ArrayList<>(applied.size());
+            for (SyncEnvelope env : applied) {
+                if (!tracked(env)) ids.add(env.messageId());
+            }
+            cache.recordProcessed(ids);
+        }
+        if (options.getSequenceTracker() != null) {
+            options.getSequenceTracker().committed(applied);
+        }
+    }
+
+    private boolean tracked(SyncEnvelope env) {
+        return options.getSequenceTracker() != null && env.hasSequence();
+    }
+
+    /**
+     * Zählt ein endgültig fehlgeschlagenes Envelope und parkt es (sofern ein Parkplatz konfiguriert ist).
+     * Führt kein COMMIT aus.
+     */
+    private void park(Connection connection, SyncEnvelope env, Exception cause) {
+        countFailure();
+        writeParked(connection, env, cause);
+    }
+
+    private void countFailure() {
+        failures.incrementAndGet();
+        options.getMetrics().envelopeFailed();
+    }
+
+    /**
+     * Parkt ein Envelope (sofern ein Parkplatz konfiguriert ist), ohne es zu zählen. Führt kein COMMIT aus.
+     */
+    private void writeParked(Connection connection, SyncEnvelope env, Exception cause) {
+        ParkingLot parkingLot = options.getParkingLot();
+        if (parkingLot == null) return;
+        try {
+            // Überholte Envelopes reisen im Parkplatz-Eintrag mit und werden mit ihm aufgelöst
+            List<SyncEnvelope> riders = superseded.getOrDefault(env.messageId(), List.of());
+            ParkedMessage parked = parkingLot.park(connection, env, riders, cause);
+            log.warn("Envelope geparkt (messageId={}, Versuch={}, Zustand={}, nächster Versuch={})",
+                    env.messageId(), parked.attempts(), parked.state(), parked.nextAttemptAt());
+        } catch (SQLException | RuntimeException e) {
+            log.error("Envelope konnte nicht geparkt werden (messageId={}): {}", env.messageId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parkt ein Streaming-Fenster, das nicht geprüft oder angewendet werden konnte (z. B. Duplikatprüfung
+     * gescheitert): die Envelopes sind bereits aus der MQ entnommen. Bereits geparkte Ids bleiben
+     * unverändert; bereits angewendete Envelopes löst {@link #retryParked} ohne erneute Ausführung auf.
+     * Szenario-Schritte desselben Fensters werden wie in {@link #parkScenario} gemeinsam geparkt.
+     * Ohne Parkplatz werden die Envelopes nur geloggt und als fehlgeschlagen gezählt.
+     */
+    private void parkWindow(Connection fixedConnection, List<SyncEnvelope> window, Exception cause) {
+        log.error("Fenster mit {} Envelopes nicht angewendet: {}", window.size(), cause.getMessage(), cause);
+        Map<String, SyncEnvelope> unique = new LinkedHashMap<>();
+        for (SyncEnvelope env : window) {
+            unique.putIfAbsent(env.messageId(), env);
+        }
+        ParkingLot parkingLot = options.getParkingLot();
+        if (parkingLot != null) {
+            Connection connection = null;
+            boolean broken = true;
+            try {
+                connection = borrowAwaiting(fixedConnection);
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    Set<String> parked = parkingLot.parkedIds(connection, unique.keySet());
+                    Map<String, List<SyncEnvelope>> scenarios = windowScenarios(unique.values());
+                    for (SyncEnvelope env : unique.values()) {
+                        if (parked.contains(env.messageId())) continue;
+                        List<SyncEnvelope> steps = env.scenarioId() != null ? scenarios.get(scenarioKey(env)) : null;
+                        if (steps != null && steps.size() > 1) {
+                            writeParkedStep(parkingLot, connection, env, steps, cause);
+                        } else {
+                            writeParked(connection, env, cause);
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
                 } finally {
-                    MDC.remove(MdcKeys.MESSAGE_ID);
-                    MDC.remove(MdcKeys.SQLJ_CLASS);
-                    MDC.remove(MdcKeys.SQLJ_METHOD);
+                    connection.setAutoCommit(autoCommit);
                 }
+                broken = false;
+            } catch (SQLException e) {
+                log.error("Fenster konnte nicht geparkt werden ({} Envelopes): {}", unique.size(), e.getMessage(), e);
+            } finally {
+                if (connection != null) giveBack(connection, broken);
             }
-        } catch (Exception e) {
-            log.error("READ_FROM_MQ: Technischer Fehler: {}", e.getMessage(), e);
+        }
+        for (int k = 0; k < unique.size(); k++) {
+            countFailure();
+        }
+    }
+
+    /**
+     * Szenario-Schritte je {@link #scenarioKey} in Schrittfolge (nur mit Szenario-Transaktionen).
+     */
+    private Map<String, List<SyncEnvelope>> windowScenarios(Collection<SyncEnvelope> envelopes) {
+        Map<String, List<SyncEnvelope>> scenarios = new HashMap<>();
+        if (!options.isScenarioTransactions()) return scenarios;
+        for (SyncEnvelope env : envelopes) {
+            if (env.scenarioId() != null) {
+                scenarios.computeIfAbsent(scenarioKey(env), k -> new ArrayList<>()).add(env);
+            }
+        }
+        scenarios.values().forEach(steps -> steps.sort(STEP_ORDER));
+        return scenarios;
+    }
+
+    /**
+     * Wiederholt fällige geparkte Envelopes (höchstens {@code maxBatch} je Poll), jedes in einer
+     * eigenen Transaktion auf der Apply-Connection. Fehler hier brechen den Poll nicht ab.
+     */
+    private void retryParked() {
+        ParkingLot parkingLot = options.getParkingLot();
+        if (parkingLot == null) return;
+        Connection connection = null;
+        boolean broken = true;
+        try {
+            connection = borrow(applyConnection());
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (ParkedMessage parked : parkingLot.due(connection, batchSize())) {
+                    retryParked(connection, parkingLot, parked);
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            broken = false;
+        } catch (SQLException e) {
+            log.error("Wiederholung geparkter Envelopes fehlgeschlagen: {}", e.getMessage(), e);
         } finally {
-            log.info("READ_FROM_MQ: Poll Ende");
+            if (connection != null) giveBack(connection, broken);
+        }
+    }
+
+    /**
+     * Wiederholt einen geparkten Eintrag; mitgeparkte überholte Envelopes werden mit ihm markiert
+     * (sofern nicht inzwischen per Redelivery angewendet). Ist das Envelope selbst bereits angewendet
+     * (z. B. aus einem geparkten Streaming-Fenster), wird der Eintrag ohne Ausführung aufgelöst.
+     * Einträge von Szenario-Schritten wiederholen das ganze Szenario ({@link #retryScenario}).
+     */
+    private void retryParked(Connection connection, ParkingLot parkingLot, ParkedMessage parked) throws SQLException {
+        MDC.put(MdcKeys.MESSAGE_ID, parked.messageId());
+        SyncEnvelope env = null;
+        try {
+            List<SyncEnvelope> all = parkingLot.envelopesOf(parked);
+            env = all.get(all.size() - 1);
+            List<SyncEnvelope> open = notApplied(connection, all);
+            if (all.size() > 1 && env.scenarioId() != null) {
+                retryScenario(connection, parkingLot, all, open);
+                return;
+            }
+            if (open.isEmpty() || open.get(open.size() - 1) != env) {
+                parkingLot.resolved(connection, env.messageId());
+                connection.commit();
+                log.info("Geparktes Envelope war bereits angewendet (messageId={})", parked.messageId());
+                return;
+            }
+            List<SyncEnvelope> riders = open.subList(0, open.size() - 1);
+            if (!riders.isEmpty()) superseded.put(env.messageId(), riders);
+            execute(env, connection);
+            markApplied(connection, env);
+            parkingLot.resolved(connection, env.messageId());
+            connection.commit();
+            committed(List.of(env));
+            log.info("Geparktes Envelope verarbeitet (messageId={}, Versuch={})", parked.messageId(), parked.attempts() + 1);
+        } catch (Exception ex) {
+            connection.rollback();
+            options.getMetrics().envelopeFailed();
+            ParkedMessage next = parkingLot.retryFailed(connection, parked, ex);
+            connection.commit();
+            log.warn("Wiederholung fehlgeschlagen (messageId={}, Versuch={}, Zustand={}): {}",
+                    parked.messageId(), next.attempts(), next.state(), ex.getMessage());
+        } finally {
+            if (env != null) superseded.remove(env.messageId());
+            clearMdc();
+        }
+    }
+
+    /**
+     * Wiederholt ein geparktes Szenario: die noch nicht angewendeten Schritte in Schrittfolge samt Markern
+     * in einer Transaktion; danach werden die Einträge aller Schritte aufgelöst. Führt das COMMIT aus.
+     */
+    private void retryScenario(Connection connection, ParkingLot parkingLot, List<SyncEnvelope> steps,
+                               List<SyncEnvelope> open) throws SQLException {
+        for (SyncEnvelope step : open) {
+            putMdc(step);
+            execute(step, connection);
+        }
+        markAppliedBatch(connection, open);
+        for (SyncEnvelope step : steps) {
+            parkingLot.resolved(connection, step.messageId());
+        }
+        connection.commit();
+        committed(open);
+        log.info("Geparktes Szenario {} verarbeitet ({} von {} Schritten angewendet)",
+                steps.get(0).scenarioId(), open.size(), steps.size());
+    }
+
+    /**
+     * @return die Envelopes, die noch nicht als angewendet markiert sind
+     */
+    private List<SyncEnvelope> notApplied(Connection connection, List<SyncEnvelope> envelopes) throws SQLException {
+        if (envelopes.isEmpty()) return envelopes;
+        List<String> ids = new ArrayList<>(envelopes.size());
+        for (SyncEnvelope env : envelopes) {
+            if (!tracked(env)) ids.add(env.messageId());
+        }
+        Set<String> existing = ids.isEmpty() ? Set.of() : processedRepo.existingIds(connection, ids);
+        List<SyncEnvelope> open = new ArrayList<>(envelopes.size());
+        for (SyncEnvelope env : envelopes) {
+            boolean applied = tracked(env)
+                    ? options.getSequenceTracker().isDuplicate(connection, env)
+                    : existing.contains(env.messageId());
+            if (!applied) open.add(env);
+        }
+        return open;
+    }
+
+    private static void putMdc(SyncEnvelope env) {
+        MDC.put(MdcKeys.MESSAGE_ID, env.messageId());
+        MDC.put(MdcKeys.SQLJ_CLASS, env.sqljClassName());
+        MDC.put(MdcKeys.SQLJ_METHOD, env.sqljMethodName());
+    }
+
+    private static void clearMdc() {
+        MDC.remove(MdcKeys.MESSAGE_ID);
+        MDC.remove(MdcKeys.SQLJ_CLASS);
+        MDC.remove(MdcKeys.SQLJ_METHOD);
+    }
+
+    private void execute(SyncEnvelope env, Connection connection) {
+        if (connection == secondaryConnection) {
+            // Sequentieller Modus: Executor nutzt seine eigene (im Konstruktor gebundene) Connection
+            secondaryExecutor.execute(env);
+        } else {
+            secondaryExecutor.execute(env, connection);
+        }
+    }
+
+    /**
+     * Beendet den Prefetch-Thread (bereits vorab gelesene Batches werden noch angewendet) und fährt
+     * den Worker-Pool herunter. Connections gehören dem Aufrufer und werden **nicht** geschlossen.
+     * <p>
+     * Im Read-ahead-Modus wartet {@code close()} zuerst auf einen laufenden Poll und dann auf das Ende
+     * des Prefetch-Threads; erst danach werden die übrigen Batches auf der Worker-Connection angewendet.
+     */
+    @Override
+    public void close() {
+        if (prefetch != null) {
+            prefetch.close(batch -> apply(batch, firstWorkerConnection()));
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+
+    /**
+     * Benennt Worker-Threads für Logging/Thread-Dumps.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "syncdb2-replay-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
         }
     }
 }
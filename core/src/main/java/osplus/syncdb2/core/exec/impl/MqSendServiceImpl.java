@@ -6,11 +6,16 @@ import org.slf4j.MDC;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 import osplus.syncdb2.core.exception.MqSendException;
 import osplus.syncdb2.core.exec.MqSendService;
+import osplus.syncdb2.core.exec.PartitionSequencer;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
 import osplus.syncdb2.core.exec.SendToMqRepository;
 import osplus.syncdb2.core.logging.MdcKeys;
-import osplus.syncdb2.core.util.EnvelopeJson;
+import osplus.syncdb2.core.util.EnvelopeCodec;
+import osplus.syncdb2.core.util.JsonEnvelopeCodec;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Zweck
@@ -26,6 +31,11 @@ import java.sql.Connection;
  * bereits geöffneten Primary-Transaktion verwendet (Orchestrator-Ebene).
  * - Die Übergabe der JDBC-Connection kann projektabhängig via ThreadLocal oder
  * über den umgebenden Kontext erfolgen (hier exemplarisch im Konstruktor).
+ * - Mit {@link PartitionSequencer} wird jedes Envelope vor dem Senden mit Partition und
+ * Partitionssequenz gestempelt (in derselben Primary-Transaktion).
+ * - {@link #sendAll(List)} übergibt mehrere Envelopes in einem Aufruf
+ * ({@link SendToMqRepository#callSendToMqBatch}).
+ * - Das Wire-Format bestimmt ein {@link EnvelopeCodec} (Default: JSON).
  */
 public class MqSendServiceImpl implements MqSendService {
 
@@ -33,10 +43,36 @@ public class MqSendServiceImpl implements MqSendService {
 
     private final SendToMqRepository repository;
     private final Connection primaryConnection;
+    private final PartitionSequencer sequencer;
+    private final ReplicationMetrics metrics;
+    private final EnvelopeCodec codec;
 
     public MqSendServiceImpl(SendToMqRepository repository, Connection primaryConnection) {
+        this(repository, primaryConnection, null);
+    }
+
+    /**
+     * @param sequencer optionaler Sequenzgeber ({@code null} = Envelopes ohne Partitionssequenz)
+     */
+    public MqSendServiceImpl(SendToMqRepository repository, Connection primaryConnection, PartitionSequencer sequencer) {
+        this(repository, primaryConnection, sequencer, ReplicationMetrics.NOOP);
+    }
+
+    public MqSendServiceImpl(SendToMqRepository repository, Connection primaryConnection, PartitionSequencer sequencer,
+                             ReplicationMetrics metrics) {
+        this(repository, primaryConnection, sequencer, metrics, new JsonEnvelopeCodec());
+    }
+
+    /**
+     * @param codec Wire-Format der Nutzlast (Default: {@link JsonEnvelopeCodec})
+     */
+    public MqSendServiceImpl(SendToMqRepository repository, Connection primaryConnection, PartitionSequencer sequencer,
+                             ReplicationMetrics metrics, EnvelopeCodec codec) {
         this.repository = repository;
         this.primaryConnection = primaryConnection;
+        this.sequencer = sequencer;
+        this.metrics = metrics;
+        this.codec = codec;
     }
 
     @Override
@@ -46,13 +82,15 @@ public class MqSendServiceImpl implements MqSendService {
         MDC.put(MdcKeys.SQLJ_CLASS, envelope.sqljClassName());
         MDC.put(MdcKeys.SQLJ_METHOD, envelope.sqljMethodName());
         try {
-            String json = EnvelopeJson.toCanonicalJson(envelope);
+            SyncEnvelope stamped = sequencer != null ? sequencer.stamp(primaryConnection, envelope) : envelope;
+            String json = codec.encode(stamped);
             log.info("Sende Envelope via SEND_TO_MQ (messageId={})", messageId);
             SendToMqRepository.Result r = repository.callSendToMq(primaryConnection, json);
             if (r.status() != 0) {
                 log.error("SEND_TO_MQ meldet Fehler (status={}, msg={})", r.status(), r.errorMessage());
                 throw new MqSendException(r.status(), r.errorMessage());
             }
+            metrics.envelopeSent();
             log.info("SEND_TO_MQ erfolgreich (messageId={})", messageId);
         } catch (MqSendException e) {
             throw e; // führt zum Rollback in der umgebenden Tx
@@ -65,4 +103,36 @@ public class MqSendServiceImpl implements MqSendService {
             MDC.remove(MdcKeys.SQLJ_METHOD);
         }
     }
+
+    @Override
+    public void sendAll(List<SyncEnvelope> envelopes) {
+        if (envelopes.isEmpty()) return;
+        if (envelopes.size() == 1) {
+            send(envelopes.get(0));
+            return;
+        }
+        String firstId = envelopes.get(0).messageId();
+        try {
+            List<String> jsons = new ArrayList<>(envelopes.size());
+            for (SyncEnvelope envelope : envelopes) {
+                SyncEnvelope stamped = sequencer != null ? sequencer.stamp(primaryConnection, envelope) : envelope;
+                jsons.add(codec.encode(stamped));
+            }
+            log.info("Sende {} Envelopes via SEND_TO_MQ (Batch ab messageId={})", envelopes.size(), firstId);
+            SendToMqRepository.Result r = repository.callSendToMqBatch(primaryConnection, jsons);
+            if (r.status() != 0) {
+                log.error("SEND_TO_MQ (Batch) meldet Fehler (status={}, msg={})", r.status(), r.errorMessage());
+                throw new MqSendException(r.status(), r.errorMessage());
+            }
+            for (int i = 0; i < envelopes.size(); i++) {
+                metrics.envelopeSent();
+            }
+            log.info("SEND_TO_MQ (Batch) erfolgreich ({} Envelopes)", envelopes.size());
+        } catch (MqSendException e) {
+            throw e; // führt zum Rollback in der umgebenden Tx
+        } catch (Exception e) {
+            log.error("Fehler beim Aufruf von SEND_TO_MQ (Batch ab messageId={})", firstId, e);
+            throw new MqSendException(-1, "Technischer Fehler bei SEND_TO_MQ: " + e.getMessage());
+        }
+    }
 }
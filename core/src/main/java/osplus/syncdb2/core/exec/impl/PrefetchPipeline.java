@@ -0,0 +1,162 @@
+package osplus.syncdb2.core.exec.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import osplus.syncdb2.core.exec.MqReadBatch;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Zweck
+ * -----
+ * Read-ahead-Pipeline von {@link MqReceiveServiceImpl}: ein eigener Thread (`syncdb2-prefetch`) liest
+ * die nächsten Batches, während der aktuelle angewendet wird. Die Queue-Tiefe begrenzt den Speicherbedarf.
+ * <p>
+ * Hinweise
+ * --------
+ * - Der Thread startet mit dem ersten {@link #poll}. Technische Lesefehler werden als Batch mit Status -1
+ * weitergereicht (kein Spin: jeder Fehler belegt einen Queue-Platz).
+ * - Nach {@link #close} liefert {@link #poll} 0, statt weiter auf einen Batch zu warten.
+ * - {@link #close} wartet auf einen laufenden Poll und auf das Ende des Prefetch-Threads (ggf. bis ein
+ * laufendes `READ_FROM_MQ` zurückkehrt); erst danach werden die übrigen Batches angewendet.
+ */
+final class PrefetchPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefetchPipeline.class);
+
+    /**
+     * Liest einen Batch (im Prefetch-Thread).
+     */
+    interface BatchReader {
+        MqReadBatch read() throws Exception;
+    }
+
+    /**
+     * Wendet einen Batch an.
+     */
+    interface BatchHandler {
+        /**
+         * @return Anzahl empfangener Envelopes bzw. -1 bei Fehlerstatus
+         */
+        int apply(MqReadBatch batch) throws SQLException, InterruptedException;
+    }
+
+    private final BatchReader reader;
+    private final BlockingQueue<MqReadBatch> queue;
+    /** Hält ein laufender Poll, damit {@link #close} erst danach die Vorab-Batches anwendet. */
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private volatile boolean closed;
+    private volatile Thread prefetcher;
+    private volatile MqReadBatch leftover;
+
+    PrefetchPipeline(int depth, BatchReader reader) {
+        this.reader = reader;
+        this.queue = new ArrayBlockingQueue<>(depth);
+    }
+
+    /**
+     * Führt {@code beforeTake} aus (z. B. Wiederholung geparkter Envelopes), nimmt den nächsten vorab
+     * gelesenen Batch und übergibt ihn an {@code handler}.
+     *
+     * @return Ergebnis von {@code handler} bzw. 0 nach {@link #close}
+     */
+    int poll(Runnable beforeTake, BatchHandler handler) throws InterruptedException, SQLException {
+        pollLock.lockInterruptibly();
+        try {
+            if (closed) return 0;
+            beforeTake.run();
+            if (prefetcher == null) {
+                Thread t = new Thread(this::prefetchLoop, "syncdb2-prefetch");
+                t.setDaemon(true);
+                prefetcher = t;
+                t.start();
+            }
+            MqReadBatch batch;
+            while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (closed) return 0;
+            }
+            return handler.apply(batch);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Beendet den Prefetch-Thread und übergibt alle bereits gelesenen Batches an {@code handler}:
+     * `READ_FROM_MQ` hat sie schon entnommen.
+     */
+    void close(BatchHandler handler) {
+        closed = true;
+        pollLock.lock();
+        try {
+            Thread t = prefetcher;
+            if (t == null) return;
+            boolean interrupted = awaitPrefetcher(t);
+            List<MqReadBatch> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            if (leftover != null) remaining.add(leftover);
+            for (MqReadBatch batch : remaining) {
+                try {
+                    handler.apply(batch);
+                } catch (Exception e) {
+                    log.error("Vorab gelesener Batch konnte beim Schließen nicht angewendet werden: {}", e.getMessage(), e);
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Liest Batches vorab, bis die Queue voll ist.
+     */
+    private void prefetchLoop() {
+        while (!closed) {
+            MqReadBatch batch;
+            try {
+                batch = reader.read();
+            } catch (Exception e) {
+                log.error("READ_FROM_MQ (Prefetch): Technischer Fehler: {}", e.getMessage(), e);
+                batch = new MqReadBatch(List.of(), -1, e.getMessage());
+            }
+            try {
+                while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        leftover = batch;
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                leftover = batch;
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wartet ohne Zeitlimit auf das Ende des Prefetch-Threads: solange er läuft, kann er noch einen
+     * Batch ablegen, der sonst verloren ginge.
+     *
+     * @return {@code true}, wenn der wartende Thread unterbrochen wurde (Flag vom Aufrufer wiederherzustellen)
+     */
+    private static boolean awaitPrefetcher(Thread t) {
+        boolean interrupted = false;
+        while (t.isAlive()) {
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(30));
+                if (t.isAlive()) log.warn("close(): Warte auf laufendes READ_FROM_MQ des Prefetch-Threads");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        return interrupted;
+    }
+}
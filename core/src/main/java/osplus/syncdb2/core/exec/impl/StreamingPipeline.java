@@ -0,0 +1,187 @@
+package osplus.syncdb2.core.exec.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.util.EnvelopeParser;
+import osplus.syncdb2.core.util.ShardedRingBuffer;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Zweck
+ * -----
+ * Lese-/Verteil-Pipeline des Streaming-Modus von {@link MqReceiveServiceImpl}: dekodiert den
+ * `READ_FROM_MQ`-CLOB inkrementell und übergibt die Envelopes fensterweise an einen {@link WindowHandler}.
+ * <p>
+ * Hinweise
+ * --------
+ * - Ohne Ringpuffer werden die Fenster im lesenden Thread angewendet (Shard {@code -1}); das Lesen
+ * pausiert währenddessen.
+ * - Mit {@link ShardedRingBuffer} veröffentlicht der lesende Thread jedes Envelope mit seinem Shard; je
+ * Shard entnimmt ein Worker laufend seine Fenster. Ist der Puffer voll, wartet der Leser.
+ * - Scheitert ein Fenster, wird es an {@link WindowHandler#failed} übergeben (Parken) und weitergelesen;
+ * bereits aus der MQ entnommene Envelopes gehen so nicht verloren, und der Leser blockiert nicht.
+ */
+final class StreamingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingPipeline.class);
+
+    /**
+     * Wendet Fenster an bzw. nimmt gescheiterte Fenster entgegen.
+     */
+    interface WindowHandler {
+
+        /**
+         * Shard eines Envelopes im Ringpuffer-Modus; wird nur vom lesenden Thread aufgerufen.
+         */
+        int shardOf(SyncEnvelope env);
+
+        /**
+         * Prüft ein Fenster auf Duplikate und wendet es an.
+         *
+         * @param shard Shard im Ringpuffer-Modus, sonst {@code -1}
+         */
+        void apply(int shard, List<SyncEnvelope> window) throws Exception;
+
+        /**
+         * Fenster konnte nicht angewendet werden; darf keine Exception werfen.
+         */
+        void failed(int shard, List<SyncEnvelope> window, Exception cause);
+    }
+
+    private final EnvelopeParser parser;
+    private final int windowSize;
+    private final ShardedRingBuffer<SyncEnvelope> ring;
+    private final ExecutorService workerPool;
+
+    /**
+     * @param ring       Ringpuffer ({@code null} = Fenster im lesenden Thread)
+     * @param workerPool Threads der Shard-Worker (nur mit Ringpuffer)
+     */
+    StreamingPipeline(EnvelopeParser parser, int windowSize, ShardedRingBuffer<SyncEnvelope> ring,
+                      ExecutorService workerPool) {
+        this.parser = parser;
+        this.windowSize = windowSize;
+        this.ring = ring;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Liest den Zeichenstrom vollständig und wendet alle Fenster an.
+     *
+     * @return Anzahl gelesener Envelopes
+     */
+    int run(Reader reader, WindowHandler handler) {
+        return ring != null ? runThroughRing(reader, handler) : runInline(reader, handler);
+    }
+
+    private int runInline(Reader reader, WindowHandler handler) {
+        int count = 0;
+        Iterator<SyncEnvelope> it = parser.stream(reader);
+        List<SyncEnvelope> pending = new ArrayList<>(windowSize);
+        try {
+            while (it.hasNext()) {
+                pending.add(it.next());
+                count++;
+                if (pending.size() == windowSize) {
+                    applyWindow(-1, pending, handler);
+                    pending = new ArrayList<>(windowSize);
+                }
+            }
+            if (!pending.isEmpty()) {
+                applyWindow(-1, pending, handler);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("READ_FROM_MQ: Streaming unterbrochen nach {} Envelopes", count);
+        }
+        return count;
+    }
+
+    /**
+     * Ringpuffer-Modus: der lesende Thread dekodiert und veröffentlicht, je Shard entnimmt ein Worker.
+     */
+    private int runThroughRing(Reader reader, WindowHandler handler) {
+        ring.reset();
+        int shards = ring.shards();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<Future<?>> consumers = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            consumers.add(workerPool.submit(() -> consumeShard(shard, mdc, handler)));
+        }
+        int count = 0;
+        try {
+            Iterator<SyncEnvelope> it = parser.stream(reader);
+            while (it.hasNext()) {
+                SyncEnvelope env = it.next();
+                ring.publish(env, handler.shardOf(env));
+                count++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("READ_FROM_MQ: Streaming unterbrochen nach {} Envelopes", count);
+        } finally {
+            ring.close();
+            awaitConsumers(consumers);
+        }
+        return count;
+    }
+
+    /**
+     * Worker eines Shards: entnimmt bis zum Schließen des Puffers Fenster von höchstens
+     * {@code windowSize} Envelopes.
+     */
+    private void consumeShard(int shard, Map<String, String> mdc, WindowHandler handler) {
+        if (mdc != null) MDC.setContextMap(mdc);
+        List<SyncEnvelope> pending = new ArrayList<>(windowSize);
+        try {
+            int n;
+            while ((n = ring.drain(shard, pending, windowSize)) >= 0) {
+                if (n == 0) continue;
+                applyWindow(shard, pending, handler);
+                pending = new ArrayList<>(windowSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ring.detach(shard);
+            MDC.clear();
+        }
+    }
+
+    private static void applyWindow(int shard, List<SyncEnvelope> window, WindowHandler handler)
+            throws InterruptedException {
+        try {
+            handler.apply(shard, window);
+        } catch (InterruptedException e) {
+            handler.failed(shard, window, e);
+            throw e;
+        } catch (Exception e) {
+            handler.failed(shard, window, e);
+        }
+    }
+
+    private static void awaitConsumers(List<Future<?>> consumers) {
+        for (Future<?> f : consumers) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                consumers.forEach(c -> c.cancel(true));
+                return;
+            } catch (ExecutionException e) {
+                log.error("Replay-Partition abgebrochen: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package osplus.syncdb2.core.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Zweck
+ * -----
+ * Schreibt die kanonische Darstellung von {@link SyncEnvelope} direkt über einen {@link JsonGenerator},
+ * ohne Zwischenbaum ({@code ObjectNode}/{@code valueToTree}). Das Ergebnis ist Zeichen für Zeichen
+ * identisch mit der bisherigen baumbasierten Serialisierung.
+ * <p>
+ * Hinweise
+ * --------
+ * - Feste Feldreihenfolge wie bisher; optionale Felder nur, wenn gesetzt.
+ * - Maps in {@code params} (auch verschachtelt) mit sortierten Schlüsseln.
+ * - {@link BigDecimal} wird wie im Baum normalisiert (ohne nachlaufende Nullen, {@code 0} für Null).
+ * - Seltene Parametertypen (z. B. Datumswerte, Arrays, POJOs, Maps mit Nicht-String-Schlüsseln) werden
+ * weiterhin über den Baum des Mappers geschrieben, damit die Darstellung unverändert bleibt.
+ * - Der Zeichenpuffer wird je Thread wiederverwendet; zu groß gewordene Puffer werden verworfen.
+ * - Hash-Modus ({@code exactFloats}): {@code double}/{@code float} als exakter Dezimalwert statt über
+ * {@link Double#toString}, dessen kürzeste Darstellung sich zwischen JDK-Versionen unterscheiden kann.
+ * {@link #digest} schreibt die UTF-8-Bytes ohne Zwischen-String direkt in den Digest.
+ */
+final class CanonicalEnvelopeWriter {
+
+    /** Größere Puffer werden nach Gebrauch nicht aufbewahrt. */
+    private static final int MAX_RETAINED_CHARS = 64 * 1024;
+
+    private static final ThreadLocal<CharBuffer> BUFFER = ThreadLocal.withInitial(CharBuffer::new);
+
+    private final ObjectMapper mapper;
+    private final boolean exactFloats;
+
+    /**
+     * @param mapper kanonisch konfigurierter Mapper (Generator-Einstellungen, Fallback für seltene Typen)
+     */
+    CanonicalEnvelopeWriter(ObjectMapper mapper) {
+        this(mapper, false);
+    }
+
+    /**
+     * @param mapper      kanonisch konfigurierter Mapper
+     * @param exactFloats {@code double}/{@code float} als exakter Dezimalwert (Hash-Modus)
+     */
+    CanonicalEnvelopeWriter(ObjectMapper mapper, boolean exactFloats) {
+        this.mapper = mapper;
+        this.exactFloats = exactFloats;
+    }
+
+    /**
+     * Serialisiert das Envelope als kanonisches JSON.
+     */
+    String toJson(SyncEnvelope env) throws IOException {
+        return toJson(gen -> write(gen, env));
+    }
+
+    /**
+     * Serialisiert nur die stabilen Felder für die Hash-Bildung.
+     */
+    String toJson(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version)
+            throws IOException {
+        return toJson(gen -> writeHashFields(gen, sqljClassName, sqljMethodName, params, version));
+    }
+
+    /**
+     * Schreibt die UTF-8-Bytes der stabilen Felder direkt in den Digest (wie {@link #toJson(String, String, Map, String)}).
+     */
+    void digest(MessageDigest md, String sqljClassName, String sqljMethodName, Map<String, Object> params,
+                String version) throws IOException {
+        try (JsonGenerator gen = mapper.createGenerator(new DigestOutputStream(OutputStream.nullOutputStream(), md), JsonEncoding.UTF8)) {
+            writeHashFields(gen, sqljClassName, sqljMethodName, params, version);
+        }
+    }
+
+    private String toJson(Body body) throws IOException {
+        CharBuffer buffer = BUFFER.get();
+        try {
+            try (JsonGenerator gen = mapper.createGenerator(buffer)) {
+                body.write(gen);
+            }
+            return buffer.toString();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Schreibt das Envelope als JSON-Objekt in den Generator.
+     */
+    void write(JsonGenerator gen, SyncEnvelope env) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("messageId", env.messageId());
+        gen.writeStringField("sqljClassName", env.sqljClassName());
+        gen.writeStringField("sqljMethodName", env.sqljMethodName());
+        gen.writeFieldName("params");
+        writeValue(gen, env.params());
+        if (env.scenarioId() != null) gen.writeStringField("scenarioId", env.scenarioId());
+        if (env.stepIndex() != null) gen.writeNumberField("stepIndex", env.stepIndex());
+        gen.writeStringField("version", env.version());
+        if (env.correlationId() != null) gen.writeStringField("correlationId", env.correlationId());
+        gen.writeStringField("createdAt", env.createdAt().toString());
+        if (env.partition() != null) gen.writeStringField("partition", env.partition());
+        if (env.sequence() != null) gen.writeNumberField("sequence", env.sequence());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Schreibt die stabilen Felder (ohne messageId, createdAt und Tracing-Felder) als JSON-Objekt.
+     */
+    void writeHashFields(JsonGenerator gen, String sqljClassName, String sqljMethodName, Map<String, Object> params,
+                         String version) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("sqljClassName", sqljClassName);
+        gen.writeStringField("sqljMethodName", sqljMethodName);
+        gen.writeFieldName("params");
+        writeValue(gen, params);
+        gen.writeStringField("version", version);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Schreibt einen Parameterwert; Maps mit sortierten Schlüsseln.
+     */
+    void writeValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String s) {
+            gen.writeString(s);
+        } else if (value instanceof Boolean b) {
+            gen.writeBoolean(b);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            gen.writeNumber(((Number) value).longValue());
+        } else if (exactFloats && (value instanceof Double || value instanceof Float)) {
+            writeExact(gen, ((Number) value).doubleValue());
+        } else if (value instanceof Double d) {
+            gen.writeNumber(d);
+        } else if (value instanceof Float f) {
+            gen.writeNumber(f);
+        } else if (value instanceof BigDecimal bd) {
+            gen.writeNumber(bd.signum() == 0 ? BigDecimal.ZERO : bd.stripTrailingZeros());
+        } else if (value instanceof BigInteger bi) {
+            gen.writeNumber(bi);
+        } else if (value instanceof Map<?, ?> map && hasStringKeys(map)) {
+            writeSortedMap(gen, map);
+        } else if (value instanceof Collection<?> items) {
+            gen.writeStartArray();
+            for (Object item : items) {
+                writeValue(gen, item);
+            }
+            gen.writeEndArray();
+        } else {
+            mapper.writeTree(gen, mapper.valueToTree(value));
+        }
+    }
+
+    private void writeSortedMap(JsonGenerator gen, Map<?, ?> map) throws IOException {
+        String[] keys = map.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        gen.writeStartObject();
+        for (String key : keys) {
+            gen.writeFieldName(key);
+            writeValue(gen, map.get(key));
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeExact(JsonGenerator gen, double d) throws IOException {
+        if (Double.isFinite(d)) {
+            BigDecimal exact = new BigDecimal(d);
+            gen.writeNumber(exact.signum() == 0 ? BigDecimal.ZERO : exact.stripTrailingZeros());
+        } else {
+            gen.writeString(Double.toString(d));
+        }
+    }
+
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) return false;
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Wiederverwendbarer, nicht synchronisierter Zeichenpuffer.
+     */
+    private static final class CharBuffer extends Writer {
+
+        private StringBuilder chars = new StringBuilder(512);
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            chars.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            chars.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(int c) {
+            chars.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return chars.toString();
+        }
+
+        void reset() {
+            if (chars.capacity() > MAX_RETAINED_CHARS) {
+                chars = new StringBuilder(512);
+            } else {
+                chars.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package osplus.syncdb2.core.util;
+
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Zweck
+ * -----
+ * `messageId` als SHA-256 (64 Hex-Zeichen) über die kanonische Darstellung der stabilen Felder
+ * ({@link EnvelopeJson#toCanonicalJsonForHash}); Default von {@link EnvelopeFactory}.
+ * <p>
+ * Hinweise
+ * --------
+ * - Gleicher Aufruf → gleiche Id, unabhängig vom Zeitpunkt (siehe {@link MessageIdStrategy}).
+ * - Die Bytes werden ohne Zwischen-String direkt in den Digest des Threads geschrieben.
+ */
+public final class ContentHashMessageIdStrategy implements MessageIdStrategy {
+
+    @Override
+    public String messageId(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version,
+                            Instant createdAt) {
+        MessageDigest md = HashingUtil.sha256();
+        EnvelopeJson.digestForHash(md, sqljClassName, sqljMethodName, params, version);
+        return HashingUtil.toHex(md.digest());
+    }
+}
@@ -0,0 +1,39 @@
+package osplus.syncdb2.core.util;
+
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+/**
+ * Zweck
+ * -----
+ * Wire-Format eines Envelopes auf dem Weg `SEND_TO_MQ` → `READ_FROM_MQ`.
+ * <p>
+ * Hinweise
+ * --------
+ * - Die Nutzlast muss ein **JSON-Wert** sein, da `READ_FROM_MQ` die Nachrichten zu einem JSON-Array
+ * zusammenfügt. Einziges Format ist derzeit {@link JsonEnvelopeCodec} (ein JSON-Objekt).
+ * - Der Empfänger erkennt das Format je Element ({@link EnvelopeParser}). Ein neues Format muss dort
+ * erkannt werden, bevor Sender es verwenden; Empfänger daher vor den Sendern aktualisieren.
+ * - Implementierungen müssen thread-sicher sein.
+ */
+public interface EnvelopeCodec {
+
+    /**
+     * @return Nutzlast für `SEND_TO_MQ` (ein JSON-Wert)
+     */
+    String encode(SyncEnvelope envelope);
+
+    /**
+     * Dekodiert eine einzelne, mit {@link #encode} erzeugte Nutzlast.
+     */
+    SyncEnvelope decode(String payload);
+
+    /**
+     * @param name {@code json}
+     */
+    static EnvelopeCodec forName(String name) {
+        return switch (name) {
+            case "json" -> new JsonEnvelopeCodec();
+            default -> throw new IllegalArgumentException("Unbekanntes Envelope-Format: " + name);
+        };
+    }
+}
@@ -4,12 +4,13 @@ import osplus.syncdb2.core.domain.SyncEnvelope;
 
 import java.time.Instant;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Zweck
  * -----
- * Fabrik zum Erzeugen von {@link SyncEnvelope}-Instanzen mit deterministischer
- * `messageId`-Bildung. Die Hash-Bildung erfolgt über **kanonisches JSON** der
+ * Fabrik zum Erzeugen von {@link SyncEnvelope}-Instanzen. Die `messageId` bildet eine
+ * {@link MessageIdStrategy}; Default ist der Hash über **kanonisches JSON** der
  * stabilen Felder (sqljClassName, sqljMethodName, params, version).
  * <p>
  * Verwendung
@@ -24,16 +25,50 @@ import java.util.Map;
  * <p>
  * Hinweise
  * --------
- * - Die Kanonisierung der JSON-Repräsentation muss **stabile Schlüsselreihenfolge**
- * sicherstellen. Dies kann z. B. durch eine Jackson-Konfiguration mit sortierten
- * Schlüsseln erreicht werden (Implementierung projektspezifisch).
+ * - Kanonisierung über {@link EnvelopeJson}: sortierte Schlüssel, normalisierte Zahlen
+ * (BigDecimal ohne nachlaufende Nullen, Gleitkommawerte als exakter Dezimalwert).
+ * - Die Bytes werden direkt in einen je Thread wiederverwendeten Digest geschrieben; die `messageId`
+ * ist damit JVM-übergreifend stabil: {@code sha256Hex(EnvelopeJson.toCanonicalJsonForHash(...))}.
+ * - Zeitlich aufsteigende Ids (besser für Einfügungen in `processed_message`): {@link TimeOrderedMessageIdStrategy}
+ * oder {@link TimePrefixedHashMessageIdStrategy}; Deduplizierung siehe {@link MessageIdStrategy}.
  */
 public final class EnvelopeFactory {
 
+    private static volatile MessageIdStrategy defaultStrategy = new ContentHashMessageIdStrategy();
+
     private EnvelopeFactory() {
     }
 
+    /**
+     * Setzt die prozessweite Strategie für {@link #create(String, String, Map, String, String, String, Integer)}
+     * (z. B. durch die Spring-Auto-Konfiguration).
+     */
+    public static void setDefaultStrategy(MessageIdStrategy strategy) {
+        defaultStrategy = Objects.requireNonNull(strategy, "strategy");
+    }
+
+    public static MessageIdStrategy defaultStrategy() {
+        return defaultStrategy;
+    }
+
+    public static SyncEnvelope create(
+            String sqljClassName,
+            String sqljMethodName,
+            Map<String, Object> params,
+            String version,
+            String correlationId,
+            String scenarioId,
+            Integer stepIndex
+    ) {
+        return create(defaultStrategy, sqljClassName, sqljMethodName, params, version, correlationId, scenarioId,
+                stepIndex);
+    }
+
+    /**
+     * Wie {@link #create(String, String, Map, String, String, String, Integer)}, mit expliziter Strategie.
+     */
     public static SyncEnvelope create(
+            MessageIdStrategy strategy,
             String sqljClassName,
             String sqljMethodName,
             Map<String, Object> params,
@@ -42,8 +77,8 @@ public final class EnvelopeFactory {
             String scenarioId,
             Integer stepIndex
     ) {
-        String canonicalJson = CanonicalJson.of(sqljClassName, sqljMethodName, params, version);
-        String messageId = HashingUtil.sha256Hex(canonicalJson);
+        Instant createdAt = Instant.now();
+        String messageId = strategy.messageId(sqljClassName, sqljMethodName, params, version, createdAt);
         return new SyncEnvelope(
                 messageId,
                 sqljClassName,
@@ -53,25 +88,7 @@ public final class EnvelopeFactory {
                 stepIndex,
                 version,
                 correlationId,
-                Instant.now()
+                createdAt
         );
     }
-
-    /**
-     * Platzhalter für eine kanonische JSON-Serialisierung (stabile Reihenfolge).
-     * Die konkrete Implementierung (z. B. Jackson mit sortierten Keys) wird im
-     * Projekt geliefert; hier nur die Signatur als Hinweis.
-     */
-    static final class CanonicalJson {
-        static String of(String cls, String mth, Map<String, Object> params, String version) {
-            // Pseudocode/Platzhalter: in der echten Implementierung JSON mit sortierten Keys erzeugen
-            String sb = "{" +
-                    "'sqljClassName':'" + cls + "'," +
-                    "'sqljMethodName':'" + mth + "'," +
-                    "'version':'" + version + "'," +
-                    "'params':" + params + // TODO: echte JSON-Kanonisierung
-                    "}";
-            return sb;
-        }
-    }
 }
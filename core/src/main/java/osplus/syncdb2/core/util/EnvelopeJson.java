@@ -1,6 +1,7 @@
 package osplus.syncdb2.core.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -8,6 +9,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Map;
 
 /**
@@ -20,9 +23,13 @@ import java.util.Map;
  * Hinweise
  * --------
  * - Verwendet Jackson mit aktivierter Sortierung der Map-Einträge.
+ * - {@link #toCanonicalJson} schreibt ohne Zwischenbaum direkt über einen Generator
+ * ({@link CanonicalEnvelopeWriter}).
  * - Datums-/Zeitwerte werden als ISO-Strings geschrieben (keine Timestamps).
  * - Felder, die nicht im Hash berücksichtigt werden sollen (z. B. createdAt),
  * dürfen für die Hash-Bildung separat serialisiert werden.
+ * - Hash-Darstellung zusätzlich JVM-unabhängig: {@code double}/{@code float} als exakter Dezimalwert,
+ * POJO-Properties alphabetisch; {@link #digestForHash} schreibt sie direkt in einen Digest.
  */
 public final class EnvelopeJson {
 
@@ -34,6 +41,17 @@ public final class EnvelopeJson {
 
             .build();
 
+    private static final CanonicalEnvelopeWriter WRITER = new CanonicalEnvelopeWriter(MAPPER);
+
+    private static final ObjectMapper HASH_MAPPER = JsonMapper.builder()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .addModule(new JavaTimeModule())
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .build();
+
+    private static final CanonicalEnvelopeWriter HASH_WRITER = new CanonicalEnvelopeWriter(HASH_MAPPER, true);
+
     private EnvelopeJson() {
     }
 
@@ -41,6 +59,17 @@ public final class EnvelopeJson {
      * Serialisiert das gesamte Envelope als kanonisches JSON.
      */
     public static String toCanonicalJson(SyncEnvelope env) {
+        try {
+            return WRITER.toJson(env);
+        } catch (IOException e) {
+            throw new IllegalStateException("Konnte Envelope nicht in kanonisches JSON serialisieren", e);
+        }
+    }
+
+    /**
+     * Bisherige, baumbasierte Serialisierung; Referenz für Kompatibilitätstest und Benchmark.
+     */
+    static String toCanonicalJsonTree(SyncEnvelope env) {
         try {
             ObjectNode root = MAPPER.createObjectNode();
             root.put("messageId", env.messageId());
@@ -52,6 +81,8 @@ public final class EnvelopeJson {
             root.put("version", env.version());
             if (env.correlationId() != null) root.put("correlationId", env.correlationId());
             root.put("createdAt", env.createdAt().toString());
+            if (env.partition() != null) root.put("partition", env.partition());
+            if (env.sequence() != null) root.put("sequence", env.sequence());
             return MAPPER.writeValueAsString(root);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Konnte Envelope nicht in kanonisches JSON serialisieren", e);
@@ -63,13 +94,20 @@ public final class EnvelopeJson {
      */
     public static String toCanonicalJsonForHash(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version) {
         try {
-            ObjectNode root = MAPPER.createObjectNode();
-            root.put("sqljClassName", sqljClassName);
-            root.put("sqljMethodName", sqljMethodName);
-            root.set("params", MAPPER.valueToTree(params));
-            root.put("version", version);
-            return MAPPER.writeValueAsString(root);
-        } catch (JsonProcessingException e) {
+            return HASH_WRITER.toJson(sqljClassName, sqljMethodName, params, version);
+        } catch (IOException e) {
+            throw new IllegalStateException("Konnte Hash-JSON nicht erzeugen", e);
+        }
+    }
+
+    /**
+     * Schreibt die UTF-8-Bytes von {@link #toCanonicalJsonForHash} direkt in den Digest (ohne Zwischen-String).
+     */
+    public static void digestForHash(MessageDigest md, String sqljClassName, String sqljMethodName,
+                                     Map<String, Object> params, String version) {
+        try {
+            HASH_WRITER.digest(md, sqljClassName, sqljMethodName, params, version);
+        } catch (IOException e) {
             throw new IllegalStateException("Konnte Hash-JSON nicht erzeugen", e);
         }
     }
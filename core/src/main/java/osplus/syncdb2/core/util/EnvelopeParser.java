@@ -1,12 +1,19 @@
 package osplus.syncdb2.core.util;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Zweck
@@ -18,22 +25,89 @@ import java.util.List;
  * --------
  * - Erwartet eine Array-Repräsentation: `[ {...}, {...} ]`.
  * - Fehlende Felder führen zu einer Validierungs-Exception (projektabhängig umsetzbar).
+ * - Die {@link ObjectReader} werden einmalig erzeugt und wiederverwendet (thread-sicher).
+ * - {@link #stream(Reader)} dekodiert inkrementell: jedes Envelope steht zur Verfügung,
+ * sobald es gelesen ist; das Array wird nie vollständig materialisiert.
+ * - Jedes Element muss ein JSON-Objekt sein ({@link JsonEnvelopeCodec}); andere Werte werden als
+ * unbekanntes Format abgewiesen.
  */
 public final class EnvelopeParser {
 
-    private final ObjectMapper mapper;
+    private final ObjectReader envelopeReader;
 
     public EnvelopeParser(ObjectMapper mapper) {
-        this.mapper = mapper;
+        this.envelopeReader = mapper.readerFor(SyncEnvelope.class);
     }
 
     public List<SyncEnvelope> fromJsonArray(String jsonArray) {
         if (jsonArray == null || jsonArray.isBlank()) return Collections.emptyList();
+        List<SyncEnvelope> envelopes = new ArrayList<>();
         try {
-            return mapper.readValue(jsonArray, new TypeReference<List<SyncEnvelope>>() {
-            });
-        } catch (IOException e) {
+            stream(new StringReader(jsonArray)).forEachRemaining(envelopes::add);
+        } catch (IllegalStateException e) {
             throw new IllegalStateException("Konnte Envelopes-Array nicht parsen", e);
         }
+        return envelopes;
+    }
+
+    /**
+     * Liefert einen Iterator, der die Array-Elemente einzeln aus dem Stream dekodiert.
+     * Der Aufrufer ist für das Schließen des Readers verantwortlich.
+     *
+     * @param jsonArray Zeichenstrom mit JSON-Array (oder {@code null}/leer)
+     * @return Iterator über die Envelopes; Parse-Fehler werden beim Iterieren als
+     * {@link IllegalStateException} gemeldet
+     */
+    public Iterator<SyncEnvelope> stream(Reader jsonArray) {
+        if (jsonArray == null) return Collections.emptyIterator();
+        try {
+            JsonParser parser = envelopeReader.createParser(jsonArray);
+            JsonToken first = parser.nextToken();
+            if (first == null) return Collections.emptyIterator();
+            if (first != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Envelopes-Payload ist kein JSON-Array (Token=" + first + ")");
+            }
+            JsonToken firstElement = parser.nextToken();
+            if (firstElement == JsonToken.END_ARRAY) return Collections.emptyIterator();
+            return new Iterator<>() {
+                private JsonToken current = firstElement;
+
+                @Override
+                public boolean hasNext() {
+                    if (current == null) {
+                        try {
+                            current = parser.nextToken();
+                        } catch (IOException | RuntimeException e) {
+                            throw new IllegalStateException("Konnte Envelopes-Stream nicht parsen", e);
+                        }
+                        if (current == null) {
+                            throw new IllegalStateException("Konnte Envelopes-Stream nicht parsen (Array nicht abgeschlossen)");
+                        }
+                    }
+                    return current != JsonToken.END_ARRAY;
+                }
+
+                @Override
+                public SyncEnvelope next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    JsonToken token = current;
+                    current = null;
+                    try {
+                        return decodeElement(parser, token);
+                    } catch (IOException | RuntimeException e) {
+                        throw new IllegalStateException("Konnte Envelopes-Stream nicht parsen", e);
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new IllegalStateException("Konnte Envelopes-Stream nicht öffnen", e);
+        }
+    }
+
+    private SyncEnvelope decodeElement(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            return envelopeReader.readValue(parser);
+        }
+        throw new IllegalStateException("Unbekanntes Envelope-Format (Token=" + token + ")");
     }
 }
@@ -14,9 +14,14 @@ import java.security.NoSuchAlgorithmException;
  * --------
  * - Eingaben müssen zuvor **kanonisch** serialisiert werden (stabile JSON-Reihenfolge).
  * - Diese Klasse kapselt nur die kryptografische Hash-Bildung.
+ * - Je Thread wird eine {@link MessageDigest}-Instanz wiederverwendet; Hex-Ausgabe über eine Nachschlagetabelle.
  */
 public final class HashingUtil {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(HashingUtil::newSha256);
+
     private HashingUtil() {
     }
 
@@ -24,14 +29,36 @@ public final class HashingUtil {
      * Bildet SHA-256 über den gegebenen Text (UTF-8) und liefert Hex-String.
      */
     public static String sha256Hex(String text) {
+        MessageDigest md = sha256();
+        return toHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Zurückgesetzter SHA-256-Digest des aktuellen Threads.
+     * Nur innerhalb eines Aufrufs verwenden (nicht speichern, nicht an andere Threads weitergeben).
+     */
+    public static MessageDigest sha256() {
+        MessageDigest md = SHA_256.get();
+        md.reset();
+        return md;
+    }
+
+    /**
+     * Kleinbuchstaben-Hex-Darstellung der Bytes.
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            out[2 * i] = HEX[b >>> 4];
+            out[2 * i + 1] = HEX[b & 0x0f];
+        }
+        return new String(out);
+    }
+
+    private static MessageDigest newSha256() {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(text.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(digest.length * 2);
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("SHA-256 nicht verfügbar", e);
         }
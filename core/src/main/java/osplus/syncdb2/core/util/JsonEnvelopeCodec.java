@@ -0,0 +1,44 @@
+package osplus.syncdb2.core.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.io.IOException;
+
+/**
+ * Zweck
+ * -----
+ * Default-Format: kanonisches JSON-Objekt ({@link EnvelopeJson#toCanonicalJson}).
+ */
+public final class JsonEnvelopeCodec implements EnvelopeCodec {
+
+    private final ObjectReader reader;
+
+    public JsonEnvelopeCodec() {
+        this(JsonMapper.builder().addModule(new JavaTimeModule()).build());
+    }
+
+    /**
+     * @param mapper JSON-Mapper des Empfängers (Module, {@code DeserializationFeature}s)
+     */
+    public JsonEnvelopeCodec(ObjectMapper mapper) {
+        this.reader = mapper.readerFor(SyncEnvelope.class);
+    }
+
+    @Override
+    public String encode(SyncEnvelope envelope) {
+        return EnvelopeJson.toCanonicalJson(envelope);
+    }
+
+    @Override
+    public SyncEnvelope decode(String payload) {
+        try {
+            return reader.readValue(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Konnte Envelope nicht parsen", e);
+        }
+    }
+}
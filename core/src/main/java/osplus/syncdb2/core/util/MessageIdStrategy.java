@@ -0,0 +1,37 @@
+package osplus.syncdb2.core.util;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Zweck
+ * -----
+ * Bildet die `messageId` eines neuen Envelopes ({@link EnvelopeFactory}). Die `messageId` ist der Schlüssel
+ * der Idempotenz auf Secondary (`processed_message`) und bestimmt, wo neue Einträge im Index landen.
+ * <p>
+ * Deduplizierung je Implementierung
+ * ---------------------------------
+ * - {@link ContentHashMessageIdStrategy} (Default): gleicher Aufruf (Klasse, Methode, Parameter, Version)
+ * → gleiche Id. Schützt vor Mehrfachzustellung **und** vor doppeltem Senden desselben Aufrufs; fachlich
+ * gewollte Wiederholungen identischer Aufrufe werden aber ebenfalls unterdrückt. Ids sind zufällig verteilt.
+ * - {@link TimeOrderedMessageIdStrategy}: eindeutige, zeitlich aufsteigende Id je Envelope (UUIDv7-Layout).
+ * Schützt nur vor Mehrfachzustellung desselben Envelopes; ein erneut erzeugtes Envelope für denselben
+ * Aufruf wird erneut angewendet. Neue Einträge landen am Ende des Index.
+ * - {@link TimePrefixedHashMessageIdStrategy}: Zeitfenster-Präfix + Inhalts-Hash. Identische Aufrufe im
+ * selben Zeitfenster werden dedupliziert, in verschiedenen Fenstern nicht. Einfügen erfolgt im Bereich
+ * des aktuellen Fensters.
+ * <p>
+ * Hinweise
+ * --------
+ * - Implementierungen müssen thread-sicher sein.
+ * - Die Id muss in `processed_message.message_id` passen (VARCHAR(128)).
+ */
+@FunctionalInterface
+public interface MessageIdStrategy {
+
+    /**
+     * @param createdAt Erzeugungszeitpunkt des Envelopes (wird als `createdAt` übernommen)
+     */
+    String messageId(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version,
+                     Instant createdAt);
+}
@@ -0,0 +1,91 @@
+package osplus.syncdb2.core.util;
+
+import java.util.UUID;
+
+/**
+ * Zweck
+ * -----
+ * Umrechnung zwischen der Textform einer `messageId` (Envelope, JSON, Logs, MDC) und ihrer kompakten
+ * Binärform für Speicherung und Caches.
+ * <p>
+ * Hinweise
+ * --------
+ * - UUID-Form (36 Zeichen, z. B. {@link TimeOrderedMessageIdStrategy}) → 16 Bytes.
+ * - Hex-Form gerader Länge (z. B. SHA-256 mit 64 Zeichen → 32 Bytes, {@link TimePrefixedHashMessageIdStrategy}
+ * mit 76 Zeichen → 38 Bytes) → Länge / 2 Bytes.
+ * - Nur die kanonische Textform wird umgerechnet: Kleinbuchstaben, 16 Bytes ausschließlich als UUID-Form.
+ * Text- und Binärform entsprechen sich damit eindeutig (keine Kollisionen, verlustfreie Rückrichtung).
+ * Die eingebauten Strategien erzeugen bereits diese Form.
+ */
+public final class MessageIds {
+
+    /** Obergrenze der Binärform (passt zu VARBINARY(64)). */
+    public static final int MAX_BINARY_LENGTH = 64;
+
+    private MessageIds() {
+    }
+
+    /**
+     * @return Binärform der Id
+     * @throws IllegalArgumentException wenn die Id nicht in kanonischer UUID- oder Hex-Form vorliegt
+     */
+    public static byte[] toBinary(String messageId) {
+        byte[] binary = tryToBinary(messageId);
+        if (binary == null) {
+            throw new IllegalArgumentException("messageId nicht in kanonischer UUID-/Hex-Form: " + messageId);
+        }
+        return binary;
+    }
+
+    /**
+     * @return Binärform der Id oder {@code null}, wenn sie nicht in kanonischer UUID- oder Hex-Form vorliegt
+     */
+    public static byte[] tryToBinary(String messageId) {
+        if (messageId == null || messageId.isEmpty()) return null;
+        int length = messageId.length();
+        if (length == 36 && isUuidForm(messageId)) {
+            return parseHex(messageId.replace("-", ""));
+        }
+        if ((length & 1) != 0 || length == 32 || length / 2 > MAX_BINARY_LENGTH) return null;
+        return parseHex(messageId);
+    }
+
+    /**
+     * @return kanonische Textform (16 Bytes als UUID, sonst Hex in Kleinbuchstaben)
+     */
+    public static String fromBinary(byte[] binary) {
+        if (binary.length == 16) {
+            return new UUID(getLong(binary, 0), getLong(binary, 8)).toString();
+        }
+        return HashingUtil.toHex(binary);
+    }
+
+    private static boolean isUuidForm(String s) {
+        return s.charAt(8) == '-' && s.charAt(13) == '-' && s.charAt(18) == '-' && s.charAt(23) == '-';
+    }
+
+    private static byte[] parseHex(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = hexValue(hex.charAt(2 * i));
+            int lo = hexValue(hex.charAt(2 * i + 1));
+            if (hi < 0 || lo < 0) return null;
+            out[i] = (byte) (hi << 4 | lo);
+        }
+        return out;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    private static long getLong(byte[] in, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (in[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
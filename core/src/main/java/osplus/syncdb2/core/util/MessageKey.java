@@ -0,0 +1,60 @@
+package osplus.syncdb2.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Zweck
+ * -----
+ * Kompakter Schlüssel für eine `messageId` in Maps und Sets (Binärform statt String).
+ * <p>
+ * Hinweise
+ * --------
+ * - Gleichheit über den Byte-Inhalt; der Hash wird einmal bei der Erzeugung berechnet.
+ * - {@link #toString()} liefert die kanonische Textform ({@link MessageIds#fromBinary}).
+ */
+public final class MessageKey {
+
+    private final byte[] bytes;
+    private final int hash;
+
+    private MessageKey(byte[] bytes) {
+        this.bytes = bytes;
+        this.hash = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException wenn die Id weder UUID- noch Hex-Form hat
+     */
+    public static MessageKey of(String messageId) {
+        return new MessageKey(MessageIds.toBinary(messageId));
+    }
+
+    /**
+     * Übernimmt das Array ohne Kopie (nicht mehr verändern).
+     */
+    public static MessageKey ofBinary(byte[] binary) {
+        return new MessageKey(binary);
+    }
+
+    /**
+     * @return Binärform (nicht verändern)
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof MessageKey other && hash == other.hash && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return MessageIds.fromBinary(bytes);
+    }
+}
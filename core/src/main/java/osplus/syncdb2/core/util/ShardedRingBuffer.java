@@ -0,0 +1,184 @@
+package osplus.syncdb2.core.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Zweck
+ * -----
+ * Begrenzter, lock-freier Ringpuffer für einen Produzenten und mehrere Konsumenten (Disruptor-Prinzip).
+ * Jeder Eintrag wird mit einer Shard-Nummer veröffentlicht; Konsument {@code i} liest ausschließlich
+ * die Einträge von Shard {@code i}, in Veröffentlichungsreihenfolge.
+ * <p>
+ * Hinweise
+ * --------
+ * - Slots werden einmal vorab angelegt und wiederverwendet; je Eintrag wird nichts allokiert.
+ * - Synchronisation nur über Sequenzen: der Produzent veröffentlicht per Release-Store auf den Cursor,
+ * jeder Konsument meldet seinen Lesefortschritt über eine eigene (gepolsterte) Gating-Sequenz.
+ * - Ist der Puffer voll, wartet {@link #publish} auf den langsamsten Konsumenten (Backpressure):
+ * erst aktives Warten, dann {@link Thread#yield()}, dann {@link LockSupport#parkNanos}.
+ * - Genau ein Thread darf {@link #publish} aufrufen, je Shard genau ein Thread {@link #drain}.
+ * - {@link #reset()} nur, wenn weder Produzent noch Konsumenten aktiv sind.
+ */
+public final class ShardedRingBuffer<E> {
+
+    /** Abstand der Gating-Sequenzen im Array (128 Byte), gegen False Sharing. */
+    private static final int STRIDE = 16;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Slot<E>[] slots;
+    private final int mask;
+    private final int shards;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLongArray gating;
+    private volatile boolean closed;
+
+    /** Nur vom Produzenten gelesen/geschrieben. */
+    private long next;
+    private long cachedMinGating;
+
+    /**
+     * @param capacity Anzahl Slots (Zweierpotenz)
+     * @param shards   Anzahl Konsumenten
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedRingBuffer(int capacity, int shards) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity muss eine Zweierpotenz sein: " + capacity);
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards muss >= 1 sein: " + shards);
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot<>();
+        }
+        this.mask = capacity - 1;
+        this.shards = shards;
+        this.gating = new AtomicLongArray(shards * STRIDE);
+    }
+
+    /**
+     * Veröffentlicht einen Eintrag für den angegebenen Shard; wartet, solange der Puffer voll ist.
+     *
+     * @throws InterruptedException wenn der Produzent beim Warten unterbrochen wird
+     */
+    public void publish(E value, int shard) throws InterruptedException {
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("shard außerhalb 0.." + (shards - 1) + ": " + shard);
+        }
+        long seq = next;
+        long wrapPoint = seq - slots.length;
+        if (wrapPoint >= cachedMinGating) {
+            int attempt = 0;
+            while (wrapPoint >= (cachedMinGating = minGating())) {
+                idle(attempt++);
+            }
+        }
+        Slot<E> slot = slots[(int) (seq & mask)];
+        slot.value = value;
+        slot.shard = shard;
+        next = seq + 1;
+        cursor.setRelease(next);
+    }
+
+    /**
+     * Übernimmt bis zu {@code max} veröffentlichte Einträge des Shards nach {@code out}; wartet, solange
+     * nichts Neues veröffentlicht ist.
+     *
+     * @return Anzahl übernommener Einträge (0, wenn nur Einträge anderer Shards anlagen);
+     * -1, wenn der Puffer geschlossen und vollständig gelesen ist
+     * @throws InterruptedException wenn der Konsument beim Warten unterbrochen wird
+     */
+    public int drain(int shard, List<? super E> out, int max) throws InterruptedException {
+        int index = shard * STRIDE;
+        long from = gating.get(index);
+        long available;
+        int attempt = 0;
+        while ((available = cursor.getAcquire()) == from) {
+            if (closed && cursor.getAcquire() == from) {
+                return -1;
+            }
+            idle(attempt++);
+        }
+        int taken = 0;
+        long seq = from;
+        for (; seq < available && taken < max; seq++) {
+            Slot<E> slot = slots[(int) (seq & mask)];
+            if (slot.shard == shard) {
+                out.add(slot.value);
+                taken++;
+            }
+        }
+        gating.setRelease(index, seq);
+        return taken;
+    }
+
+    /**
+     * Keine weiteren Einträge; Konsumenten erhalten nach dem letzten Eintrag -1.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Meldet einen Konsumenten ab (z. B. nach Abbruch), damit der Produzent nicht auf ihn wartet.
+     */
+    public void detach(int shard) {
+        gating.setRelease(shard * STRIDE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Setzt den Puffer für einen neuen Durchlauf zurück; Slot-Inhalte werden freigegeben.
+     */
+    public void reset() {
+        for (Slot<E> slot : slots) {
+            slot.value = null;
+        }
+        for (int i = 0; i < shards; i++) {
+            gating.set(i * STRIDE, 0);
+        }
+        next = 0;
+        cachedMinGating = 0;
+        closed = false;
+        cursor.set(0);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    private long minGating() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < shards; i++) {
+            min = Math.min(min, gating.getAcquire(i * STRIDE));
+        }
+        return min;
+    }
+
+    private static void idle(int attempt) throws InterruptedException {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private static final class Slot<E> {
+        E value;
+        int shard;
+    }
+}
@@ -0,0 +1,51 @@
+package osplus.syncdb2.core.util;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zweck
+ * -----
+ * Zeitlich aufsteigende `messageId` im UUIDv7-Layout (36 Zeichen): 48 Bit Millisekunden seit Epoch,
+ * 12 Bit Zähler, 62 Bit Zufall. Neue Einträge in `processed_message` landen damit am Ende des Index
+ * statt auf zufälligen Seiten.
+ * <p>
+ * Hinweise
+ * --------
+ * - Jede Id ist eindeutig; Deduplizierung nur bei Mehrfachzustellung desselben Envelopes
+ * (siehe {@link MessageIdStrategy}).
+ * - Innerhalb einer Instanz streng monoton: mehrere Ids je Millisekunde über den Zähler; läuft er über
+ * oder geht die Uhr zurück, wird der Zeitanteil der letzten Id fortgeschrieben.
+ * - Die String-Darstellung sortiert lexikografisch in Erzeugungsreihenfolge.
+ */
+public final class TimeOrderedMessageIdStrategy implements MessageIdStrategy {
+
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_MAX = (1 << COUNTER_BITS) - 1;
+
+    private long lastMillis = -1;
+    private int counter;
+
+    @Override
+    public String messageId(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version,
+                            Instant createdAt) {
+        return next(createdAt.toEpochMilli()).toString();
+    }
+
+    synchronized UUID next(long millis) {
+        if (millis > lastMillis) {
+            lastMillis = millis;
+            counter = ThreadLocalRandom.current().nextInt(COUNTER_MAX >> 1); // Reserve für weitere Ids
+        } else if (counter < COUNTER_MAX) {
+            counter++;
+        } else {
+            lastMillis++;
+            counter = 0;
+        }
+        long msb = (lastMillis & 0xFFFF_FFFF_FFFFL) << 16 | 0x7000L | counter;
+        long lsb = ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new UUID(msb, lsb);
+    }
+}
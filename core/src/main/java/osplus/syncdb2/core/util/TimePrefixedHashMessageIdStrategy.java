@@ -0,0 +1,45 @@
+package osplus.syncdb2.core.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Zweck
+ * -----
+ * `messageId` aus Zeitfenster-Präfix und Inhalts-Hash (76 Zeichen): 12 Hex-Zeichen für den Beginn des
+ * Fensters (Millisekunden seit Epoch) gefolgt vom SHA-256 der {@link ContentHashMessageIdStrategy}.
+ * <p>
+ * Hinweise
+ * --------
+ * - Identische Aufrufe im selben Fenster → gleiche Id (dedupliziert), in verschiedenen Fenstern nicht
+ * (siehe {@link MessageIdStrategy}).
+ * - Neue Einträge verteilen sich nur innerhalb des Index-Bereichs des aktuellen Fensters.
+ */
+public final class TimePrefixedHashMessageIdStrategy implements MessageIdStrategy {
+
+    private final long bucketMillis;
+    private final ContentHashMessageIdStrategy contentHash = new ContentHashMessageIdStrategy();
+
+    /**
+     * @param bucket Länge des Zeitfensters (mindestens 1 ms)
+     */
+    public TimePrefixedHashMessageIdStrategy(Duration bucket) {
+        if (bucket.toMillis() < 1) {
+            throw new IllegalArgumentException("bucket muss mindestens 1 ms sein: " + bucket);
+        }
+        this.bucketMillis = bucket.toMillis();
+    }
+
+    @Override
+    public String messageId(String sqljClassName, String sqljMethodName, Map<String, Object> params, String version,
+                            Instant createdAt) {
+        long start = Math.floorDiv(createdAt.toEpochMilli(), bucketMillis) * bucketMillis;
+        byte[] prefix = new byte[6];
+        for (int i = 5; i >= 0; i--) {
+            prefix[i] = (byte) start;
+            start >>>= 8;
+        }
+        return HashingUtil.toHex(prefix) + contentHash.messageId(sqljClassName, sqljMethodName, params, version, createdAt);
+    }
+}
@@ -3,7 +3,12 @@ package osplus.syncdb2.core.domain;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import osplus.syncdb2.core.util.EnvelopeFactory;
+import osplus.syncdb2.core.util.EnvelopeJson;
+import osplus.syncdb2.core.util.HashingUtil;
 
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -12,7 +17,7 @@ import static org.assertj.core.api.Assertions.assertThat;
  * Zweck
  * -----
  * Unit-Tests für EnvelopeFactory: Erzeugung eines SyncEnvelope
- * inklusive deterministischer messageId.
+ * inklusive deterministischer messageId (kanonischer Hash der stabilen Felder).
  */
 public class EnvelopeFactoryTest {
 
@@ -27,4 +32,28 @@ public class EnvelopeFactoryTest {
         );
         assertThat(e1.messageId()).isEqualTo(e2.messageId());
     }
+
+    @Test
+    @DisplayName("create: messageId unabhängig von Schlüsselreihenfolge und Zahlenskala, stabil über JVMs")
+    void create_canonicalMessageId() {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("amount", new BigDecimal("42.50"));
+        a.put("orderId", 123L);
+        a.put("rate", 0.1d);
+        a.put("items", List.of(Map.of("sku", "X", "qty", 2)));
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("items", List.of(Map.of("qty", 2, "sku", "X")));
+        b.put("rate", 0.1d);
+        b.put("orderId", 123L);
+        b.put("amount", new BigDecimal("42.5"));
+
+        SyncEnvelope e1 = EnvelopeFactory.create("cls", "mtd", a, "v1", "corr-1", null, null);
+        SyncEnvelope e2 = EnvelopeFactory.create("cls", "mtd", b, "v1", "corr-2", "scn", 1);
+        assertThat(e1.messageId()).isEqualTo(e2.messageId());
+        assertThat(e1.messageId())
+                .isEqualTo(HashingUtil.sha256Hex(EnvelopeJson.toCanonicalJsonForHash("cls", "mtd", a, "v1")))
+                .isEqualTo("d2c855ecdbc1a2bdfb5914e869df48fa29dad118dbe567973f6dcc182f90acc4");
+        assertThat(EnvelopeFactory.create("cls", "mtd", a, "v2", "corr-1", null, null).messageId())
+                .isNotEqualTo(e1.messageId());
+    }
 }
@@ -0,0 +1,51 @@
+package osplus.syncdb2.core.exec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für AdaptiveBatchSize: additives Wachstum, multiplikative Reduktion, Grenzen.
+ */
+public class AdaptiveBatchSizeTest {
+
+    @Test
+    @DisplayName("onBatch: Volle, schnelle Batches erhöhen additiv bis max; kurze Batches ändern nichts")
+    void onBatch_growsAdditively() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(10, 35, 20, Duration.ofMillis(5));
+
+        assertThat(size.onBatch(20, Duration.ofMillis(20), 0)).isEqualTo(30);
+        assertThat(size.onBatch(12, Duration.ofMillis(10), 0)).isEqualTo(30);
+        assertThat(size.onBatch(0, Duration.ZERO, 0)).isEqualTo(30);
+        assertThat(size.onBatch(30, Duration.ofMillis(30), 0)).isEqualTo(35);
+        assertThat(size.onBatch(35, Duration.ofMillis(35), 0)).isEqualTo(35);
+    }
+
+    @Test
+    @DisplayName("onBatch/onError: Verlangsamung und Fehler halbieren, nie unter min")
+    void onBatch_cutsMultiplicatively() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(10, 1000, 100, Duration.ofMillis(5));
+
+        assertThat(size.onBatch(100, Duration.ofMillis(600), 0)).isEqualTo(50);
+        assertThat(size.onBatch(10, Duration.ofMillis(1), 1)).isEqualTo(25);
+        assertThat(size.onError()).isEqualTo(12);
+        assertThat(size.onError()).isEqualTo(10);
+        assertThat(size.current()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Konstruktor: Startwert wird begrenzt, ungültige Parameter werden abgewiesen")
+    void constructor_validates() {
+        assertThat(new AdaptiveBatchSize(10, 20, 500, Duration.ofMillis(1)).current()).isEqualTo(20);
+        assertThatThrownBy(() -> new AdaptiveBatchSize(0, 20, 10, Duration.ofMillis(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdaptiveBatchSize(1, 20, 10, Duration.ofMillis(1), 1, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
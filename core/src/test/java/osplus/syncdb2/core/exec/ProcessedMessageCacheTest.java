@@ -0,0 +1,113 @@
+package osplus.syncdb2.core.exec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import osplus.syncdb2.core.util.BloomFilter;
+import osplus.syncdb2.core.util.HashingUtil;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für ProcessedMessageCache: Treffer nach Commit, Größen-/TTL-Verdrängung, Bloom-Negative,
+ * kompakte Schlüssel.
+ */
+public class ProcessedMessageCacheTest {
+
+    @Test
+    @DisplayName("recordProcessed: Treffer nur für committete Ids; älteste Einträge werden bei maxSize verdrängt")
+    void record_hit_andSizeEviction() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(2, Duration.ofMinutes(5));
+        assertThat(cache.isProcessed("m1")).isFalse();
+
+        cache.recordProcessed(List.of("m1", "m2", "m3"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.isProcessed("m1")).isFalse();
+        assertThat(cache.isProcessed("m2")).isTrue();
+        assertThat(cache.isProcessed("m3")).isTrue();
+        assertThat(cache.hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("TTL: abgelaufene Einträge gelten als unbekannt")
+    void ttl_expires() throws Exception {
+        ProcessedMessageCache cache = new ProcessedMessageCache(100, Duration.ofMillis(20));
+        cache.recordProcessed(List.of("m1"));
+        assertThat(cache.isProcessed("m1")).isTrue();
+        Thread.sleep(40);
+        assertThat(cache.isProcessed("m1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Verdrängung: Abgelaufene und erneut aufgenommene Id verdrängt nicht den frischen Eintrag")
+    void eviction_skipsStaleQueueEntries() throws Exception {
+        ProcessedMessageCache cache = new ProcessedMessageCache(3, Duration.ofMillis(400));
+        cache.recordProcessed(List.of("mA", "m1"));
+        Thread.sleep(200);
+        // mA erneuert (bleibt vorn in der Reihenfolge), x kommt hinzu
+        cache.recordProcessed(List.of("mA", "x"));
+        Thread.sleep(250);
+        // m1 abgelaufen, mA und x noch gültig: m1 wird frisch aufgenommen
+        assertThat(cache.isProcessed("m1")).isFalse();
+        cache.recordProcessed(List.of("m1"));
+        cache.recordProcessed(List.of("m2"));
+        cache.recordProcessed(List.of("m3"));
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.isProcessed("x")).isFalse();
+        assertThat(cache.isProcessed("m1")).isTrue();
+        assertThat(cache.isProcessed("m2")).isTrue();
+        assertThat(cache.isProcessed("m3")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Bloom-Filter: sichere Negative erst nach warmUp; vorhandene Ids nie als neu gemeldet")
+    void bloom_definiteNegatives_afterWarmUp() throws Exception {
+        ProcessedMessageRepository repo = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.doAnswer(inv -> {
+            Consumer<String> c = inv.getArgument(1);
+            for (int i = 0; i < 1000; i++) c.accept("old-" + i);
+            return null;
+        }).when(repo).forEachId(Mockito.any(), Mockito.any());
+        ProcessedMessageCache cache = new ProcessedMessageCache(10, Duration.ofMinutes(5), new BloomFilter(10_000, 0.01));
+
+        assertThat(cache.isDefinitelyNew("new-1")).isFalse();
+        cache.warmUp(repo, Mockito.mock(Connection.class));
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(cache.isDefinitelyNew("old-" + i)).isFalse();
+        }
+        int negatives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.isDefinitelyNew("new-" + i)) negatives++;
+        }
+        assertThat(negatives).isGreaterThan(950);
+        // Nach Commit neu hinzugekommene Ids sind ebenfalls kein sicheres Negativ mehr
+        cache.recordProcessed(List.of("new-1"));
+        assertThat(cache.isDefinitelyNew("new-1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("compactKeys: Hex-Ids binär gehalten, andere Ids als String; Verdrängung unverändert")
+    void compactKeys_mixedIds() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(2, Duration.ofMinutes(5), null, true);
+        String hash = HashingUtil.sha256Hex("a");
+        String uuid = "0190f1e2-3a4b-7c5d-8e6f-0123456789ab";
+
+        cache.recordProcessed(List.of("plain-1", hash, uuid));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.isProcessed("plain-1")).isFalse();
+        assertThat(cache.isProcessed(hash)).isTrue();
+        assertThat(cache.isProcessed(uuid)).isTrue();
+        assertThat(cache.isProcessed(hash.toUpperCase())).isFalse();
+    }
+}
@@ -7,6 +7,9 @@ import org.mockito.Mockito;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -45,4 +48,35 @@ public class ProcessedMessageRepositoryTest {
         repo.markProcessed(conn, "m1");
         Mockito.verify(ps, Mockito.times(1)).executeUpdate();
     }
+
+    @Test
+    @DisplayName("existingIds: Ein Statement, eine Abfrage je Chunk, liefert gefundene Ids")
+    void existingIds_chunked() throws Exception {
+        Connection conn = Mockito.mock(Connection.class);
+        PreparedStatement ps = Mockito.mock(PreparedStatement.class);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(conn.prepareStatement(Mockito.anyString())).thenReturn(ps);
+        Mockito.when(ps.executeQuery()).thenReturn(rs);
+        Mockito.when(rs.next()).thenReturn(true, false, false, false);
+        Mockito.when(rs.getString(1)).thenReturn("m7");
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < ProcessedMessageRepository.IN_CHUNK_SIZE * 2 + 5; i++) {
+            ids.add("m" + i);
+        }
+        ProcessedMessageRepository repo = new ProcessedMessageRepository();
+        Set<String> found = repo.existingIds(conn, ids);
+
+        assertThat(found).containsExactly("m7");
+        Mockito.verify(conn, Mockito.times(1)).prepareStatement(Mockito.anyString());
+        Mockito.verify(ps, Mockito.times(3)).executeQuery();
+    }
+
+    @Test
+    @DisplayName("existingIds: Leere Eingabe -> keine DB-Abfrage")
+    void existingIds_empty() throws Exception {
+        Connection conn = Mockito.mock(Connection.class);
+        assertThat(new ProcessedMessageRepository().existingIds(conn, List.of())).isEmpty();
+        Mockito.verifyNoInteractions(conn);
+    }
 }
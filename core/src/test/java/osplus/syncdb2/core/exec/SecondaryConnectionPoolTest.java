@@ -0,0 +1,79 @@
+package osplus.syncdb2.core.exec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für SecondaryConnectionPool: Wiederverwendung, Ersatz defekter Connections, Sättigung.
+ */
+public class SecondaryConnectionPoolTest {
+
+    @Test
+    @DisplayName("borrow/release: Connection wird wiederverwendet, offene Tx bei Rückgabe zurückgerollt")
+    void reuse_andResetOnRelease() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Connection c1 = Mockito.mock(Connection.class);
+        Mockito.when(ds.getConnection()).thenReturn(c1);
+        Mockito.when(c1.getAutoCommit()).thenReturn(false);
+
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 2);
+        Connection borrowed = pool.borrow();
+        assertThat(pool.stats().active()).isEqualTo(1);
+        pool.release(borrowed);
+        assertThat(pool.borrow()).isSameAs(c1);
+
+        Mockito.verify(ds, Mockito.times(1)).getConnection();
+        Mockito.verify(c1).rollback();
+        Mockito.verify(c1).setAutoCommit(true);
+    }
+
+    @Test
+    @DisplayName("borrow: ungültige Connection (nach Idle-Fenster) wird verworfen und ersetzt")
+    void brokenConnection_replaced() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Connection stale = Mockito.mock(Connection.class);
+        Connection fresh = Mockito.mock(Connection.class);
+        Mockito.when(ds.getConnection()).thenReturn(stale, fresh);
+        Mockito.when(stale.getAutoCommit()).thenReturn(true);
+        Mockito.when(stale.isValid(Mockito.anyInt())).thenReturn(false);
+
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 1, Duration.ofSeconds(1), Duration.ZERO);
+        pool.release(pool.borrow());
+
+        assertThat(pool.borrow()).isSameAs(fresh);
+        Mockito.verify(stale).close();
+        assertThat(pool.stats().replaced()).isEqualTo(1);
+        assertThat(pool.stats().created()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("borrow: erschöpfter Pool -> Timeout, Sättigung und Wartezähler werden ausgewiesen")
+    void exhausted_timesOut() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(inv -> Mockito.mock(Connection.class));
+
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 1, Duration.ofMillis(20), Duration.ofMillis(500));
+        Connection held = pool.borrow();
+        assertThat(pool.stats().saturation()).isEqualTo(1.0);
+
+        assertThatThrownBy(pool::borrow).isInstanceOf(SQLTransientConnectionException.class);
+        SecondaryConnectionPool.Stats stats = pool.stats();
+        assertThat(stats.waitCount()).isEqualTo(1);
+        assertThat(stats.timeouts()).isEqualTo(1);
+
+        pool.release(held, true);
+        assertThat(pool.stats().active()).isZero();
+        Mockito.verify(held).close();
+    }
+}
@@ -7,6 +7,7 @@ import osplus.syncdb2.core.domain.SyncEnvelope;
 
 import java.sql.Connection;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -50,4 +51,26 @@ public class SecondarySqljExecutorTest {
 
         Mockito.verify(adapter, Mockito.times(1)).execute(Mockito.eq(conn), Mockito.anyMap());
     }
+
+    @Test
+    @DisplayName("executeBatch: ein Adapter-Aufruf für den ganzen Lauf; gemischte Adapter -> IllegalArgumentException")
+    void executeBatch_delegatesOnce() throws Exception {
+        SqljRegistry reg = Mockito.mock(SqljRegistry.class);
+        @SuppressWarnings("unchecked")
+        SqljAdapter<Object> adapter = Mockito.mock(SqljAdapter.class);
+        Mockito.when(reg.findAdapter("C", "M")).thenReturn(Optional.of(adapter));
+        Connection conn = Mockito.mock(Connection.class);
+        SecondarySqljExecutor ex = new SecondarySqljExecutor(reg, conn);
+
+        SyncEnvelope e1 = new SyncEnvelope("m1", "C", "M", Map.of("k", 1), null, null, "v1", "c1", Instant.now());
+        SyncEnvelope e2 = new SyncEnvelope("m2", "C", "M", Map.of("k", 2), null, null, "v1", "c1", Instant.now());
+        ex.executeBatch(List.of(e1, e2), conn);
+
+        Mockito.verify(adapter).executeBatch(conn, List.of(Map.of("k", 1), Map.of("k", 2)));
+        Mockito.verify(adapter, Mockito.never()).execute(Mockito.any(), Mockito.anyMap());
+
+        SyncEnvelope other = new SyncEnvelope("m3", "C", "X", Map.of(), null, null, "v1", "c1", Instant.now());
+        assertThatThrownBy(() -> ex.executeBatch(List.of(e1, other), conn))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
@@ -0,0 +1,63 @@
+package osplus.syncdb2.core.exec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Tests für SendToMqRepository: Batch-Übergabe über die SQLJ-Bindung bzw. je Envelope.
+ */
+public class SendToMqRepositoryTest {
+
+    @Test
+    @DisplayName("callSendToMqBatch: Unterklasse mit eigenem callSendToMq erhält jedes Envelope, Abbruch beim ersten Fehler")
+    void batch_subclassOverridingSingleCall() throws Exception {
+        List<String> sent = new ArrayList<>();
+        SendToMqRepository repo = new SendToMqRepository() {
+            @Override
+            public Result callSendToMq(Connection connection, String envelopeJson) {
+                sent.add(envelopeJson);
+                return envelopeJson.equals("e2") ? new Result(5, "Fehler") : new Result(0, null);
+            }
+        };
+        Connection conn = Mockito.mock(Connection.class);
+
+        assertThat(repo.callSendToMqBatch(conn, List.of("e0", "e1")).status()).isZero();
+        assertThat(sent).containsExactly("e0", "e1");
+
+        sent.clear();
+        SendToMqRepository.Result r = repo.callSendToMqBatch(conn, List.of("e1", "e2", "e3"));
+        assertThat(r.status()).isEqualTo(5);
+        assertThat(r.errorMessage()).isEqualTo("Fehler");
+        assertThat(sent).containsExactly("e1", "e2");
+    }
+
+    @Test
+    @DisplayName("callSendToMqBatch: Ein Aufruf nur bei echter Batch-Bindung, sonst je Envelope")
+    void batch_onlyWhenBindingSupportsIt() throws Exception {
+        Connection conn = Mockito.mock(Connection.class);
+        List<String> jsons = List.of("e0", "e1");
+
+        SendToMqSqlj single = Mockito.mock(SendToMqSqlj.class);
+        Mockito.when(single.callSendToMq(Mockito.any(), Mockito.anyString()))
+                .thenReturn(new SendToMqSqlj.Result(0, null));
+        assertThat(new SendToMqRepository(single).callSendToMqBatch(conn, jsons).status()).isZero();
+        Mockito.verify(single, Mockito.times(2)).callSendToMq(Mockito.eq(conn), Mockito.anyString());
+        Mockito.verify(single, Mockito.never()).callSendToMqBatch(Mockito.any(), Mockito.anyList());
+
+        SendToMqSqlj batch = Mockito.mock(SendToMqSqlj.class);
+        Mockito.when(batch.supportsBatch()).thenReturn(true);
+        Mockito.when(batch.callSendToMqBatch(conn, jsons)).thenReturn(new SendToMqSqlj.Result(0, null));
+        assertThat(new SendToMqRepository(batch).callSendToMqBatch(conn, jsons).status()).isZero();
+        Mockito.verify(batch).callSendToMqBatch(conn, jsons);
+        Mockito.verify(batch, Mockito.never()).callSendToMq(Mockito.any(), Mockito.anyString());
+    }
+}
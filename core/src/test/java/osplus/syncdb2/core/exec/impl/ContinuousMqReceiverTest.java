@@ -0,0 +1,90 @@
+package osplus.syncdb2.core.exec.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import osplus.syncdb2.core.exec.MqReceiveService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für ContinuousMqReceiver: Drain bei vollen Batches, Backoff bei leerer Queue, Drain beim Stop.
+ */
+public class ContinuousMqReceiverTest {
+
+    @Test
+    @DisplayName("Volle Batches -> sofortiger Re-Poll; leere Queue -> Backoff bis Maximum")
+    void fullBatches_pollImmediately_emptyBacksOff() throws Exception {
+        AtomicInteger backlog = new AtomicInteger(35);
+        List<Long> pollTimes = new CopyOnWriteArrayList<>();
+        CountDownLatch idlePolls = new CountDownLatch(6);
+        MqReceiveService service = new MqReceiveService() {
+            @Override
+            public void pollOnce() {
+                pollAndCount();
+            }
+
+            @Override
+            public int pollAndCount() {
+                pollTimes.add(System.nanoTime());
+                int n = Math.min(10, backlog.getAndUpdate(b -> Math.max(0, b - 10)));
+                if (n == 0) idlePolls.countDown();
+                return n;
+            }
+        };
+
+        ContinuousMqReceiver receiver = new ContinuousMqReceiver(service, 10, Duration.ofMillis(20), Duration.ofMillis(80));
+        receiver.start();
+        assertThat(idlePolls.await(5, TimeUnit.SECONDS)).isTrue();
+        receiver.stop(Duration.ofSeconds(1));
+
+        // 3 volle Batches ohne Pause, dann kurzer Batch (5)
+        assertThat(backlog.get()).isZero();
+        long burst = TimeUnit.NANOSECONDS.toMillis(pollTimes.get(3) - pollTimes.get(0));
+        assertThat(burst).isLessThan(20);
+        // Leere Polls (ab Index 4): Backoff 20 -> 40 -> 80 (Maximum), jeweils mit Jitter [50 %, 100 %]
+        long gap1 = TimeUnit.NANOSECONDS.toMillis(pollTimes.get(6) - pollTimes.get(5));
+        long gap3 = TimeUnit.NANOSECONDS.toMillis(pollTimes.get(8) - pollTimes.get(7));
+        assertThat(gap1).isGreaterThanOrEqualTo(19);
+        assertThat(gap3).isGreaterThanOrEqualTo(39).isLessThan(500);
+    }
+
+    @Test
+    @DisplayName("stop: volle Batches werden ohne Wartezeit abgearbeitet, bis die Queue leer ist")
+    void stop_drainsFullBatches() throws Exception {
+        AtomicInteger backlog = new AtomicInteger();
+        CountDownLatch firstPoll = new CountDownLatch(1);
+        MqReceiveService service = new MqReceiveService() {
+            @Override
+            public void pollOnce() {
+                pollAndCount();
+            }
+
+            @Override
+            public int pollAndCount() {
+                firstPoll.countDown();
+                return Math.min(5, backlog.getAndUpdate(b -> Math.max(0, b - 5)));
+            }
+        };
+
+        ContinuousMqReceiver receiver = new ContinuousMqReceiver(service, 5, Duration.ofSeconds(10), Duration.ofSeconds(10));
+        receiver.start();
+        assertThat(firstPoll.await(5, TimeUnit.SECONDS)).isTrue();
+        // Receiver wartet jetzt im Backoff; neue Nachrichten kommen an
+        backlog.set(23);
+        long start = System.nanoTime();
+        receiver.stop(Duration.ofSeconds(5));
+
+        assertThat(backlog.get()).isZero();
+        assertThat(receiver.isRunning()).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+    }
+}
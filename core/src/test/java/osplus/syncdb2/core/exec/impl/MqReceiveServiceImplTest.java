@@ -6,13 +6,42 @@ import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import osplus.syncdb2.core.config.ReplayOptions;
 import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.ParkedMessage;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.State;
+import osplus.syncdb2.core.exec.ParkingLot;
+import osplus.syncdb2.core.exec.ProcessedMessageCache;
 import osplus.syncdb2.core.exec.ProcessedMessageRepository;
 import osplus.syncdb2.core.exec.ReadFromMqRepository;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
+import osplus.syncdb2.core.exec.SecondaryConnectionPool;
 import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SqljAdapter;
 
+import javax.sql.DataSource;
+import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  * Zweck
@@ -64,4 +93,982 @@ public class MqReceiveServiceImplTest {
         Mockito.verify(executor, Mockito.times(1)).execute(Mockito.any(SyncEnvelope.class));
         Mockito.verify(processed, Mockito.times(1)).markProcessed(Mockito.any(), Mockito.eq("m1"));
     }
+
+    @Test
+    @DisplayName("pollOnce: Bereits verarbeitete und doppelte Envelopes werden vorab per Set-Abfrage aussortiert")
+    void pollOnce_dropsDuplicatesUpFront() throws Exception {
+        String e1 = "{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        String e2 = "{\"messageId\":\"m2\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + e1 + "," + e2 + "," + e2 + "]", 0, null));
+
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of("m1"));
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, 10, mapper);
+        svc.pollOnce();
+
+        Mockito.verify(processed, Mockito.never()).exists(Mockito.any(), Mockito.anyString());
+        Mockito.verify(executor, Mockito.times(1)).execute(Mockito.argThat(env -> env.messageId().equals("m2")));
+        Mockito.verify(processed, Mockito.times(1)).markProcessed(Mockito.any(), Mockito.eq("m2"));
+        Mockito.verify(processed, Mockito.never()).markProcessed(Mockito.any(), Mockito.eq("m1"));
+    }
+
+    @Test
+    @DisplayName("pollOnce: Messwerte für Batch, Duplikate, angewendete Envelopes und Verzögerung")
+    void pollOnce_reportsMetrics() throws Exception {
+        String e1 = "{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        String e2 = "{\"messageId\":\"m2\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + e1 + "," + e2 + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of("m1"));
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+        ReplicationMetrics metrics = Mockito.mock(ReplicationMetrics.class);
+        ReplayOptions options = new ReplayOptions();
+        options.setMetrics(metrics);
+
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(metrics).batchRead(Mockito.eq(2), Mockito.any(Duration.class));
+        Mockito.verify(metrics).duplicatesSkipped(1);
+        Mockito.verify(metrics).envelopesApplied(1);
+        Mockito.verify(metrics).replicationLag(Mockito.argThat(lag -> lag.toDays() > 0));
+        Mockito.verify(metrics, Mockito.never()).envelopeFailed();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Streaming): Envelopes werden fensterweise aus dem CLOB-Stream angewendet, Lese-Connection bleibt unberührt")
+    void pollOnce_streaming_appliesWindows() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        String json = "[" + String.join(",", entries) + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.streamFromMq(Mockito.any(), Mockito.anyInt(), Mockito.any()))
+                .thenAnswer(inv -> inv.<ReadFromMqRepository.PayloadHandler<?>>getArgument(2)
+                        .handle(new StringReader(json), 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection readConn = Mockito.mock(Connection.class);
+        Connection worker = Mockito.mock(Connection.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setStreamingRead(true);
+        options.setStreamWindowSize(2);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, readConn, List.of(worker), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(repo, Mockito.never()).callReadFromMq(Mockito.any(), Mockito.anyInt());
+        Mockito.verify(processed, Mockito.times(3)).existingIds(Mockito.eq(worker), Mockito.anyCollection());
+        Mockito.verify(executor, Mockito.times(5)).execute(Mockito.any(SyncEnvelope.class), Mockito.eq(worker));
+        Mockito.verify(processed, Mockito.times(5)).markProcessed(Mockito.eq(worker), Mockito.anyString());
+        Mockito.verifyNoInteractions(readConn);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Ringpuffer): Leser veröffentlicht in den Puffer, je Partition wendet ein Worker in Reihenfolge an")
+    void pollOnce_ringBuffer_appliesPerPartition() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"correlationId\":\"c" + (i % 3) + "\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        String json = "[" + String.join(",", entries) + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.streamFromMq(Mockito.any(), Mockito.anyInt(), Mockito.any()))
+                .thenAnswer(inv -> inv.<ReadFromMqRepository.PayloadHandler<?>>getArgument(2)
+                        .handle(new StringReader(json), 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Map<String, List<String>> order = new ConcurrentHashMap<>();
+        Mockito.doAnswer(inv -> {
+            SyncEnvelope env = inv.getArgument(0);
+            order.computeIfAbsent(env.correlationId(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(env.messageId());
+            return null;
+        }).when(executor).execute(Mockito.any(SyncEnvelope.class), Mockito.any(Connection.class));
+        Connection readConn = Mockito.mock(Connection.class);
+        Connection w1 = Mockito.mock(Connection.class);
+        Connection w2 = Mockito.mock(Connection.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setStreamingRead(true);
+        options.setStreamWindowSize(3);
+        options.setRingBufferSize(4);
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, readConn, List.of(w1, w2),
+                10, mapper, options)) {
+            assertThat(svc.pollAndCount()).isEqualTo(20);
+        }
+
+        Mockito.verify(executor, Mockito.times(20)).execute(Mockito.any(SyncEnvelope.class), Mockito.any(Connection.class));
+        for (List<String> ids : order.values()) {
+            List<Integer> numbers = ids.stream().map(id -> Integer.parseInt(id.substring(1))).collect(Collectors.toList());
+            assertThat(numbers).isSorted();
+        }
+        Mockito.verifyNoInteractions(readConn);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Ringpuffer): Fenster mit gescheiterter Duplikatprüfung wird geparkt, nicht verworfen")
+    void pollOnce_ringBuffer_parksFailedWindow() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"correlationId\":\"c1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        String json = "[" + String.join(",", entries) + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.streamFromMq(Mockito.any(), Mockito.anyInt(), Mockito.any()))
+                .thenAnswer(inv -> inv.<ReadFromMqRepository.PayloadHandler<?>>getArgument(2)
+                        .handle(new StringReader(json), 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection()))
+                .thenThrow(new SQLException("dedup failed"))
+                .thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Set<String> parked = ConcurrentHashMap.newKeySet();
+        Mockito.when(parkingLot.park(Mockito.any(), Mockito.any(SyncEnvelope.class), Mockito.anyList(), Mockito.any()))
+                .thenAnswer(inv -> {
+                    parked.add(inv.<SyncEnvelope>getArgument(1).messageId());
+                    return new ParkedMessage("m", "{}", 1, Instant.now(), State.RETRY, "dedup failed");
+                });
+        Connection w1 = Mockito.mock(Connection.class);
+        Connection w2 = Mockito.mock(Connection.class);
+        Mockito.when(w1.getAutoCommit()).thenReturn(true);
+        Mockito.when(w2.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setStreamingRead(true);
+        options.setStreamWindowSize(3);
+        options.setRingBufferSize(4);
+        options.setParkingLot(parkingLot);
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, Mockito.mock(Connection.class),
+                List.of(w1, w2), 10, mapper, options)) {
+            assertThat(svc.pollAndCount()).isEqualTo(6);
+        }
+
+        // Erstes Fenster (beginnt mit m1) geparkt, alle übrigen Envelopes angewendet
+        assertThat(parked).contains("m1");
+        for (int i = 1; i <= 6; i++) {
+            String id = "m" + i;
+            if (parked.contains(id)) {
+                Mockito.verify(executor, Mockito.never()).execute(Mockito.argThat(env -> env.messageId().equals(id)),
+                        Mockito.any(Connection.class));
+            } else {
+                Mockito.verify(processed).markProcessed(Mockito.any(Connection.class), Mockito.eq(id));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("pollOnce (Parkplatz): bereits angewendetes geparktes Envelope wird ohne erneute Ausführung aufgelöst")
+    void pollOnce_parked_alreadyAppliedResolvedWithoutReplay() throws Exception {
+        SyncEnvelope env = new SyncEnvelope("m1", "C", "M", Map.of(), null, null, "v1", "c1", Instant.parse("2025-08-27T10:00:00Z"));
+        ParkedMessage parked = new ParkedMessage("m1", "{}", 1, Instant.now(), State.RETRY, "dedup failed");
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Mockito.when(parkingLot.due(Mockito.any(), Mockito.anyInt())).thenReturn(List.of(parked));
+        Mockito.when(parkingLot.envelopesOf(parked)).thenReturn(List.of(env));
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt())).thenReturn(new ReadFromMqRepository.Result("[]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of("m1"));
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setParkingLot(parkingLot);
+        new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options).pollOnce();
+
+        Mockito.verify(parkingLot).resolved(conn, "m1");
+        Mockito.verifyNoInteractions(executor);
+        Mockito.verify(processed, Mockito.never()).markProcessed(Mockito.any(), Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("pollOnce (Szenarien): Schritte nach stepIndex in einer Transaktion; Fehler rollt das ganze Szenario zurück")
+    void pollOnce_scenarios_atomicPerScenario() throws Exception {
+        String json = "[" + String.join(",",
+                scenarioStep("m1", "Purchase", "c1", 1, "updateStock"),
+                scenarioStep("m2", "Purchase", "c2", 0, "insertOrder"),
+                scenarioStep("m3", "Purchase", "c1", 0, "insertOrder"),
+                scenarioStep("m4", "Purchase", "c2", 1, "updateStock"),
+                "{\"messageId\":\"m5\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}")
+                + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result(json, 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doThrow(new RuntimeException("boom")).when(executor)
+                .execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setScenarioTransactions(true);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        InOrder order = Mockito.inOrder(executor, processed, conn);
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m3")), Mockito.eq(conn));
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m1")), Mockito.eq(conn));
+        order.verify(processed).markProcessedBatch(conn, List.of("m3", "m1"));
+        order.verify(conn).commit();
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m2")), Mockito.eq(conn));
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.eq(conn));
+        order.verify(conn).rollback();
+        order.verify(executor).execute(Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m5")));
+        order.verify(processed).markProcessed(conn, "m5");
+        Mockito.verify(processed, Mockito.never()).markProcessedBatch(Mockito.eq(conn),
+                Mockito.argThat(ids -> ids.contains("m2")));
+        Mockito.verify(conn, Mockito.times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Szenarien): Scheitert der Commit, werden alle Schritte geparkt statt verworfen")
+    void pollOnce_scenarios_commitFailureParksSteps() throws Exception {
+        String json = "[" + String.join(",",
+                scenarioStep("m1", "Purchase", "c1", 0, "insertOrder"),
+                scenarioStep("m2", "Purchase", "c1", 1, "updateStock"))
+                + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result(json, 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        Mockito.doThrow(new SQLException("duplicate key")).when(processed)
+                .markProcessedBatch(Mockito.any(), Mockito.eq(List.of("m1", "m2")));
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Mockito.when(parkingLot.parkScenarioStep(Mockito.any(), Mockito.any(SyncEnvelope.class), Mockito.anyList(), Mockito.any()))
+                .thenReturn(new ParkedMessage("m", "{}", 1, Instant.now(), State.RETRY, "duplicate key"));
+
+        ReplayOptions options = new ReplayOptions();
+        options.setScenarioTransactions(true);
+        options.setParkingLot(parkingLot);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        // Jeder Schritt wird mit allen Schritten des Szenarios geparkt
+        InOrder order = Mockito.inOrder(processed, parkingLot, conn);
+        order.verify(processed).markProcessedBatch(conn, List.of("m1", "m2"));
+        order.verify(conn).rollback();
+        order.verify(parkingLot).parkScenarioStep(Mockito.eq(conn), Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m1")),
+                Mockito.argThat((List<SyncEnvelope> steps) -> ids(steps).equals(List.of("m1", "m2"))), Mockito.any());
+        order.verify(parkingLot).parkScenarioStep(Mockito.eq(conn), Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m2")),
+                Mockito.argThat((List<SyncEnvelope> steps) -> ids(steps).equals(List.of("m1", "m2"))), Mockito.any());
+        order.verify(conn).commit();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Szenarien): geparktes Szenario wird als Ganzes in Schrittfolge wiederholt, alle Einträge aufgelöst")
+    void pollOnce_scenarios_parkedScenarioRetriedAtomically() throws Exception {
+        List<SyncEnvelope> steps = List.of(
+                new SyncEnvelope("m1", "OrderSqlj", "insertOrder", Map.of(), "Purchase", 0, "v1", "c1", Instant.parse("2025-08-27T10:00:00Z")),
+                new SyncEnvelope("m2", "OrderSqlj", "updateStock", Map.of(), "Purchase", 1, "v1", "c1", Instant.parse("2025-08-27T10:00:00Z")));
+        ParkedMessage parked = new ParkedMessage("m2", "[]", 1, Instant.now(), State.RETRY, "boom");
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Mockito.when(parkingLot.due(Mockito.any(), Mockito.anyInt())).thenReturn(List.of(parked));
+        Mockito.when(parkingLot.envelopesOf(parked)).thenReturn(steps);
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt())).thenReturn(new ReadFromMqRepository.Result("[]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection worker = Mockito.mock(Connection.class);
+        Mockito.when(worker.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setScenarioTransactions(true);
+        options.setParkingLot(parkingLot);
+        new MqReceiveServiceImpl(repo, processed, executor, Mockito.mock(Connection.class), List.of(worker), 10, mapper, options)
+                .pollOnce();
+
+        InOrder order = Mockito.inOrder(executor, processed, parkingLot, worker);
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m1")), Mockito.eq(worker));
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m2")), Mockito.eq(worker));
+        order.verify(processed).markProcessedBatch(worker, List.of("m1", "m2"));
+        order.verify(parkingLot).resolved(worker, "m1");
+        order.verify(parkingLot).resolved(worker, "m2");
+        order.verify(worker, Mockito.atLeastOnce()).commit();
+        Mockito.verify(parkingLot, Mockito.never()).retryFailed(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("pollOnce (Szenarien): Szenario-Schritte folgen dem Partitionsschlüssel, Reihenfolge je Schlüssel bleibt erhalten")
+    void pollOnce_scenarios_shardedByPartitionKey() throws Exception {
+        String json = "[" + String.join(",",
+                "{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\","
+                        + "\"correlationId\":\"c1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}",
+                scenarioStep("m2", "Purchase", "c1", 0, "insertOrder"),
+                scenarioStep("m3", "Purchase", "c1", 1, "updateStock"),
+                "{\"messageId\":\"m4\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\","
+                        + "\"correlationId\":\"c1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}")
+                + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt())).thenReturn(new ReadFromMqRepository.Result(json, 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        Set<Connection> used = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(inv -> {
+            applied.add(inv.<SyncEnvelope>getArgument(0).messageId());
+            used.add(inv.getArgument(1));
+            return null;
+        }).when(executor).execute(Mockito.any(SyncEnvelope.class), Mockito.any(Connection.class));
+        List<Connection> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.getAutoCommit()).thenReturn(true);
+            workers.add(c);
+        }
+
+        ReplayOptions options = new ReplayOptions();
+        options.setScenarioTransactions(true);
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, Mockito.mock(Connection.class),
+                workers, 10, mapper, options)) {
+            svc.pollOnce();
+        }
+
+        // Alles mit correlationId c1 auf einem Worker, in Eingangsreihenfolge
+        assertThat(used).hasSize(1);
+        assertThat(applied).containsExactly("m1", "m2", "m3", "m4");
+    }
+
+    private static List<String> ids(List<SyncEnvelope> envelopes) {
+        return envelopes.stream().map(SyncEnvelope::messageId).collect(Collectors.toList());
+    }
+
+    private static String scenarioStep(String id, String scenario, String corr, int step, String method) {
+        return "{\"messageId\":\"" + id + "\",\"sqljClassName\":\"OrderSqlj\",\"sqljMethodName\":\"" + method
+                + "\",\"params\":{},\"scenarioId\":\"" + scenario + "\",\"stepIndex\":" + step
+                + ",\"version\":\"v1\",\"correlationId\":\"" + corr + "\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+    }
+
+    @Test
+    @DisplayName("pollOnce (Conflation): Überholte Updates derselben Zeile werden nicht ausgeführt, aber mitmarkiert")
+    void pollOnce_conflation_lastWriteWins() throws Exception {
+        String json = "[" + String.join(",",
+                productUpdate("m1", 1, "a"), productUpdate("m2", 2, "a"), productUpdate("m3", 1, "b"),
+                productUpdate("m4", 1, "c"))
+                + "]";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result(json, 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.when(executor.conflationKey(Mockito.any()))
+                .thenAnswer(inv -> String.valueOf(inv.<SyncEnvelope>getArgument(0).params().get("id")));
+        Connection conn = Mockito.mock(Connection.class);
+        ReplicationMetrics metrics = Mockito.mock(ReplicationMetrics.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(10);
+        options.setMetrics(metrics);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        InOrder order = Mockito.inOrder(executor, processed, conn);
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m2")), Mockito.eq(conn));
+        order.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.eq(conn));
+        order.verify(processed).markProcessedBatch(conn, List.of("m2", "m1", "m3", "m4"));
+        order.verify(conn).commit();
+        Mockito.verify(executor, Mockito.times(2)).execute(Mockito.any(SyncEnvelope.class), Mockito.any(Connection.class));
+        Mockito.verify(metrics).envelopesConflated(2);
+        Mockito.verify(metrics).envelopesApplied(2);
+    }
+
+    private static String productUpdate(String id, int productId, String name) {
+        return "{\"messageId\":\"" + id + "\",\"sqljClassName\":\"ProductSqlj\",\"sqljMethodName\":\"update\","
+                + "\"params\":{\"id\":" + productId + ",\"name\":\"" + name + "\"},\"version\":\"v1\","
+                + "\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+    }
+
+    @Test
+    @DisplayName("pollAndCount (adaptiv): READ_FROM_MQ nutzt das Limit des Reglers; voller Batch erhöht, Fehler senkt es")
+    void pollAndCount_adaptiveBatchSize() throws Exception {
+        String e1 = "{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        String e2 = "{\"messageId\":\"m2\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + e1 + "," + e2 + "]", 0, null))
+                .thenReturn(new ReadFromMqRepository.Result("[]", 999, "boom"));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(2, 8, 2, Duration.ofSeconds(1), 2, 0.5);
+        ReplayOptions options = new ReplayOptions();
+        options.setAdaptiveBatchSize(batchSize);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 50, mapper, options);
+
+        assertThat(svc.pollAndCount()).isEqualTo(2);
+        assertThat(batchSize.current()).isEqualTo(4);
+        assertThat(svc.pollAndCount()).isEqualTo(-1);
+        assertThat(batchSize.current()).isEqualTo(2);
+
+        InOrder order = Mockito.inOrder(repo);
+        order.verify(repo).callReadFromMq(conn, 2);
+        order.verify(repo).callReadFromMq(conn, 4);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Cache): Treffer ersparen die DB-Prüfung; nur committete Chunks füllen den Cache")
+    void pollOnce_cache_skipsDbForKnownIds() throws Exception {
+        String e1 = "{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        String e2 = "{\"messageId\":\"m2\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + e1 + "," + e2 + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doThrow(new RuntimeException("boom")).when(executor)
+                .execute(Mockito.argThat(env -> env.messageId().equals("m2")), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+
+        ProcessedMessageCache cache = new ProcessedMessageCache(100, Duration.ofMinutes(1));
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(2);
+        options.setProcessedCache(cache);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        assertThat(cache.isProcessed("m1")).isTrue();
+        assertThat(cache.isProcessed("m2")).isFalse();
+
+        // Redelivery: m1 aus dem Cache, nur m2 wird in der DB geprüft
+        svc.pollOnce();
+        Mockito.verify(processed).existingIds(conn, List.of("m2"));
+        // m1 nur im ersten Poll (Chunk-Versuch + Einzelwiederholung), nicht erneut
+        Mockito.verify(executor, Mockito.times(2)).execute(Mockito.argThat(env -> env.messageId().equals("m1")), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("pollOnce (Adapter-Batching): aufeinanderfolgende Envelopes desselben Adapters als ein Batch, Reihenfolge bleibt")
+    void pollOnce_adapterBatching_groupsConsecutiveRuns() throws Exception {
+        String[][] calls = {{"m1", "A"}, {"m2", "A"}, {"m3", "A"}, {"m4", "B"}, {"m5", "A"}};
+        List<String> entries = new ArrayList<>();
+        for (String[] c : calls) {
+            entries.add("{\"messageId\":\"" + c[0] + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"" + c[1]
+                    + "\",\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(10);
+        options.setAdapterBatching(true);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        InOrder inOrder = Mockito.inOrder(executor);
+        inOrder.verify(executor).executeBatch(Mockito.argThat(run -> run.stream().map(SyncEnvelope::messageId).toList()
+                .equals(List.of("m1", "m2", "m3"))), Mockito.eq(conn));
+        inOrder.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.eq(conn));
+        inOrder.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m5")), Mockito.eq(conn));
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m1", "m2", "m3", "m4", "m5"));
+        Mockito.verify(conn, Mockito.times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Savepoint-Modus): Fehler nimmt nur das betroffene Envelope zurück, ein Commit je Chunk")
+    void pollOnce_savepoints_rollBackOnlyFailedEnvelope() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doThrow(new RuntimeException("boom")).when(executor)
+                .execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+        Savepoint sp = Mockito.mock(Savepoint.class);
+        Mockito.when(conn.setSavepoint()).thenReturn(sp);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(10);
+        options.setSavepoints(true);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m1", "m2", "m3", "m5"));
+        Mockito.verify(conn, Mockito.times(5)).setSavepoint();
+        Mockito.verify(conn, Mockito.times(1)).rollback(sp);
+        Mockito.verify(conn, Mockito.never()).rollback();
+        Mockito.verify(conn, Mockito.times(1)).commit();
+        Mockito.verify(executor, Mockito.times(5)).execute(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("pollOnce (Savepoint-Modus): Scheitert der Commit, wird der Chunk einzeln wiederholt statt verworfen")
+    void pollOnce_savepoints_commitFailureReplaysEach() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doThrow(new RuntimeException("boom")).when(executor)
+                .execute(Mockito.argThat(env -> env.messageId().equals("m2")), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+        Mockito.when(conn.setSavepoint()).thenReturn(Mockito.mock(Savepoint.class));
+        // Commit des ganzen Chunks scheitert, danach gelingen die Einzel-Transaktionen
+        AtomicBoolean chunkMarked = new AtomicBoolean();
+        Mockito.doAnswer(inv -> {
+            chunkMarked.set(true);
+            return null;
+        }).when(processed).markProcessedBatch(conn, List.of("m1", "m3"));
+        Mockito.doAnswer(inv -> {
+            if (chunkMarked.getAndSet(false)) throw new SQLException("commit failed");
+            return null;
+        }).when(conn).commit();
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Mockito.when(parkingLot.park(Mockito.any(), Mockito.any(SyncEnvelope.class), Mockito.anyList(), Mockito.any()))
+                .thenReturn(new ParkedMessage("m2", "{}", 1, Instant.now(), State.RETRY, "boom"));
+        ReplicationMetrics metrics = Mockito.mock(ReplicationMetrics.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(10);
+        options.setSavepoints(true);
+        options.setParkingLot(parkingLot);
+        options.setMetrics(metrics);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        InOrder order = Mockito.inOrder(processed, parkingLot, conn);
+        order.verify(processed).markProcessedBatch(conn, List.of("m1", "m3"));
+        order.verify(conn).rollback();
+        order.verify(processed).markProcessedBatch(conn, List.of("m1"));
+        order.verify(parkingLot).park(Mockito.eq(conn), Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m2")),
+                Mockito.anyList(), Mockito.any());
+        order.verify(processed).markProcessedBatch(conn, List.of("m3"));
+        Mockito.verify(metrics, Mockito.times(1)).envelopeFailed();
+        Mockito.verify(metrics, Mockito.times(2)).envelopesApplied(1);
+        Mockito.verify(metrics, Mockito.never()).envelopesApplied(2);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Savepoint-Modus): Zeitgrenze schließt den Chunk vor Erreichen von N")
+    void pollOnce_savepoints_timeBoundClosesChunk() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doAnswer(inv -> {
+            Thread.sleep(15);
+            return null;
+        }).when(executor).execute(Mockito.any(), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(10);
+        options.setSavepoints(true);
+        options.setChunkMaxMillis(10);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m1"));
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m2"));
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m3"));
+        Mockito.verify(conn, Mockito.times(3)).commit();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Read-ahead): nächster Batch wird während des Replays gelesen; close() wendet Vorab-Batches an")
+    void pollOnce_prefetch_overlapsReadAndApply() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        CountDownLatch secondRead = new CountDownLatch(1);
+        Set<String> readThreads = ConcurrentHashMap.newKeySet();
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Connection readConn = Mockito.mock(Connection.class);
+        Mockito.when(repo.callReadFromMq(Mockito.eq(readConn), Mockito.anyInt())).thenAnswer(inv -> {
+            int n = reads.incrementAndGet();
+            readThreads.add(Thread.currentThread().getName());
+            if (n >= 2) secondRead.countDown();
+            String json = n > 3 ? "[]" : "[{\"messageId\":\"m" + n + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\","
+                    + "\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}]";
+            return new ReadFromMqRepository.Result(json, 0, null);
+        });
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        Mockito.doAnswer(inv -> {
+            overlapped.set(secondRead.await(2, TimeUnit.SECONDS));
+            return null;
+        }).when(executor).execute(Mockito.argThat(env -> env.messageId().equals("m1")), Mockito.any());
+        Connection worker = Mockito.mock(Connection.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setPrefetchDepth(1);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, readConn, List.of(worker), 10, mapper, options);
+        assertThat(svc.pollAndCount()).isEqualTo(1);
+        svc.close();
+
+        assertThat(overlapped).isTrue();
+        assertThat(readThreads).containsExactly("syncdb2-prefetch");
+        Mockito.verify(processed, Mockito.never()).existingIds(Mockito.eq(readConn), Mockito.anyCollection());
+        // Jeder gelesene Batch wird angewendet (m2 spätestens beim Schließen)
+        assertThat(reads.get()).isGreaterThanOrEqualTo(2);
+        for (int i = 1; i <= Math.min(reads.get(), 3); i++) {
+            Mockito.verify(processed).markProcessed(worker, "m" + i);
+        }
+    }
+
+    @Test
+    @DisplayName("close() (Read-ahead): wartender Poll endet, Batch eines laufenden Reads wird nach dessen Ende angewendet")
+    void close_prefetch_waitsForInFlightRead() throws Exception {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Connection readConn = Mockito.mock(Connection.class);
+        Mockito.when(repo.callReadFromMq(Mockito.eq(readConn), Mockito.anyInt())).thenAnswer(inv -> {
+            readStarted.countDown();
+            releaseRead.await();
+            return new ReadFromMqRepository.Result("[{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\","
+                    + "\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}]", 0, null);
+        });
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection worker = Mockito.mock(Connection.class);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setPrefetchDepth(1);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, readConn, List.of(worker), 10, mapper, options);
+        AtomicInteger received = new AtomicInteger(-2);
+        Thread poller = new Thread(() -> received.set(svc.pollAndCount()));
+        poller.start();
+        assertThat(readStarted.await(2, TimeUnit.SECONDS)).isTrue();
+
+        Thread closer = new Thread(svc::close);
+        closer.start();
+        poller.join(2000);
+        assertThat(poller.isAlive()).isFalse();
+        assertThat(received.get()).isZero();
+        // close() wartet auf das laufende READ_FROM_MQ, statt dessen Batch zu verlieren
+        closer.join(300);
+        assertThat(closer.isAlive()).isTrue();
+        Mockito.verify(processed, Mockito.never()).markProcessed(Mockito.any(), Mockito.anyString());
+
+        releaseRead.countDown();
+        closer.join(2000);
+        assertThat(closer.isAlive()).isFalse();
+        Mockito.verify(executor).execute(Mockito.argThat(env -> env.messageId().equals("m1")), Mockito.eq(worker));
+        Mockito.verify(processed).markProcessed(worker, "m1");
+    }
+
+    @Test
+    @DisplayName("pollOnce (Pool): Connections werden je Lesen/Prüfen/Worker ausgeliehen und vollständig zurückgegeben")
+    void pollOnce_pool_borrowsAndReleases() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"correlationId\":\"k" + (i % 3) + "\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(inv -> {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.getAutoCommit()).thenReturn(true);
+            return c;
+        });
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 3);
+
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, pool, 2, 10, mapper,
+                new ReplayOptions())) {
+            assertThat(svc.pollAndCount()).isEqualTo(6);
+        }
+
+        Mockito.verify(executor, Mockito.times(6)).execute(Mockito.any(), Mockito.any(Connection.class));
+        Mockito.verify(executor, Mockito.never()).execute(Mockito.any());
+        assertThat(pool.stats().active()).isZero();
+        assertThat(pool.stats().created()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Pool): Connection mit Verbindungsfehler im Replay wird verworfen, nicht erneut ausgegeben")
+    void pollOnce_pool_discardsLostConnection() throws Exception {
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[{\"messageId\":\"m1\",\"sqljClassName\":\"C\","
+                        + "\"sqljMethodName\":\"M\",\"params\":{},\"version\":\"v1\","
+                        + "\"createdAt\":\"2025-08-27T10:00:00Z\"}]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doThrow(new IllegalStateException(new java.sql.SQLNonTransientConnectionException("connection reset", "08006")))
+                .when(executor).execute(Mockito.any(), Mockito.any(Connection.class));
+        List<Connection> opened = new ArrayList<>();
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(inv -> {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.getAutoCommit()).thenReturn(true);
+            opened.add(c);
+            return c;
+        });
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 2);
+
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, pool, 1, 10, mapper,
+                new ReplayOptions())) {
+            svc.pollAndCount();
+            svc.pollAndCount();
+        }
+
+        // Die Replay-Connection jedes Polls wird geschlossen; der zweite Poll erhält eine neue
+        assertThat(opened).hasSize(2);
+        assertThat(pool.stats().replaced()).isEqualTo(2);
+        Mockito.verify(opened.get(0)).close();
+        Mockito.verify(opened.get(1)).close();
+    }
+
+    @Test
+    @DisplayName("pollOnce (virtuelle Threads): mehr Partitionen als Connections, Pool begrenzt die Parallelität")
+    void pollOnce_virtualThreads_boundedByPool() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"correlationId\":\"k" + i + "\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Set<Boolean> virtual = ConcurrentHashMap.newKeySet();
+        Mockito.doAnswer(inv -> {
+            virtual.add(Thread.currentThread().isVirtual());
+            return null;
+        }).when(executor).execute(Mockito.any(), Mockito.any(Connection.class));
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(inv -> {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.getAutoCommit()).thenReturn(true);
+            return c;
+        });
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 2);
+        ReplayOptions options = new ReplayOptions();
+        options.setVirtualThreads(true);
+
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, pool, 8, 10, mapper, options)) {
+            assertThat(svc.pollAndCount()).isEqualTo(8);
+        }
+
+        Mockito.verify(executor, Mockito.times(8)).execute(Mockito.any(), Mockito.any(Connection.class));
+        assertThat(virtual).containsExactly(true);
+        assertThat(pool.stats().active()).isZero();
+        assertThat(pool.stats().created()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("pollOnce (virtuelle Threads): Ausleih-Timeout bei mehr Partitionen als Connections führt zu Rückstau, nicht zu Verlust")
+    void pollOnce_virtualThreads_borrowTimeoutIsBackpressure() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"correlationId\":\"k" + i + "\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.when(processed.existingIds(Mockito.any(), Mockito.anyCollection())).thenReturn(Set.of());
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Mockito.doAnswer(inv -> {
+            Thread.sleep(100);
+            return null;
+        }).when(executor).execute(Mockito.any(), Mockito.any(Connection.class));
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(inv -> {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.getAutoCommit()).thenReturn(true);
+            return c;
+        });
+        SecondaryConnectionPool pool = new SecondaryConnectionPool(ds, 2, Duration.ofMillis(30), Duration.ofMillis(500));
+        ReplayOptions options = new ReplayOptions();
+        options.setVirtualThreads(true);
+
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, pool, 6, 10, mapper, options)) {
+            assertThat(svc.pollAndCount()).isEqualTo(6);
+        }
+
+        assertThat(pool.stats().timeouts()).isPositive();
+        for (int i = 1; i <= 6; i++) {
+            Mockito.verify(processed).markProcessed(Mockito.any(Connection.class), Mockito.eq("m" + i));
+        }
+        assertThat(pool.stats().active()).isZero();
+    }
+
+    @Test
+    @DisplayName("pollOnce (Chunk-Modus): Ein Commit je Chunk, Marker per Batch; Fehler -> Chunk einzeln wiederholt")
+    void pollOnce_chunked_commitsPerChunk() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        // m4 schlägt fehl -> Chunk [m3, m4] wird zurückgerollt und einzeln wiederholt
+        Mockito.doThrow(new RuntimeException("boom")).when(executor)
+                .execute(Mockito.argThat(env -> env.messageId().equals("m4")), Mockito.any());
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(2);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m1", "m2"));
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m3"));
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m5"));
+        Mockito.verify(processed, Mockito.never()).markProcessed(Mockito.any(), Mockito.anyString());
+        Mockito.verify(conn, Mockito.times(3)).commit();
+        Mockito.verify(conn, Mockito.times(2)).rollback();
+        Mockito.verify(conn, Mockito.atLeastOnce()).setAutoCommit(true);
+    }
+
+    @Test
+    @DisplayName("pollOnce (Chunk-Modus): Scheitert der Marker eines Envelopes, wird nur dieses geparkt")
+    void pollOnce_chunked_markerFailureParksEnvelope() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                    + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        Mockito.doThrow(new SQLException("marker")).when(processed)
+                .markProcessedBatch(Mockito.any(), Mockito.argThat(ids -> ids.contains("m2")));
+        SecondarySqljExecutor executor = Mockito.mock(SecondarySqljExecutor.class);
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.getAutoCommit()).thenReturn(true);
+        ParkingLot parkingLot = Mockito.mock(ParkingLot.class);
+        Mockito.when(parkingLot.park(Mockito.any(), Mockito.any(SyncEnvelope.class), Mockito.anyList(), Mockito.any()))
+                .thenReturn(new ParkedMessage("m2", "{}", 1, Instant.now(), State.RETRY, "marker"));
+
+        ReplayOptions options = new ReplayOptions();
+        options.setChunkSize(2);
+        options.setParkingLot(parkingLot);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, conn, List.of(), 10, mapper, options);
+        svc.pollOnce();
+
+        Mockito.verify(processed).markProcessedBatch(conn, List.of("m1"));
+        Mockito.verify(parkingLot).park(Mockito.eq(conn), Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m2")),
+                Mockito.anyList(), Mockito.any());
+        Mockito.verify(parkingLot, Mockito.never()).park(Mockito.any(),
+                Mockito.argThat((SyncEnvelope env) -> env.messageId().equals("m1")), Mockito.anyList(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("pollOnce (parallel): Jeder Schlüssel bleibt geordnet, Worker nutzen eigene Connections")
+    void pollOnce_parallel_keepsOrderPerKey() throws Exception {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            entries.add("{\"messageId\":\"m" + i + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\","
+                    + "\"params\":{\"seq\":" + i + "},\"version\":\"v1\",\"correlationId\":\"k" + (i % 4) + "\","
+                    + "\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+        }
+        ReadFromMqRepository repo = Mockito.mock(ReadFromMqRepository.class);
+        Mockito.when(repo.callReadFromMq(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new ReadFromMqRepository.Result("[" + String.join(",", entries) + "]", 0, null));
+
+        Map<String, List<Integer>> seenPerKey = new ConcurrentHashMap<>();
+        Set<Connection> usedConnections = ConcurrentHashMap.newKeySet();
+        SqljAdapter<Object> adapter = new SqljAdapter<>() {
+            @Override
+            public String sqljClassName() {
+                return "C";
+            }
+
+            @Override
+            public String sqljMethodName() {
+                return "M";
+            }
+
+            @Override
+            public Object execute(Connection connection, Map<String, Object> params) {
+                usedConnections.add(connection);
+                int seq = ((Number) params.get("seq")).intValue();
+                seenPerKey.computeIfAbsent("k" + (seq % 4), k -> Collections.synchronizedList(new ArrayList<>())).add(seq);
+                return null;
+            }
+        };
+        InMemorySqljRegistry registry = new InMemorySqljRegistry();
+        registry.register(adapter);
+
+        Connection readConn = Mockito.mock(Connection.class);
+        List<Connection> workers = List.of(Mockito.mock(Connection.class), Mockito.mock(Connection.class),
+                Mockito.mock(Connection.class));
+        ProcessedMessageRepository processed = Mockito.mock(ProcessedMessageRepository.class);
+        SecondarySqljExecutor executor = new SecondarySqljExecutor(registry, readConn);
+
+        try (MqReceiveServiceImpl svc = new MqReceiveServiceImpl(repo, processed, executor, readConn, workers, 100, mapper)) {
+            svc.pollOnce();
+        }
+
+        assertThat(seenPerKey).hasSize(4);
+        seenPerKey.values().forEach(seqs -> assertThat(seqs).isSorted().hasSize(10));
+        assertThat(usedConnections).doesNotContain(readConn).isSubsetOf(workers);
+        Mockito.verify(processed, Mockito.times(40)).markProcessed(Mockito.argThat(workers::contains), Mockito.anyString());
+        assertThat(seenPerKey.values().stream().flatMap(List::stream).collect(Collectors.toSet())).hasSize(40);
+    }
 }
@@ -2,6 +2,7 @@ package osplus.syncdb2.core.exec.impl;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 import osplus.syncdb2.core.exception.MqSendException;
@@ -9,14 +10,16 @@ import osplus.syncdb2.core.exec.SendToMqRepository;
 
 import java.sql.Connection;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Zweck
  * -----
- * Unit-Tests für MqSendServiceImpl: Erfolg und Fehlerpfad (Status != 0).
+ * Unit-Tests für MqSendServiceImpl: Erfolg und Fehlerpfad (Status != 0), Batch-Aufruf.
  */
 public class MqSendServiceImplTest {
 
@@ -49,4 +52,30 @@ public class MqSendServiceImplTest {
         assertThatThrownBy(() -> svc.send(env))
                 .isInstanceOf(MqSendException.class);
     }
+
+    @Test
+    @DisplayName("sendAll: Alle Envelopes in einem Batch-Aufruf, Fehlerstatus -> MqSendException")
+    @SuppressWarnings("unchecked")
+    void sendAll_singleBatchCall() throws Exception {
+        SendToMqRepository repo = Mockito.mock(SendToMqRepository.class);
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(repo.callSendToMqBatch(Mockito.eq(conn), Mockito.anyList()))
+                .thenReturn(new SendToMqRepository.Result(0, null))
+                .thenReturn(new SendToMqRepository.Result(5, "voll"));
+
+        MqSendServiceImpl svc = new MqSendServiceImpl(repo, conn);
+        SyncEnvelope e1 = new SyncEnvelope("m1", "C", "M", Map.of("k", 1), null, null, "v1", "c1", Instant.now());
+        SyncEnvelope e2 = new SyncEnvelope("m2", "C", "M", Map.of("k", 2), null, null, "v1", "c1", Instant.now());
+
+        svc.sendAll(List.of(e1, e2));
+        ArgumentCaptor<List<String>> jsons = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repo).callSendToMqBatch(Mockito.eq(conn), jsons.capture());
+        assertThat(jsons.getValue()).hasSize(2);
+        assertThat(jsons.getValue().get(0)).contains("\"m1\"");
+        assertThat(jsons.getValue().get(1)).contains("\"m2\"");
+        Mockito.verify(repo, Mockito.never()).callSendToMq(Mockito.any(), Mockito.anyString());
+
+        assertThatThrownBy(() -> svc.sendAll(List.of(e1, e2)))
+                .isInstanceOf(MqSendException.class);
+    }
 }
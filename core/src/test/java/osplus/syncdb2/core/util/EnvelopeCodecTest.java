@@ -0,0 +1,106 @@
+package osplus.syncdb2.core.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für EnvelopeCodec: Round-Trip für JSON, Parametertypen je Mapper, Formaterkennung je
+ * Element im EnvelopeParser.
+ */
+public class EnvelopeCodecTest {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    private static SyncEnvelope envelope(String messageId) {
+        return new SyncEnvelope(messageId, "com.company.sqlj.OrderSqlj", "insertOrder",
+                Map.of("orderId", 123L, "big", 5_000_000_000L, "amount", new BigDecimal("42.50"), "rate", 0.25d, "factor", 1.5f,
+                        "customer", "Kunde 7", "lines", List.of(1L, new BigDecimal("2.5"))),
+                "scn-1", 1, "v1", "corr-1", Instant.parse("2025-08-27T10:00:00Z")).withSequence("corr-1", 42);
+    }
+
+    @Test
+    @DisplayName("encode/decode: JSON ergibt dasselbe kanonische Envelope")
+    void roundTrip_json() {
+        SyncEnvelope env = envelope("mid-1");
+        String expected = EnvelopeJson.toCanonicalJson(env);
+
+        EnvelopeCodec codec = EnvelopeCodec.forName("json");
+        SyncEnvelope decoded = codec.decode(codec.encode(env));
+        assertThat(EnvelopeJson.toCanonicalJson(decoded)).isEqualTo(expected);
+        assertThat(decoded.partition()).isEqualTo("corr-1");
+        assertThat(decoded.sequence()).isEqualTo(42L);
+        assertThat(new JsonEnvelopeCodec().encode(env)).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("decode: Parametertypen folgen dem Mapper des Empfängers, in Codec und EnvelopeParser gleich")
+    void decode_paramTypesFromMapper() {
+        SyncEnvelope env = envelope("mid-1");
+        ObjectMapper bigDecimals = JsonMapper.builder().addModule(new JavaTimeModule())
+                .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS).build();
+        for (ObjectMapper mapper : List.of(MAPPER, bigDecimals)) {
+            String payload = new JsonEnvelopeCodec().encode(env);
+            Map<String, Object> viaCodec = new JsonEnvelopeCodec(mapper).decode(payload).params();
+            Map<String, Object> viaParser = new EnvelopeParser(mapper).fromJsonArray("[" + payload + "]").get(0).params();
+
+            assertThat(typesOf(viaParser)).isEqualTo(typesOf(viaCodec));
+            assertThat(typesOf((List<?>) viaParser.get("lines"))).isEqualTo(typesOf((List<?>) viaCodec.get("lines")));
+            assertThat(viaParser).isEqualTo(viaCodec);
+            assertThat(viaCodec.get("amount")).isInstanceOf(mapper == MAPPER ? Double.class : BigDecimal.class);
+        }
+    }
+
+    private static Map<String, Class<?>> typesOf(Map<String, Object> params) {
+        Map<String, Class<?>> types = new TreeMap<>();
+        params.forEach((k, v) -> types.put(k, v.getClass()));
+        return types;
+    }
+
+    private static List<Class<?>> typesOf(List<?> values) {
+        List<Class<?>> types = new ArrayList<>();
+        values.forEach(v -> types.add(v.getClass()));
+        return types;
+    }
+
+    @Test
+    @DisplayName("EnvelopeParser: JSON-Elemente werden gelesen, auch inkrementell")
+    void parser_jsonElements() {
+        String array = "[" + new JsonEnvelopeCodec().encode(envelope("mid-a")) + ","
+                + new JsonEnvelopeCodec().encode(envelope("mid-b")) + "]";
+
+        List<SyncEnvelope> all = new EnvelopeParser(MAPPER).fromJsonArray(array);
+        assertThat(all).extracting(SyncEnvelope::messageId).containsExactly("mid-a", "mid-b");
+
+        List<String> streamed = new ArrayList<>();
+        Iterator<SyncEnvelope> it = new EnvelopeParser(MAPPER).stream(new StringReader(array));
+        it.forEachRemaining(e -> streamed.add(e.messageId()));
+        assertThat(streamed).containsExactly("mid-a", "mid-b");
+    }
+
+    @Test
+    @DisplayName("EnvelopeParser/forName: Unbekannte Formate werden abgewiesen")
+    void unknownFormat_rejected() {
+        assertThatThrownBy(() -> new EnvelopeParser(MAPPER).fromJsonArray("[\"smile:AAAA\"]"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> EnvelopeCodec.forName("smile")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
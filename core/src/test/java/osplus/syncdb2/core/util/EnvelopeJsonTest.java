@@ -1,10 +1,20 @@
 package osplus.syncdb2.core.util;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -13,7 +23,7 @@ import static org.assertj.core.api.Assertions.assertThat;
  * Zweck
  * -----
  * Unit-Tests für EnvelopeJson: kanonische JSON-Serialisierung von SyncEnvelope
- * sowie Hash-relevante Teilserialisierung.
+ * sowie Hash-relevante Teilserialisierung; Byte-Kompatibilität des Streaming-Writers zur Baumvariante.
  */
 public class EnvelopeJsonTest {
 
@@ -32,6 +42,24 @@ public class EnvelopeJsonTest {
         assertThat(json).contains("\"createdAt\":\"2025-08-27T10:00:00Z\"");
     }
 
+    @Test
+    @DisplayName("toCanonicalJson: Partition/Sequenz nur wenn gesetzt, Parser liest sie zurück")
+    void toCanonicalJson_partitionSequence_roundTrip() {
+        SyncEnvelope plain = new SyncEnvelope("mid-1", "C", "M", Map.of(), null, null, "v1", "corr-1",
+                Instant.parse("2025-08-27T10:00:00Z"));
+        assertThat(EnvelopeJson.toCanonicalJson(plain)).doesNotContain("partition").doesNotContain("sequence");
+
+        String json = EnvelopeJson.toCanonicalJson(plain.withSequence("corr-1", 42));
+        assertThat(json).contains("\"partition\":\"corr-1\"").contains("\"sequence\":42");
+
+        ObjectMapper mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        SyncEnvelope parsed = new EnvelopeParser(mapper).fromJsonArray("[" + json + "]").get(0);
+        assertThat(parsed.partition()).isEqualTo("corr-1");
+        assertThat(parsed.sequence()).isEqualTo(42L);
+        assertThat(new EnvelopeParser(mapper).fromJsonArray("[" + EnvelopeJson.toCanonicalJson(plain) + "]").get(0)
+                .hasSequence()).isFalse();
+    }
+
     @Test
     @DisplayName("toCanonicalJsonForHash: Enthält keine flüchtigen Felder (z. B. createdAt)")
     void toCanonicalJsonForHash_excludesVolatile() {
@@ -41,4 +69,45 @@ public class EnvelopeJsonTest {
         assertThat(json).contains("\"sqljClassName\"");
         assertThat(json).doesNotContain("createdAt");
     }
+
+    @Test
+    @DisplayName("toCanonicalJson: Streaming-Writer liefert dieselben Bytes wie die baumbasierte Serialisierung")
+    void toCanonicalJson_sameBytesAsTree() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("zeta", "ä\"\\\n\u0001");
+        params.put("amount", new BigDecimal("42.50"));
+        params.put("hundred", new BigDecimal("100"));
+        params.put("zero", new BigDecimal("0.000"));
+        params.put("big", new BigInteger("123456789012345678901234567890"));
+        params.put("int", 7);
+        params.put("long", Long.MIN_VALUE);
+        params.put("short", (short) 3);
+        params.put("double", 0.1d);
+        params.put("float", 0.1f);
+        params.put("nan", Double.NaN);
+        params.put("flag", true);
+        params.put("none", null);
+        params.put("instant", Instant.parse("2025-01-01T00:00:00Z"));
+        params.put("date", LocalDate.of(2025, 1, 2));
+        params.put("bytes", new byte[]{1, 2, 3});
+        params.put("ints", new int[]{1, 2});
+        params.put("list", Arrays.asList(1, "s", new BigDecimal("1.10"), null, Map.of("b", 2, "a", 1)));
+        params.put("nested", new HashMap<>(Map.of("y", 1, "x", Map.of("d", 4, "c", List.of()))));
+        params.put("numericKeys", Map.of(2, "b", 1, "a"));
+        params.put("empty", Map.of());
+
+        List<SyncEnvelope> envelopes = List.of(
+                new SyncEnvelope("mid-1", "C", "M", params, "scn", 3, "v1", "corr",
+                        Instant.parse("2025-08-27T10:00:00.123456Z")),
+                new SyncEnvelope("mid-2", "C", "M", Map.of(), null, null, "v1", null,
+                        Instant.parse("2025-08-27T10:00:00Z")).withSequence("p", 9),
+                new SyncEnvelope(null, null, null, null, null, null, null, null, Instant.EPOCH));
+
+        for (SyncEnvelope env : envelopes) {
+            assertThat(EnvelopeJson.toCanonicalJson(env)).isEqualTo(EnvelopeJson.toCanonicalJsonTree(env));
+        }
+        // Puffer wird wiederverwendet: zweiter Aufruf unverändert
+        assertThat(EnvelopeJson.toCanonicalJson(envelopes.get(1)))
+                .isEqualTo(EnvelopeJson.toCanonicalJsonTree(envelopes.get(1)));
+    }
 }
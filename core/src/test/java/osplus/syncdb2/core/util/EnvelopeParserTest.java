@@ -8,9 +8,13 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import osplus.syncdb2.core.domain.SyncEnvelope;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Zweck
@@ -42,4 +46,30 @@ public class EnvelopeParserTest {
         assertThat(list).hasSize(1);
         assertThat(list.get(0).messageId()).isEqualTo("m1");
     }
+
+    @Test
+    @DisplayName("stream: dekodiert Elemente inkrementell, Fehler erst beim betroffenen Element")
+    void stream_decodesIncrementally() {
+        EnvelopeParser envelopeParser = new EnvelopeParser(mapper);
+        String json = "[{\"messageId\":\"m1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{}},"
+                + "{\"messageId\":\"m2\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{\"a\":1}},"
+                + "{\"messageId\":";
+        Iterator<SyncEnvelope> it = envelopeParser.stream(new StringReader(json));
+        List<String> ids = new ArrayList<>();
+        ids.add(it.next().messageId());
+        ids.add(it.next().messageId());
+        assertThat(ids).containsExactly("m1", "m2");
+        assertThatThrownBy(() -> {
+            while (it.hasNext()) it.next();
+        }).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("stream: Null/leeres Array -> keine Elemente")
+    void stream_empty() {
+        EnvelopeParser envelopeParser = new EnvelopeParser(mapper);
+        assertThat(envelopeParser.stream(null).hasNext()).isFalse();
+        assertThat(envelopeParser.stream(new StringReader("")).hasNext()).isFalse();
+        assertThat(envelopeParser.stream(new StringReader("[]")).hasNext()).isFalse();
+    }
 }
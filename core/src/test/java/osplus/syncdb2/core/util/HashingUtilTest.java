@@ -29,4 +29,13 @@ public class HashingUtilTest {
         String b = HashingUtil.sha256Hex("world");
         assertThat(a).isNotEqualTo(b);
     }
+
+    @Test
+    @DisplayName("sha256Hex: Bekannter Testvektor, Digest des Threads wird korrekt zurückgesetzt")
+    void sha256Hex_knownVector() {
+        HashingUtil.sha256().update((byte) 42); // nicht abgeschlossener Digest darf nicht nachwirken
+        assertThat(HashingUtil.sha256Hex("abc"))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        assertThat(HashingUtil.toHex(new byte[]{0, 15, (byte) 0xab, (byte) 0xff})).isEqualTo("000fabff");
+    }
 }
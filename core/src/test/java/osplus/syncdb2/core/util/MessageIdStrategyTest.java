@@ -0,0 +1,82 @@
+package osplus.syncdb2.core.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für die MessageIdStrategy-Implementierungen: Inhalts-Hash, zeitlich aufsteigende Ids,
+ * Zeitfenster-Präfix + Hash.
+ */
+public class MessageIdStrategyTest {
+
+    private static final Map<String, Object> PARAMS = Map.of("orderId", 123L);
+    private static final Instant T0 = Instant.parse("2025-08-27T10:00:00Z");
+
+    @Test
+    @DisplayName("content-hash: Gleicher Aufruf -> gleiche Id, unabhängig vom Zeitpunkt")
+    void contentHash_ignoresTime() {
+        MessageIdStrategy s = new ContentHashMessageIdStrategy();
+        String a = s.messageId("C", "M", PARAMS, "v1", T0);
+        assertThat(a).isEqualTo(s.messageId("C", "M", PARAMS, "v1", T0.plusSeconds(3600)))
+                .isEqualTo(HashingUtil.sha256Hex(EnvelopeJson.toCanonicalJsonForHash("C", "M", PARAMS, "v1")))
+                .hasSize(64);
+    }
+
+    @Test
+    @DisplayName("time-ordered: UUIDv7-Layout, eindeutig und lexikografisch aufsteigend, auch bei Zählerüberlauf/Uhr zurück")
+    void timeOrdered_monotonic() {
+        MessageIdStrategy s = new TimeOrderedMessageIdStrategy();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(s.messageId("C", "M", PARAMS, "v1", T0)); // gleiche Millisekunde -> Zählerüberlauf
+        }
+        ids.add(s.messageId("C", "M", PARAMS, "v1", T0.minusSeconds(1))); // Uhr zurück
+        ids.add(s.messageId("C", "M", PARAMS, "v1", T0.plusSeconds(60)));
+
+        assertThat(ids).doesNotHaveDuplicates().isSorted();
+        UUID first = UUID.fromString(ids.get(0));
+        assertThat(first.version()).isEqualTo(7);
+        assertThat(first.variant()).isEqualTo(2);
+        assertThat(first.getMostSignificantBits() >>> 16).isEqualTo(T0.toEpochMilli());
+        assertThat(UUID.fromString(ids.get(ids.size() - 1)).getMostSignificantBits() >>> 16)
+                .isEqualTo(T0.plusSeconds(60).toEpochMilli());
+    }
+
+    @Test
+    @DisplayName("time-prefixed-hash: Gleiches Fenster -> gleiche Id, nächstes Fenster -> größere Id")
+    void timePrefixed_dedupWithinBucket() {
+        MessageIdStrategy s = new TimePrefixedHashMessageIdStrategy(Duration.ofMinutes(1));
+        String a = s.messageId("C", "M", PARAMS, "v1", T0.plusSeconds(5));
+        String b = s.messageId("C", "M", PARAMS, "v1", T0.plusSeconds(59));
+        String c = s.messageId("C", "M", PARAMS, "v1", T0.plusSeconds(61));
+
+        assertThat(a).isEqualTo(b).hasSize(76)
+                .startsWith(String.format("%012x", T0.toEpochMilli()))
+                .endsWith(new ContentHashMessageIdStrategy().messageId("C", "M", PARAMS, "v1", T0));
+        assertThat(c).isNotEqualTo(a).isGreaterThan(a);
+        assertThatThrownBy(() -> new TimePrefixedHashMessageIdStrategy(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("EnvelopeFactory.create: Nutzt die übergebene Strategie mit createdAt des Envelopes")
+    void envelopeFactory_usesStrategy() {
+        SyncEnvelope env = EnvelopeFactory.create((cls, mth, params, version, createdAt) ->
+                cls + "|" + createdAt.toEpochMilli(), "C", "M", PARAMS, "v1", "corr", null, null);
+        assertThat(env.messageId()).isEqualTo("C|" + env.createdAt().toEpochMilli());
+        assertThat(EnvelopeFactory.defaultStrategy()).isInstanceOf(ContentHashMessageIdStrategy.class);
+    }
+}
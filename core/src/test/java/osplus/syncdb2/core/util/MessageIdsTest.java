@@ -0,0 +1,52 @@
+package osplus.syncdb2.core.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für MessageIds/MessageKey: verlustfreie Umrechnung Text ↔ Binär für die eingebauten
+ * Strategien, Ablehnung nicht kanonischer Ids.
+ */
+public class MessageIdsTest {
+
+    @Test
+    @DisplayName("toBinary/fromBinary: 32/16/38 Bytes für Hash, UUIDv7 und Zeitfenster-Präfix, verlustfrei")
+    void roundTrip_builtInStrategies() {
+        Instant now = Instant.parse("2025-08-27T10:00:00Z");
+        Map<String, Object> params = Map.of("k", 1);
+        String hash = new ContentHashMessageIdStrategy().messageId("C", "M", params, "v1", now);
+        String uuid = new TimeOrderedMessageIdStrategy().messageId("C", "M", params, "v1", now);
+        String prefixed = new TimePrefixedHashMessageIdStrategy(Duration.ofMinutes(1))
+                .messageId("C", "M", params, "v1", now);
+
+        assertThat(MessageIds.toBinary(hash)).hasSize(32);
+        assertThat(MessageIds.toBinary(uuid)).hasSize(16);
+        assertThat(MessageIds.toBinary(prefixed)).hasSize(38);
+        for (String id : new String[]{hash, uuid, prefixed}) {
+            assertThat(MessageIds.fromBinary(MessageIds.toBinary(id))).isEqualTo(id);
+            assertThat(MessageKey.of(id)).isEqualTo(MessageKey.of(id)).hasToString(id);
+        }
+        assertThat(MessageKey.of(hash)).isNotEqualTo(MessageKey.of(prefixed));
+    }
+
+    @Test
+    @DisplayName("toBinary: Nur kanonische Form (Kleinbuchstaben, 16 Bytes nur als UUID)")
+    void toBinary_rejectsNonCanonical() {
+        String hash = HashingUtil.sha256Hex("x");
+        assertThat(MessageIds.tryToBinary(hash.toUpperCase())).isNull();
+        assertThat(MessageIds.tryToBinary("m1")).isNull();
+        assertThat(MessageIds.tryToBinary("abc")).isNull();
+        assertThat(MessageIds.tryToBinary("0123456789abcdef0123456789abcdef")).isNull();
+        assertThat(MessageIds.tryToBinary("0123456789abcdef0123456789abcdef0123")).hasSize(18);
+        assertThatThrownBy(() -> MessageIds.toBinary("corr-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,107 @@
+package osplus.syncdb2.core.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für ShardedRingBuffer: Reihenfolge je Shard, Backpressure bei vollem Puffer, Ende nach close.
+ */
+public class ShardedRingBufferTest {
+
+    @Test
+    @DisplayName("publish/drain: Jeder Konsument erhält genau seinen Shard in Reihenfolge, trotz kleinem Puffer")
+    void publishDrain_ordersPerShard() throws Exception {
+        int shards = 3;
+        int total = 10_000;
+        ShardedRingBuffer<Integer> ring = new ShardedRingBuffer<>(8, shards);
+        ExecutorService pool = Executors.newFixedThreadPool(shards);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int s = 0; s < shards; s++) {
+                int shard = s;
+                results.add(pool.submit(() -> {
+                    List<Integer> out = new ArrayList<>();
+                    while (ring.drain(shard, out, 5) >= 0) {
+                        // weiter lesen
+                    }
+                    return out;
+                }));
+            }
+            for (int i = 0; i < total; i++) {
+                ring.publish(i, i % shards);
+            }
+            ring.close();
+
+            for (int s = 0; s < shards; s++) {
+                List<Integer> got = results.get(s).get(10, TimeUnit.SECONDS);
+                assertThat(got).hasSize(total / shards + (s < total % shards ? 1 : 0));
+                int shard = s;
+                assertThat(got).isSorted().allMatch(v -> v % shards == shard);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("publish: Voller Puffer blockiert den Produzenten, bis gelesen wird; detach gibt ihn frei")
+    void publish_blocksWhenFull() throws Exception {
+        ShardedRingBuffer<String> ring = new ShardedRingBuffer<>(2, 1);
+        ring.publish("a", 0);
+        ring.publish("b", 0);
+        Thread producer = new Thread(() -> {
+            try {
+                ring.publish("c", 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertThat(producer.isAlive()).isTrue();
+
+        List<String> out = new ArrayList<>();
+        assertThat(ring.drain(0, out, 1)).isEqualTo(1);
+        producer.join(5_000);
+        assertThat(producer.isAlive()).isFalse();
+
+        ring.detach(0);
+        ring.publish("d", 0);
+        ring.publish("e", 0);
+        ring.publish("f", 0);
+    }
+
+    @Test
+    @DisplayName("drain: Nach close und vollständigem Lesen -1; reset erlaubt neuen Durchlauf")
+    void drain_endAfterClose() throws Exception {
+        ShardedRingBuffer<String> ring = new ShardedRingBuffer<>(4, 2);
+        ring.publish("x", 1);
+        ring.close();
+        List<String> out = new ArrayList<>();
+        assertThat(ring.drain(0, out, 10)).isZero();
+        assertThat(ring.drain(0, out, 10)).isEqualTo(-1);
+        assertThat(ring.drain(1, out, 10)).isEqualTo(1);
+        assertThat(ring.drain(1, out, 10)).isEqualTo(-1);
+        assertThat(out).containsExactly("x");
+
+        ring.reset();
+        ring.publish("y", 0);
+        ring.close();
+        out.clear();
+        assertThat(ring.drain(0, out, 10)).isEqualTo(1);
+        assertThat(out).containsExactly("y");
+        assertThatThrownBy(() -> new ShardedRingBuffer<String>(6, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,56 @@
+package osplus.syncdb2.it;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import osplus.syncdb2.core.exec.JdbcOutboxDepthProbe;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Integrations-Test: {@link JdbcOutboxDepthProbe} zählt die Einträge der H2-OUTBOX; Fehler werden als -1 gemeldet.
+ */
+public class OutboxDepthProbeH2IT {
+    static Connection conn;
+    static JdbcDataSource ds;
+
+    @BeforeAll
+    static void setupDb() throws Exception {
+        conn = ItDatabase.newH2Connection("outbox_depth");
+        ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:outbox_depth;DB_CLOSE_DELAY=-1");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    @DisplayName("currentDepth: COUNT(*) über die Outbox; unbekannte Tabelle -> -1")
+    void currentDepth_countsOutbox() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("INSERT INTO OUTBOX(envelope_json) VALUES ('{}')");
+            st.execute("INSERT INTO OUTBOX(envelope_json) VALUES ('{}')");
+        }
+
+        assertThat(new JdbcOutboxDepthProbe(ds).currentDepth()).isEqualTo(2);
+        assertThat(new JdbcOutboxDepthProbe(ds, "PUBLIC.OUTBOX").currentDepth()).isEqualTo(2);
+        assertThat(new JdbcOutboxDepthProbe(ds, "NO_SUCH_TABLE").currentDepth()).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("Konstruktor: Tabellenname muss ein Bezeichner sein")
+    void constructor_rejectsNonIdentifier() {
+        assertThatThrownBy(() -> new JdbcOutboxDepthProbe(ds, "OUTBOX WHERE 1=1"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
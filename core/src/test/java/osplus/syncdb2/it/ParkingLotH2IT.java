@@ -0,0 +1,211 @@
+package osplus.syncdb2.it;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import osplus.syncdb2.core.config.ReplayOptions;
+import osplus.syncdb2.core.config.RetryPolicy;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.ParkedMessageRepository;
+import osplus.syncdb2.core.exec.ParkedMessageRepository.State;
+import osplus.syncdb2.core.exec.ParkingLot;
+import osplus.syncdb2.core.exec.ProcessedMessageRepository;
+import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SqljAdapter;
+import osplus.syncdb2.core.exec.SqljRegistry;
+import osplus.syncdb2.core.exec.impl.MqReceiveServiceImpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Integrations-Test: Parkplatz mit H2. Ein dauerhaft fehlschlagendes Envelope wird geparkt,
+ * wiederholt, nach erschöpften Versuchen Dead Letter und per Reinject erfolgreich nachverarbeitet.
+ * Überholte Envelopes (Conflation) werden mit ihrem geparkten Nachfolger aufgelöst.
+ */
+public class ParkingLotH2IT {
+    static Connection conn;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .build();
+
+    @BeforeAll
+    static void setupDb() throws Exception {
+        conn = ItDatabase.newH2Connection("parking");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    @DisplayName("RetryPolicy: exponentieller Backoff mit Obergrenze")
+    void backoff_isExponentialAndCapped() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialBackoff(Duration.ofSeconds(1));
+        policy.setMaxBackoff(Duration.ofSeconds(10));
+        policy.setMaxAttempts(3);
+
+        assertThat(policy.backoffAfter(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(policy.backoffAfter(3)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(policy.backoffAfter(60)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(policy.isExhausted(2)).isFalse();
+        assertThat(policy.isExhausted(3)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Poison Message: parken, wiederholen, Dead Letter, Reinject")
+    void poisonMessage_parkedRetriedDeadAndReinjected() throws Exception {
+        String json = "{\"messageId\":\"m-park-1\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{\"k\":1},\"version\":\"v1\",\"correlationId\":\"corr\",\"createdAt\":\"2025-08-27T10:00:00Z\"}";
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO INBOX(envelope_json) VALUES (?)")) {
+            ps.setString(1, json);
+            ps.executeUpdate();
+        }
+
+        SqljRegistry registry = Mockito.mock(SqljRegistry.class);
+        @SuppressWarnings("unchecked")
+        SqljAdapter<Object> adapter = Mockito.mock(SqljAdapter.class);
+        Mockito.when(registry.findAdapter("C", "M")).thenReturn(Optional.of(adapter));
+        Mockito.doThrow(new IllegalStateException("kaputt"))
+                .doThrow(new IllegalStateException("immer noch kaputt"))
+                .doReturn(null)
+                .when(adapter).execute(Mockito.any(), Mockito.anyMap());
+
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxAttempts(2);
+        policy.setInitialBackoff(Duration.ZERO);
+        ParkedMessageRepository parkedRepo = new ParkedMessageRepository();
+        ParkingLot lot = new ParkingLot(parkedRepo, policy, mapper);
+        ReplayOptions options = new ReplayOptions();
+        options.setParkingLot(lot);
+
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(new ReadFromMqRepositoryH2(), new ProcessedMessageRepository(),
+                new SecondarySqljExecutor(registry, conn), conn, List.of(), 10, mapper, options);
+
+        // 1. Poll: Replay scheitert -> geparkt (RETRY, Versuch 1)
+        svc.pollOnce();
+        assertThat(parkedRepo.find(conn, "m-park-1")).get()
+                .satisfies(p -> {
+                    assertThat(p.state()).isEqualTo(State.RETRY);
+                    assertThat(p.attempts()).isEqualTo(1);
+                    assertThat(p.lastError()).contains("kaputt");
+                });
+
+        // 2. Poll: fällige Wiederholung scheitert -> DEAD; Redelivery wird übersprungen
+        svc.pollOnce();
+        assertThat(parkedRepo.find(conn, "m-park-1")).get()
+                .satisfies(p -> {
+                    assertThat(p.state()).isEqualTo(State.DEAD);
+                    assertThat(p.attempts()).isEqualTo(2);
+                });
+        Mockito.verify(adapter, Mockito.times(2)).execute(Mockito.any(), Mockito.anyMap());
+
+        // 3. Poll: Dead Letter wird nicht mehr automatisch versucht
+        svc.pollOnce();
+        Mockito.verify(adapter, Mockito.times(2)).execute(Mockito.any(), Mockito.anyMap());
+
+        // Reinject -> nächster Poll verarbeitet und räumt den Parkplatz
+        assertThat(lot.reinjectDead(conn)).isEqualTo(1);
+        svc.pollOnce();
+        Mockito.verify(adapter, Mockito.times(3)).execute(Mockito.any(), Mockito.anyMap());
+        assertThat(parkedRepo.find(conn, "m-park-1")).isEmpty();
+        try (ResultSet rs = conn.createStatement()
+                .executeQuery("SELECT COUNT(*) FROM processed_message WHERE message_id='m-park-1'")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Conflation: Überholte Envelopes werden mit dem Nachfolger geparkt und mit ihm als verarbeitet markiert")
+    void conflation_ridersParkedAndResolvedWithSurvivor() throws Exception {
+        try (Connection c = ItDatabase.newH2Connection("parking-conflation")) {
+            for (String[] e : new String[][]{{"m-old", "alt"}, {"m-new", "neu"}}) {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO INBOX(envelope_json) VALUES (?)")) {
+                    ps.setString(1, "{\"messageId\":\"" + e[0] + "\",\"sqljClassName\":\"ProductSqlj\","
+                            + "\"sqljMethodName\":\"update\",\"params\":{\"id\":1,\"name\":\"" + e[1] + "\"},"
+                            + "\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+                    ps.executeUpdate();
+                }
+            }
+            List<String> written = new ArrayList<>();
+            SqljAdapter<Object> adapter = new SqljAdapter<>() {
+                @Override
+                public String sqljClassName() {
+                    return "ProductSqlj";
+                }
+
+                @Override
+                public String sqljMethodName() {
+                    return "update";
+                }
+
+                @Override
+                public String conflationKey(SyncEnvelope envelope) {
+                    return String.valueOf(envelope.params().get("id"));
+                }
+
+                @Override
+                public Object execute(Connection connection, Map<String, Object> params) {
+                    if (written.isEmpty() && params.get("name").equals("neu")) {
+                        written.add("fehler");
+                        throw new IllegalStateException("kaputt");
+                    }
+                    written.add((String) params.get("name"));
+                    return null;
+                }
+            };
+            SqljRegistry registry = Mockito.mock(SqljRegistry.class);
+            Mockito.when(registry.findAdapter("ProductSqlj", "update")).thenReturn(Optional.of(adapter));
+
+            RetryPolicy policy = new RetryPolicy();
+            policy.setInitialBackoff(Duration.ZERO);
+            ParkedMessageRepository parkedRepo = new ParkedMessageRepository();
+            ParkingLot lot = new ParkingLot(parkedRepo, policy, mapper);
+            ReplayOptions options = new ReplayOptions();
+            options.setParkingLot(lot);
+            MqReceiveServiceImpl svc = new MqReceiveServiceImpl(new ReadFromMqRepositoryH2(), new ProcessedMessageRepository(),
+                    new SecondarySqljExecutor(registry, c), c, List.of(), 10, mapper, options);
+
+            // 1. Poll: m-old wird von m-new überholt; m-new scheitert -> beide im Parkplatz-Eintrag von m-new
+            svc.pollOnce();
+            assertThat(parkedRepo.find(c, "m-new")).get()
+                    .satisfies(p -> assertThat(lot.envelopesOf(p)).extracting(SyncEnvelope::messageId)
+                            .containsExactly("m-old", "m-new"));
+            assertThat(processedCount(c)).isZero();
+
+            // 2. Poll: Wiederholung wendet nur den neuesten Zustand an und markiert beide; Redeliveries übersprungen
+            svc.pollOnce();
+            assertThat(parkedRepo.find(c, "m-new")).isEmpty();
+            assertThat(processedCount(c)).isEqualTo(2);
+            assertThat(written).containsExactly("fehler", "neu");
+        }
+    }
+
+    private static int processedCount(Connection c) throws Exception {
+        try (ResultSet rs = c.createStatement().executeQuery(
+                "SELECT COUNT(*) FROM processed_message WHERE message_id IN ('m-old', 'm-new')")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package osplus.syncdb2.it;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import osplus.syncdb2.core.config.ReplayOptions;
+import osplus.syncdb2.core.config.RetryPolicy;
+import osplus.syncdb2.core.exec.ParkedMessageRepository;
+import osplus.syncdb2.core.exec.ParkingLot;
+import osplus.syncdb2.core.exec.ProcessedMessageRepository;
+import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SqljAdapter;
+import osplus.syncdb2.core.exec.SqljRegistry;
+import osplus.syncdb2.core.exec.impl.MqReceiveServiceImpl;
+import osplus.syncdb2.core.util.HashingUtil;
+import osplus.syncdb2.core.util.MessageIds;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Zweck
+ * -----
+ * Integrations-Test: processed_message mit binärer message_id (VARBINARY) in H2. Ids werden in Textform
+ * übergeben und zurückgeliefert, gespeichert wird die Binärform. Ids ohne Binärform bringen einen Batch
+ * nicht zu Fall: Das betroffene Envelope wird geparkt, die übrigen angewendet.
+ */
+public class ProcessedMessageBinaryIdsH2IT {
+    static Connection conn;
+
+    @BeforeAll
+    static void setupDb() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:binaryIds;DB_CLOSE_DELAY=-1");
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE processed_message (message_id VARBINARY(64) PRIMARY KEY, processed_at TIMESTAMP)");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    @DisplayName("binaryIds: markieren, prüfen (auch chunked), lesen und löschen mit Binärspalte")
+    void binaryIds_roundTrip() throws Exception {
+        ProcessedMessageRepository repo = new ProcessedMessageRepository(true);
+        String hash = HashingUtil.sha256Hex("order-1");
+        String uuid = "0190f1e2-3a4b-7c5d-8e6f-0123456789ab";
+        repo.markProcessedBatch(conn, List.of(hash, uuid));
+        repo.markProcessed(conn, HashingUtil.sha256Hex("order-2"));
+
+        try (PreparedStatement ps = conn.prepareStatement("SELECT message_id FROM processed_message");
+             ResultSet rs = ps.executeQuery()) {
+            List<Integer> lengths = new ArrayList<>();
+            while (rs.next()) lengths.add(rs.getBytes(1).length);
+            assertThat(lengths).containsExactlyInAnyOrder(32, 16, 32);
+        }
+
+        assertThat(repo.exists(conn, hash)).isTrue();
+        assertThat(repo.exists(conn, HashingUtil.sha256Hex("other"))).isFalse();
+
+        List<String> probe = new ArrayList<>();
+        for (int i = 0; i < ProcessedMessageRepository.IN_CHUNK_SIZE + 10; i++) {
+            probe.add(HashingUtil.sha256Hex("probe-" + i));
+        }
+        probe.add(uuid);
+        probe.add(hash);
+        probe.add(hash);
+        assertThat(repo.existingIds(conn, probe)).containsExactlyInAnyOrder(hash, uuid);
+
+        List<String> all = new ArrayList<>();
+        repo.forEachId(conn, all::add);
+        assertThat(all).containsExactlyInAnyOrder(hash, uuid, HashingUtil.sha256Hex("order-2"));
+        assertThat(all).allMatch(id -> MessageIds.tryToBinary(id) != null);
+
+        assertThatThrownBy(() -> repo.markProcessed(conn, "not-hex")).isInstanceOf(SQLDataException.class);
+
+        assertThat(repo.deleteProcessedBefore(conn, Instant.now().plusSeconds(60), 10)).isEqualTo(3);
+        assertThat(repo.exists(conn, hash)).isFalse();
+    }
+
+    @Test
+    @DisplayName("binaryIds: Gemischter Batch mit Alt-Id wird angewendet, nur die Alt-Id wird geparkt")
+    void binaryIds_mixedBatch_parksOnlyLegacyId() throws Exception {
+        try (Connection c = DriverManager.getConnection("jdbc:h2:mem:binaryIdsMixed;DB_CLOSE_DELAY=-1")) {
+            try (Statement st = c.createStatement()) {
+                st.execute("CREATE TABLE processed_message (message_id VARBINARY(64) PRIMARY KEY, processed_at TIMESTAMP)");
+            }
+            ItDatabase.newH2Connection("binaryIdsMixed").close();
+            String known = HashingUtil.sha256Hex("known");
+            String fresh = HashingUtil.sha256Hex("fresh");
+            String legacy = "Legacy-ID-1";
+            ProcessedMessageRepository repo = new ProcessedMessageRepository(true);
+            repo.markProcessed(c, known);
+            assertThat(repo.existingIds(c, List.of(known, fresh, legacy, known.toUpperCase()))).containsExactly(known);
+
+            for (String id : List.of(known, legacy, fresh)) {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO INBOX(envelope_json) VALUES (?)")) {
+                    ps.setString(1, "{\"messageId\":\"" + id + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\","
+                            + "\"params\":{},\"version\":\"v1\",\"createdAt\":\"2025-08-27T10:00:00Z\"}");
+                    ps.executeUpdate();
+                }
+            }
+            SqljRegistry registry = Mockito.mock(SqljRegistry.class);
+            @SuppressWarnings("unchecked")
+            SqljAdapter<Object> adapter = Mockito.mock(SqljAdapter.class);
+            Mockito.when(registry.findAdapter("C", "M")).thenReturn(Optional.of(adapter));
+            ObjectMapper mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+            ParkedMessageRepository parkedRepo = new ParkedMessageRepository();
+            ReplayOptions options = new ReplayOptions();
+            options.setChunkSize(10);
+            options.setSavepoints(true);
+            options.setParkingLot(new ParkingLot(parkedRepo, new RetryPolicy(), mapper));
+
+            MqReceiveServiceImpl svc = new MqReceiveServiceImpl(new ReadFromMqRepositoryH2(), repo,
+                    new SecondarySqljExecutor(registry, c), c, List.of(), 10, mapper, options);
+            svc.pollOnce();
+
+            assertThat(repo.existingIds(c, List.of(known, fresh))).containsExactlyInAnyOrder(known, fresh);
+            assertThat(parkedRepo.find(c, legacy)).isPresent();
+            assertThat(parkedRepo.find(c, fresh)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package osplus.syncdb2.it;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import osplus.syncdb2.core.config.ReplayOptions;
+import osplus.syncdb2.core.exec.ProcessedMessageRepository;
+import osplus.syncdb2.core.exec.ProcessedMessageRetention;
+import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SqljAdapter;
+import osplus.syncdb2.core.exec.SqljRegistry;
+import osplus.syncdb2.core.exec.impl.MqReceiveServiceImpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Integrations-Test: Aufbewahrung von processed_message mit H2. Alte Einträge werden in Chunks
+ * gelöscht, die Watermark weist ältere Redeliveries danach ohne Marker-Abfrage ab.
+ */
+public class ProcessedMessageRetentionH2IT {
+    static Connection conn;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .build();
+
+    @BeforeAll
+    static void setupDb() throws Exception {
+        conn = ItDatabase.newH2Connection("retention");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    @DisplayName("runOnce: löscht alte Einträge in Chunks, Watermark weist alte Redeliveries ab")
+    void runOnce_prunesInChunksAndRejectsOldRedeliveries() throws Exception {
+        Instant now = Instant.now();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO processed_message(message_id, processed_at) VALUES (?, ?)")) {
+            for (int i = 0; i < 25; i++) {
+                ps.setString(1, "old-" + i);
+                ps.setTimestamp(2, Timestamp.from(now.minus(Duration.ofDays(40))));
+                ps.executeUpdate();
+            }
+            ps.setString(1, "recent");
+            ps.setTimestamp(2, Timestamp.from(now.minus(Duration.ofDays(1))));
+            ps.executeUpdate();
+        }
+        ProcessedMessageRepository processed = new ProcessedMessageRepository();
+        ProcessedMessageRetention retention = new ProcessedMessageRetention(processed, Duration.ofDays(30), 10,
+                Duration.ZERO, Duration.ofMinutes(1), Clock.systemUTC());
+
+        ProcessedMessageRetention.Result result = retention.runOnce(conn);
+
+        assertThat(result.deleted()).isEqualTo(25);
+        assertThat(result.chunks()).isEqualTo(3);
+        assertThat(processed.findWatermark(conn)).contains(result.cutoff());
+        assertThat(processed.exists(conn, "recent")).isTrue();
+        assertThat(processed.exists(conn, "old-0")).isFalse();
+        assertThat(conn.getAutoCommit()).isTrue();
+
+        // Redelivery eines alten ("old-0") und ein neues Envelope
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO INBOX(envelope_json) VALUES (?)")) {
+            ps.setString(1, envelopeJson("old-0", now.minus(Duration.ofDays(45))));
+            ps.executeUpdate();
+            ps.setString(1, envelopeJson("fresh", now));
+            ps.executeUpdate();
+        }
+        SqljRegistry registry = Mockito.mock(SqljRegistry.class);
+        @SuppressWarnings("unchecked")
+        SqljAdapter<Object> adapter = Mockito.mock(SqljAdapter.class);
+        Mockito.when(registry.findAdapter("C", "M")).thenReturn(Optional.of(adapter));
+        ReplayOptions options = new ReplayOptions();
+        options.setRetention(retention);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(new ReadFromMqRepositoryH2(), processed,
+                new SecondarySqljExecutor(registry, conn), conn, List.of(), 10, mapper, options);
+
+        svc.pollOnce();
+
+        Mockito.verify(adapter, Mockito.times(1)).execute(Mockito.any(), Mockito.anyMap());
+        assertThat(processed.exists(conn, "fresh")).isTrue();
+        assertThat(processed.exists(conn, "old-0")).isFalse();
+
+        // Watermark steigt nur monoton
+        retention.advanceWatermark(conn, result.cutoff().minus(Duration.ofDays(5)));
+        assertThat(processed.findWatermark(conn)).contains(result.cutoff());
+        try (ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM processed_watermark")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+        }
+    }
+
+    private static String envelopeJson(String messageId, Instant createdAt) {
+        return "{\"messageId\":\"" + messageId + "\",\"sqljClassName\":\"C\",\"sqljMethodName\":\"M\",\"params\":{},"
+                + "\"version\":\"v1\",\"createdAt\":\"" + createdAt + "\"}";
+    }
+}
@@ -0,0 +1,118 @@
+package osplus.syncdb2.it;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import osplus.syncdb2.core.config.ReplayOptions;
+import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.PartitionSequenceRepository;
+import osplus.syncdb2.core.exec.PartitionSequencer;
+import osplus.syncdb2.core.exec.PartitionWatermarkRepository;
+import osplus.syncdb2.core.exec.ProcessedMessageRepository;
+import osplus.syncdb2.core.exec.SecondarySqljExecutor;
+import osplus.syncdb2.core.exec.SequenceTracker;
+import osplus.syncdb2.core.exec.SqljAdapter;
+import osplus.syncdb2.core.exec.SqljRegistry;
+import osplus.syncdb2.core.exec.impl.MqReceiveServiceImpl;
+import osplus.syncdb2.core.util.EnvelopeJson;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Integrations-Test: Sequenz-Idempotenzmodell mit H2. Primary vergibt Sequenzen je Partition,
+ * Secondary führt nur eine Watermark je Partition, erkennt Lücken und wendet Nachzügler an.
+ */
+public class SequenceWatermarkH2IT {
+    static Connection conn;
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .build();
+
+    @BeforeAll
+    static void setupDb() throws Exception {
+        conn = ItDatabase.newH2Connection("sequence");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    @DisplayName("Sequenzmodell: Stempeln, Watermark statt Marker, Lückenerkennung, Nachzügler")
+    void sequencedEnvelopes_watermarkAndGaps() throws Exception {
+        PartitionSequencer sequencer = new PartitionSequencer(new PartitionSequenceRepository());
+        SyncEnvelope[] stamped = new SyncEnvelope[4];
+        for (int i = 0; i < 4; i++) {
+            SyncEnvelope env = new SyncEnvelope("s" + (i + 1), "C", "M", Map.of("i", i), null, null, "v1", "p1",
+                    Instant.parse("2025-08-27T10:00:00Z"));
+            stamped[i] = sequencer.stamp(conn, env);
+        }
+        assertThat(stamped[0].sequence()).isEqualTo(1L);
+        assertThat(stamped[3].sequence()).isEqualTo(4L);
+        assertThat(stamped[3].partition()).isEqualTo("p1");
+        assertThat(sequencer.stamp(conn, stamped[3])).isSameAs(stamped[3]);
+
+        SqljRegistry registry = Mockito.mock(SqljRegistry.class);
+        @SuppressWarnings("unchecked")
+        SqljAdapter<Object> adapter = Mockito.mock(SqljAdapter.class);
+        Mockito.when(registry.findAdapter("C", "M")).thenReturn(Optional.of(adapter));
+        PartitionWatermarkRepository watermarks = new PartitionWatermarkRepository();
+        SequenceTracker tracker = new SequenceTracker(watermarks);
+        ReplayOptions options = new ReplayOptions();
+        options.setSequenceTracker(tracker);
+        MqReceiveServiceImpl svc = new MqReceiveServiceImpl(new ReadFromMqRepositoryH2(), new ProcessedMessageRepository(),
+                new SecondarySqljExecutor(registry, conn), conn, List.of(), 10, mapper, options);
+
+        // s3 fehlt zunächst -> Lücke 3..3
+        inbox(stamped[0], stamped[1], stamped[3]);
+        svc.pollOnce();
+        Mockito.verify(adapter, Mockito.times(3)).execute(Mockito.any(), Mockito.anyMap());
+        assertThat(watermarks.find(conn, "p1")).hasValue(4L);
+        assertThat(tracker.openGaps()).singleElement()
+                .satisfies(g -> {
+                    assertThat(g.fromSequence()).isEqualTo(3L);
+                    assertThat(g.toSequence()).isEqualTo(3L);
+                });
+
+        // Redelivery (1, 2, 4) wird im Speicher verworfen; Nachzügler s3 wird angewendet
+        inbox(stamped[2]);
+        svc.pollOnce();
+        Mockito.verify(adapter, Mockito.times(4)).execute(Mockito.any(), Mockito.anyMap());
+        assertThat(tracker.openGaps()).isEmpty();
+        assertThat(tracker.gapCount()).isEqualTo(1);
+
+        // Keine processed-Marker für sequenzierte Envelopes
+        try (ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM processed_message")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isZero();
+        }
+    }
+
+    private static void inbox(SyncEnvelope... envelopes) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO INBOX(envelope_json) VALUES (?)")) {
+            for (SyncEnvelope env : envelopes) {
+                ps.setString(1, EnvelopeJson.toCanonicalJson(env));
+                ps.executeUpdate();
+            }
+        }
+    }
+}
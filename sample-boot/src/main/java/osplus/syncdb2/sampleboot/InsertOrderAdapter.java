@@ -6,6 +6,7 @@ import osplus.syncdb2.core.exec.SqljAdapter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,4 +34,15 @@ public class InsertOrderAdapter implements SqljAdapter<Integer> {
             return ps.executeUpdate();
         }
     }
+
+    @Override
+    public void executeBatch(Connection connection, List<Map<String, Object>> paramsList) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO ORDERS(note) VALUES (?)")) {
+            for (Map<String, Object> params : paramsList) {
+                ps.setString(1, String.valueOf(params.getOrDefault("note", "n/a")));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
 }
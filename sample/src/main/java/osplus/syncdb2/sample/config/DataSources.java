@@ -12,7 +12,8 @@ import java.sql.Statement;
  * Zweck
  * -----
  * Stellt H2-DataSources für Primary und Secondary bereit und initialisiert
- * die Tabellen OUTBOX, INBOX und processed_message. Dieses Setup dient ausschließlich
+ * die Tabellen OUTBOX, INBOX, processed_message, processed_watermark, parked_message
+ * sowie outbox_sequence/partition_watermark (Sequenzmodell). Dieses Setup dient ausschließlich
  * dem **Sample/Beispielbetrieb** (nicht für Produktion).
  */
 public final class DataSources {
@@ -39,6 +40,10 @@ public final class DataSources {
             st.execute("CREATE TABLE IF NOT EXISTS OUTBOX (id IDENTITY PRIMARY KEY, envelope_json CLOB, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
             st.execute("CREATE TABLE IF NOT EXISTS INBOX  (id IDENTITY PRIMARY KEY, envelope_json CLOB, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
             st.execute("CREATE TABLE IF NOT EXISTS processed_message (message_id VARCHAR(128) PRIMARY KEY, processed_at TIMESTAMP)");
+            st.execute("CREATE TABLE IF NOT EXISTS processed_watermark (name VARCHAR(64) PRIMARY KEY, watermark TIMESTAMP)");
+            st.execute("CREATE TABLE IF NOT EXISTS outbox_sequence (partition_key VARCHAR(128) PRIMARY KEY, last_sequence BIGINT)");
+            st.execute("CREATE TABLE IF NOT EXISTS partition_watermark (partition_key VARCHAR(128) PRIMARY KEY, last_sequence BIGINT, updated_at TIMESTAMP)");
+            st.execute("CREATE TABLE IF NOT EXISTS parked_message (message_id VARCHAR(128) PRIMARY KEY, envelope_json CLOB, attempts INT, next_attempt_at TIMESTAMP, state VARCHAR(8), last_error VARCHAR(1024), parked_at TIMESTAMP)");
         }
     }
 }
@@ -0,0 +1,136 @@
+package osplus.syncdb2.spring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.OutboxDepthProbe;
+import osplus.syncdb2.core.exec.ProcessedMessageCache;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
+import osplus.syncdb2.core.exec.SecondaryConnectionPool;
+import osplus.syncdb2.core.exec.SequenceTracker;
+
+import java.time.Duration;
+
+/**
+ * Zweck
+ * -----
+ * Micrometer-Implementierung von {@link ReplicationMetrics}. Registriert Zähler, Timer und Gauges
+ * unter dem Präfix `syncdb2.`:
+ * <p>
+ * Metriken
+ * --------
+ * - `syncdb2.envelopes.sent` / `.applied` / `.duplicates` / `.conflated` / `.failed` (Counter; Raten im Backend)
+ * - `syncdb2.replication.lag` (Timer: createdAt bis Commit auf Secondary)
+ * - `syncdb2.read.batch.size` (DistributionSummary), `syncdb2.read.duration` (Timer)
+ * - `syncdb2.outbox.depth` (Gauge, mit {@link #bindOutboxDepth})
+ * - `syncdb2.read.batch.limit` (Gauge, mit {@link #bindBatchSize})
+ * - `syncdb2.pool.*`, `syncdb2.cache.*`, `syncdb2.sequence.gaps` (mit den jeweiligen bind-Methoden)
+ * <p>
+ * Hinweise
+ * --------
+ * - Wird von der Auto-Konfiguration angelegt, sobald eine {@link MeterRegistry} vorhanden ist.
+ * Selbst erzeugte Receiver erhalten die Instanz über
+ * {@link osplus.syncdb2.core.config.ReplayOptions#setMetrics}.
+ */
+public class MicrometerReplicationMetrics implements ReplicationMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter sent;
+    private final Counter applied;
+    private final Counter duplicates;
+    private final Counter conflated;
+    private final Counter failed;
+    private final Timer lag;
+    private final DistributionSummary batchSize;
+    private final Timer readDuration;
+
+    public MicrometerReplicationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.sent = Counter.builder("syncdb2.envelopes.sent")
+                .description("Per SEND_TO_MQ übergebene Envelopes").register(registry);
+        this.applied = Counter.builder("syncdb2.envelopes.applied")
+                .description("Auf Secondary angewendete und committete Envelopes").register(registry);
+        this.duplicates = Counter.builder("syncdb2.envelopes.duplicates")
+                .description("Als Duplikat übersprungene Envelopes").register(registry);
+        this.conflated = Counter.builder("syncdb2.envelopes.conflated")
+                .description("Per Konfliktschlüssel überholte, nicht ausgeführte Envelopes").register(registry);
+        this.failed = Counter.builder("syncdb2.envelopes.failed")
+                .description("Endgültig fehlgeschlagene Envelopes").register(registry);
+        this.lag = Timer.builder("syncdb2.replication.lag")
+                .description("Verzögerung von createdAt bis Commit auf Secondary")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        this.batchSize = DistributionSummary.builder("syncdb2.read.batch.size")
+                .description("Envelopes je READ_FROM_MQ").baseUnit("envelopes").register(registry);
+        this.readDuration = Timer.builder("syncdb2.read.duration")
+                .description("Dauer eines READ_FROM_MQ-Aufrufs").register(registry);
+    }
+
+    @Override
+    public void envelopeSent() {
+        sent.increment();
+    }
+
+    @Override
+    public void batchRead(int size, Duration duration) {
+        batchSize.record(size);
+        readDuration.record(duration);
+    }
+
+    @Override
+    public void envelopesApplied(int count) {
+        applied.increment(count);
+    }
+
+    @Override
+    public void replicationLag(Duration lag) {
+        if (!lag.isNegative()) this.lag.record(lag);
+    }
+
+    @Override
+    public void duplicatesSkipped(int count) {
+        duplicates.increment(count);
+    }
+
+    @Override
+    public void envelopesConflated(int count) {
+        conflated.increment(count);
+    }
+
+    @Override
+    public void envelopeFailed() {
+        failed.increment();
+    }
+
+    public void bindOutboxDepth(OutboxDepthProbe probe) {
+        Gauge.builder("syncdb2.outbox.depth", probe, OutboxDepthProbe::currentDepth)
+                .description("Noch nicht replizierte Envelopes").register(registry);
+    }
+
+    public void bindPool(SecondaryConnectionPool pool) {
+        Gauge.builder("syncdb2.pool.active", pool, p -> p.stats().active()).register(registry);
+        Gauge.builder("syncdb2.pool.idle", pool, p -> p.stats().idle()).register(registry);
+        Gauge.builder("syncdb2.pool.saturation", pool, p -> p.stats().saturation()).register(registry);
+        FunctionCounter.builder("syncdb2.pool.timeouts", pool, p -> p.stats().timeouts()).register(registry);
+    }
+
+    public void bindCache(ProcessedMessageCache cache) {
+        Gauge.builder("syncdb2.cache.size", cache, ProcessedMessageCache::size).register(registry);
+        FunctionCounter.builder("syncdb2.cache.hits", cache, ProcessedMessageCache::hitCount).register(registry);
+        FunctionCounter.builder("syncdb2.cache.bloom.negatives", cache, ProcessedMessageCache::bloomNegativeCount)
+                .register(registry);
+    }
+
+    public void bindBatchSize(AdaptiveBatchSize batchSize) {
+        Gauge.builder("syncdb2.read.batch.limit", batchSize, AdaptiveBatchSize::current)
+                .description("Aktuelles READ_FROM_MQ-Limit des AIMD-Reglers").register(registry);
+    }
+
+    public void bindSequenceTracker(SequenceTracker tracker) {
+        FunctionCounter.builder("syncdb2.sequence.gaps", tracker, SequenceTracker::gapCount).register(registry);
+        Gauge.builder("syncdb2.sequence.gaps.open", tracker, t -> t.openGaps().size()).register(registry);
+    }
+}
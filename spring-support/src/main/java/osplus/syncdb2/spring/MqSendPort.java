@@ -4,6 +4,7 @@ import osplus.syncdb2.core.domain.SyncEnvelope;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Zweck
@@ -20,4 +21,14 @@ import java.sql.SQLException;
  */
 public interface MqSendPort {
     void sendWithinTx(Connection connection, SyncEnvelope envelope) throws SQLException;
+
+    /**
+     * Sendet alle Envelopes einer Transaktion in einem Aufruf (von {@link SpringTxOutbox} vor dem Commit
+     * genutzt). Default: {@link #sendWithinTx} je Envelope.
+     */
+    default void sendAllWithinTx(Connection connection, List<SyncEnvelope> envelopes) throws SQLException {
+        for (SyncEnvelope envelope : envelopes) {
+            sendWithinTx(connection, envelope);
+        }
+    }
 }
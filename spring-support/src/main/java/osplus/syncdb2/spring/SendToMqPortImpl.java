@@ -1,11 +1,16 @@
 package osplus.syncdb2.spring;
 
 import osplus.syncdb2.core.domain.SyncEnvelope;
+import osplus.syncdb2.core.exec.PartitionSequencer;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
 import osplus.syncdb2.core.exec.SendToMqRepository;
-import osplus.syncdb2.core.util.EnvelopeJson;
+import osplus.syncdb2.core.util.EnvelopeCodec;
+import osplus.syncdb2.core.util.JsonEnvelopeCodec;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Zweck
@@ -15,22 +20,59 @@ import java.sql.SQLException;
  * <p>
  * Details
  * -------
- * - Serialisiert das Envelope mit {@code EnvelopeJson} (kanonische, stabile
- * Darstellung) und ruft das Repository mit der **transaktionalen Connection**
- * auf.
+ * - Serialisiert das Envelope mit einem {@link EnvelopeCodec} (Default: kanonisches JSON)
+ * und ruft das Repository mit der **transaktionalen Connection** auf.
  * - Statusprüfung und Fehlerbehandlung sind Aufgabe des Repositories/Service.
+ * - Optional stempelt ein {@link PartitionSequencer} Partition und Sequenz auf derselben Connection.
+ * - {@link #sendAllWithinTx} übergibt alle Envelopes in einem Aufruf
+ * ({@link SendToMqRepository#callSendToMqBatch}).
  */
 public class SendToMqPortImpl implements MqSendPort {
 
     private final SendToMqRepository repository;
+    private final PartitionSequencer sequencer;
+    private final ReplicationMetrics metrics;
+    private final EnvelopeCodec codec;
 
     public SendToMqPortImpl(SendToMqRepository repository) {
+        this(repository, null);
+    }
+
+    public SendToMqPortImpl(SendToMqRepository repository, PartitionSequencer sequencer) {
+        this(repository, sequencer, ReplicationMetrics.NOOP);
+    }
+
+    public SendToMqPortImpl(SendToMqRepository repository, PartitionSequencer sequencer, ReplicationMetrics metrics) {
+        this(repository, sequencer, metrics, new JsonEnvelopeCodec());
+    }
+
+    public SendToMqPortImpl(SendToMqRepository repository, PartitionSequencer sequencer, ReplicationMetrics metrics,
+                            EnvelopeCodec codec) {
         this.repository = repository;
+        this.sequencer = sequencer;
+        this.metrics = metrics;
+        this.codec = codec;
     }
 
     @Override
     public void sendWithinTx(Connection connection, SyncEnvelope envelope) throws SQLException {
-        String json = EnvelopeJson.toCanonicalJson(envelope);
+        SyncEnvelope stamped = sequencer != null ? sequencer.stamp(connection, envelope) : envelope;
+        String json = codec.encode(stamped);
         repository.callSendToMq(connection, json);
+        metrics.envelopeSent();
+    }
+
+    @Override
+    public void sendAllWithinTx(Connection connection, List<SyncEnvelope> envelopes) throws SQLException {
+        if (envelopes.isEmpty()) return;
+        List<String> jsons = new ArrayList<>(envelopes.size());
+        for (SyncEnvelope envelope : envelopes) {
+            SyncEnvelope stamped = sequencer != null ? sequencer.stamp(connection, envelope) : envelope;
+            jsons.add(codec.encode(stamped));
+        }
+        repository.callSendToMqBatch(connection, jsons);
+        for (int i = 0; i < envelopes.size(); i++) {
+            metrics.envelopeSent();
+        }
     }
 }
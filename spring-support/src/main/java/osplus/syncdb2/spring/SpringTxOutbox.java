@@ -17,7 +17,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * **Transaktionsgebundener Outbox-Puffer** für {@link SyncEnvelope}-Nachrichten
  * in Spring-Transaktionen. Envelopes werden während der Geschäftslogik
  * gesammelt und **unmittelbar vor Commit** (d. h. innerhalb derselben
- * DB-Transaktion) versendet.
+ * DB-Transaktion) versendet – gesammelt in **einem** Aufruf ({@link MqSendPort#sendAllWithinTx}).
  * <p>
  * Anwendungsfälle
  * ---------------
@@ -117,8 +117,9 @@ public final class SpringTxOutbox {
             Connection c = DataSourceUtils.getConnection(ds); // selbe TX-gebundene Connection
             try {
                 List<SyncEnvelope> envelopes = TX_BUFFER.get().getOrDefault(ds, List.of());
-                for (SyncEnvelope e : envelopes) {
-                    port.sendWithinTx(c, e);
+                if (!envelopes.isEmpty()) {
+                    // Ein Aufruf für alle Envelopes der Transaktion
+                    port.sendAllWithinTx(c, List.copyOf(envelopes));
                 }
             } catch (SQLException ex) {
                 throw new RuntimeException("Outbox-Sendung vor Commit fehlgeschlagen", ex);
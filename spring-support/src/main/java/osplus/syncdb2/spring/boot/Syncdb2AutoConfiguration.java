@@ -1,22 +1,45 @@
 package osplus.syncdb2.spring.boot;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+import osplus.syncdb2.core.exec.JdbcOutboxDepthProbe;
+import osplus.syncdb2.core.exec.MqReceiveService;
+import osplus.syncdb2.core.exec.OutboxDepthProbe;
+import osplus.syncdb2.core.exec.ProcessedMessageCache;
+import osplus.syncdb2.core.exec.ReplicationMetrics;
+import osplus.syncdb2.core.exec.SecondaryConnectionPool;
 import osplus.syncdb2.core.exec.SendToMqRepository;
 import osplus.syncdb2.core.exec.SqljAdapter;
+import osplus.syncdb2.core.exec.SequenceTracker;
 import osplus.syncdb2.core.exec.SqljRegistry;
+import osplus.syncdb2.core.exec.impl.ContinuousMqReceiver;
 import osplus.syncdb2.core.exec.impl.InMemorySqljRegistry;
+import osplus.syncdb2.core.util.ContentHashMessageIdStrategy;
+import osplus.syncdb2.core.util.EnvelopeCodec;
+import osplus.syncdb2.core.util.EnvelopeFactory;
+import osplus.syncdb2.core.util.MessageIdStrategy;
+import osplus.syncdb2.core.util.TimeOrderedMessageIdStrategy;
+import osplus.syncdb2.core.util.TimePrefixedHashMessageIdStrategy;
+import osplus.syncdb2.spring.MicrometerReplicationMetrics;
 import osplus.syncdb2.spring.MqSendPort;
 import osplus.syncdb2.spring.SendToMqPortImpl;
 import osplus.syncdb2.spring.SpringTxOutbox;
 
 import javax.sql.DataSource;
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -33,8 +56,23 @@ import java.util.Map;
  * vom Anwender überschrieben werden.
  * - Registry wird automatisch mit allen vorhandenen SqljAdapter-Beans
  * aus dem ApplicationContext befüllt.
+ * - Mit `syncdb2.mq.read.mode=continuous` und einem vorhandenen {@link MqReceiveService}
+ * wird ein {@link ContinuousMqReceiver} gestartet (Drain-Modus statt fixed-delay).
+ * - Mit `syncdb2.mq.read.adaptive-batch=true` wird ein {@link AdaptiveBatchSize}-Regler bereitgestellt
+ * (`batch-size` als Startwert, `batch-size-min`/`-max`, `target-apply-micros`); der
+ * {@link ContinuousMqReceiver} nutzt dessen aktuelles Limit.
+ * - Ist Micrometer vorhanden und eine MeterRegistry registriert, wird {@link MicrometerReplicationMetrics}
+ * als {@link ReplicationMetrics} bereitgestellt und an vorhandene {@link OutboxDepthProbe}-,
+ * {@link SecondaryConnectionPool}-, {@link ProcessedMessageCache}-, {@link SequenceTracker}- und
+ * {@link AdaptiveBatchSize}-Beans gebunden.
+ * - Mit `syncdb2.mq.send.outbox-depth-table` wird ein {@link JdbcOutboxDepthProbe} über der
+ * Primary-DataSource bereitgestellt (Metrik `syncdb2.outbox.depth`).
+ * - `syncdb2.message-id.strategy` (`content-hash`, `time-ordered`, `time-prefixed-hash` mit `bucket` in ms)
+ * wählt die {@link MessageIdStrategy}; sie wird als Default in {@link EnvelopeFactory} gesetzt.
+ * - `syncdb2.mq.send.format` (derzeit nur `json`) wählt den {@link EnvelopeCodec} des {@link MqSendPort}.
  */
-@AutoConfiguration(after = DataSourceAutoConfiguration.class)
+@AutoConfiguration(after = DataSourceAutoConfiguration.class,
+        afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableConfigurationProperties(Syncdb2Properties.class)
 @ConditionalOnClass({DataSource.class, SpringTxOutbox.class})
 public class Syncdb2AutoConfiguration {
@@ -50,17 +88,99 @@ public class Syncdb2AutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean(MqSendPort.class)
-    public MqSendPort mqSendPort(SendToMqRepository repo) {
-        return new SendToMqPortImpl(repo);
+    public MqSendPort mqSendPort(SendToMqRepository repo, ObjectProvider<ReplicationMetrics> metrics,
+                                 Syncdb2Properties props) {
+        return new SendToMqPortImpl(repo, null, metrics.getIfAvailable(() -> ReplicationMetrics.NOOP),
+                EnvelopeCodec.forName(props.getMq().getSend().getFormat()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(MessageIdStrategy.class)
+    public MessageIdStrategy messageIdStrategy(Syncdb2Properties props) {
+        Syncdb2Properties.MessageId cfg = props.getMessageId();
+        return switch (cfg.getStrategy()) {
+            case "content-hash" -> new ContentHashMessageIdStrategy();
+            case "time-ordered" -> new TimeOrderedMessageIdStrategy();
+            case "time-prefixed-hash" -> new TimePrefixedHashMessageIdStrategy(Duration.ofMillis(cfg.getBucket()));
+            default -> throw new IllegalArgumentException(
+                    "Unbekannte syncdb2.message-id.strategy: " + cfg.getStrategy());
+        };
+    }
+
+    /**
+     * Outbox-Tiefe per COUNT(*) über die konfigurierte Tabelle/View der Primary-DataSource.
+     */
+    @Bean
+    @ConditionalOnSingleCandidate(DataSource.class)
+    @ConditionalOnProperty(prefix = "syncdb2.mq.send", name = "outbox-depth-table")
+    @ConditionalOnMissingBean(OutboxDepthProbe.class)
+    public OutboxDepthProbe outboxDepthProbe(DataSource dataSource, Syncdb2Properties props) {
+        return new JdbcOutboxDepthProbe(dataSource, props.getMq().getSend().getOutboxDepthTable());
+    }
+
+    /**
+     * AIMD-Regler für die Batch-Größe; muss in die {@code ReplayOptions} des Receivers übernommen werden.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "syncdb2.mq.read", name = "adaptive-batch", havingValue = "true")
+    @ConditionalOnMissingBean(AdaptiveBatchSize.class)
+    public AdaptiveBatchSize adaptiveBatchSize(Syncdb2Properties props) {
+        Syncdb2Properties.Mq.Read read = props.getMq().getRead();
+        return new AdaptiveBatchSize(read.getBatchSizeMin(), read.getBatchSizeMax(), read.getBatchSize(),
+                Duration.ofNanos(read.getTargetApplyMicros() * 1000));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnBean(MqReceiveService.class)
+    @ConditionalOnProperty(prefix = "syncdb2.mq.read", name = "mode", havingValue = "continuous")
+    @ConditionalOnMissingBean(ContinuousMqReceiver.class)
+    public ContinuousMqReceiver continuousMqReceiver(MqReceiveService receiveService, Syncdb2Properties props,
+                                                     ObjectProvider<AdaptiveBatchSize> adaptive) {
+        Syncdb2Properties.Mq.Read read = props.getMq().getRead();
+        Duration backoffMin = Duration.ofMillis(read.getBackoffMin());
+        Duration backoffMax = Duration.ofMillis(read.getBackoffMax());
+        Duration drainTimeout = Duration.ofMillis(read.getDrainTimeout());
+        AdaptiveBatchSize batchSize = adaptive.getIfAvailable();
+        if (batchSize != null) {
+            return new ContinuousMqReceiver(receiveService, batchSize, backoffMin, backoffMax, drainTimeout);
+        }
+        return new ContinuousMqReceiver(receiveService, read.getBatchSize(), backoffMin, backoffMax, drainTimeout);
+    }
+
+    /**
+     * Micrometer-Anbindung; nur aktiv, wenn Micrometer auf dem Klassenpfad liegt.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean(ReplicationMetrics.class)
+        public MicrometerReplicationMetrics replicationMetrics(MeterRegistry registry,
+                                                               ObjectProvider<OutboxDepthProbe> outboxDepth,
+                                                               ObjectProvider<SecondaryConnectionPool> pools,
+                                                               ObjectProvider<ProcessedMessageCache> caches,
+                                                               ObjectProvider<SequenceTracker> trackers,
+                                                               ObjectProvider<AdaptiveBatchSize> batchSizes) {
+            MicrometerReplicationMetrics metrics = new MicrometerReplicationMetrics(registry);
+            outboxDepth.ifAvailable(metrics::bindOutboxDepth);
+            pools.ifAvailable(metrics::bindPool);
+            caches.ifAvailable(metrics::bindCache);
+            trackers.ifAvailable(metrics::bindSequenceTracker);
+            batchSizes.ifAvailable(metrics::bindBatchSize);
+            return metrics;
+        }
     }
 
     /**
-     * Setzt Default-DS/Port für SpringTxOutbox, falls vorhanden.
+     * Setzt Default-DS/Port für SpringTxOutbox und die MessageIdStrategy für EnvelopeFactory, falls vorhanden.
      * Wird nach Erstellung der abhängigen Beans ausgeführt.
      */
     @Bean
     @DependsOn({"mqSendPort"})
     public Object syncdb2DefaultsInitializer(ApplicationContext ctx) {
+        ctx.getBeanProvider(MessageIdStrategy.class).ifAvailable(EnvelopeFactory::setDefaultStrategy);
         try {
             DataSource ds = ctx.getBean(DataSource.class); // Primary DataSource
             MqSendPort port = ctx.getBean(MqSendPort.class);
@@ -21,10 +21,17 @@ public class Syncdb2Properties {
     @NestedConfigurationProperty
     private final Logging logging = new Logging();
 
+    @NestedConfigurationProperty
+    private final MessageId messageId = new MessageId();
+
     public Mq getMq() {
         return mq;
     }
 
+    public MessageId getMessageId() {
+        return messageId;
+    }
+
     public Logging getLogging() {
         return logging;
     }
@@ -49,6 +56,17 @@ public class Syncdb2Properties {
              */
             private String procedureName = "SEND_TO_MQ";
 
+            /**
+             * Wire-Format der Nutzlast ({@code EnvelopeCodec.forName}); derzeit nur json.
+             */
+            private String format = "json";
+
+            /**
+             * Outbox-Tabelle oder View für die Metrik {@code syncdb2.outbox.depth} (COUNT(*) auf der
+             * Primary-DataSource); leer = keine Messung.
+             */
+            private String outboxDepthTable;
+
             public String getProcedureName() {
                 return procedureName;
             }
@@ -56,6 +74,22 @@ public class Syncdb2Properties {
             public void setProcedureName(String procedureName) {
                 this.procedureName = procedureName;
             }
+
+            public String getFormat() {
+                return format;
+            }
+
+            public void setFormat(String format) {
+                this.format = format;
+            }
+
+            public String getOutboxDepthTable() {
+                return outboxDepthTable;
+            }
+
+            public void setOutboxDepthTable(String outboxDepthTable) {
+                this.outboxDepthTable = outboxDepthTable;
+            }
         }
 
         public static class Read {
@@ -71,6 +105,39 @@ public class Syncdb2Properties {
              * Poll-Intervall in Millisekunden.
              */
             private long fixedDelay = 2000L;
+            /**
+             * Poll-Modus: {@code fixed-delay} (Scheduler der Anwendung ruft pollOnce) oder
+             * {@code continuous} (Drain-Modus mit adaptivem Backoff).
+             */
+            private String mode = "fixed-delay";
+            /**
+             * Continuous-Modus: minimale Wartezeit in Millisekunden (nach kurzem Batch).
+             */
+            private long backoffMin = 50L;
+            /**
+             * Continuous-Modus: maximale Wartezeit in Millisekunden (bei leerer Queue).
+             */
+            private long backoffMax = 2000L;
+            /**
+             * Continuous-Modus: maximale Drain-Dauer beim Herunterfahren in Millisekunden.
+             */
+            private long drainTimeout = 30000L;
+            /**
+             * Adaptive Batch-Größe (AIMD) statt fester {@code batch-size} (dient dann als Startwert).
+             */
+            private boolean adaptiveBatch = false;
+            /**
+             * Adaptive Batch-Größe: Untergrenze.
+             */
+            private int batchSizeMin = 10;
+            /**
+             * Adaptive Batch-Größe: Obergrenze.
+             */
+            private int batchSizeMax = 1000;
+            /**
+             * Adaptive Batch-Größe: Ziel-Anwendungsdauer je Envelope in Mikrosekunden.
+             */
+            private long targetApplyMicros = 5000L;
 
             public String getProcedureName() {
                 return procedureName;
@@ -95,6 +162,98 @@ public class Syncdb2Properties {
             public void setFixedDelay(long fixedDelay) {
                 this.fixedDelay = fixedDelay;
             }
+
+            public String getMode() {
+                return mode;
+            }
+
+            public void setMode(String mode) {
+                this.mode = mode;
+            }
+
+            public long getBackoffMin() {
+                return backoffMin;
+            }
+
+            public void setBackoffMin(long backoffMin) {
+                this.backoffMin = backoffMin;
+            }
+
+            public long getBackoffMax() {
+                return backoffMax;
+            }
+
+            public void setBackoffMax(long backoffMax) {
+                this.backoffMax = backoffMax;
+            }
+
+            public long getDrainTimeout() {
+                return drainTimeout;
+            }
+
+            public void setDrainTimeout(long drainTimeout) {
+                this.drainTimeout = drainTimeout;
+            }
+
+            public boolean isAdaptiveBatch() {
+                return adaptiveBatch;
+            }
+
+            public void setAdaptiveBatch(boolean adaptiveBatch) {
+                this.adaptiveBatch = adaptiveBatch;
+            }
+
+            public int getBatchSizeMin() {
+                return batchSizeMin;
+            }
+
+            public void setBatchSizeMin(int batchSizeMin) {
+                this.batchSizeMin = batchSizeMin;
+            }
+
+            public int getBatchSizeMax() {
+                return batchSizeMax;
+            }
+
+            public void setBatchSizeMax(int batchSizeMax) {
+                this.batchSizeMax = batchSizeMax;
+            }
+
+            public long getTargetApplyMicros() {
+                return targetApplyMicros;
+            }
+
+            public void setTargetApplyMicros(long targetApplyMicros) {
+                this.targetApplyMicros = targetApplyMicros;
+            }
+        }
+    }
+
+    public static class MessageId {
+        /**
+         * Bildung der messageId: content-hash (Default), time-ordered oder time-prefixed-hash.
+         */
+        private String strategy = "content-hash";
+
+        /**
+         * Zeitfenster in ms für time-prefixed-hash.
+         */
+        private long bucket = 60_000;
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(String strategy) {
+            this.strategy = strategy;
+        }
+
+        public long getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(long bucket) {
+            this.bucket = bucket;
         }
     }
 
@@ -0,0 +1,49 @@
+package osplus.syncdb2.spring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import osplus.syncdb2.core.exec.AdaptiveBatchSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Zweck
+ * -----
+ * Unit-Tests für {@link MicrometerReplicationMetrics}: Messpunkte landen in den erwarteten Metern.
+ */
+public class MicrometerReplicationMetricsTest {
+
+    @Test
+    @DisplayName("Zähler, Timer und Outbox-Gauge werden unter syncdb2.* registriert")
+    void recordsIntoRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerReplicationMetrics metrics = new MicrometerReplicationMetrics(registry);
+        metrics.bindOutboxDepth(() -> 7L);
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(10, 100, 40, Duration.ofMillis(5));
+        metrics.bindBatchSize(batchSize); // Gauge hält nur eine schwache Referenz
+
+        metrics.envelopeSent();
+        metrics.batchRead(3, Duration.ofMillis(20));
+        metrics.envelopesApplied(3);
+        metrics.replicationLag(Duration.ofMillis(150));
+        metrics.replicationLag(Duration.ofMillis(-5)); // Uhrenabweichung: verworfen
+        metrics.duplicatesSkipped(2);
+        metrics.envelopesConflated(4);
+        metrics.envelopeFailed();
+
+        assertThat(registry.get("syncdb2.envelopes.sent").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("syncdb2.envelopes.applied").counter().count()).isEqualTo(3.0);
+        assertThat(registry.get("syncdb2.envelopes.duplicates").counter().count()).isEqualTo(2.0);
+        assertThat(registry.get("syncdb2.envelopes.conflated").counter().count()).isEqualTo(4.0);
+        assertThat(registry.get("syncdb2.envelopes.failed").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("syncdb2.read.batch.size").summary().totalAmount()).isEqualTo(3.0);
+        assertThat(registry.get("syncdb2.replication.lag").timer().count()).isEqualTo(1);
+        assertThat(registry.get("syncdb2.replication.lag").timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(150.0);
+        assertThat(registry.get("syncdb2.outbox.depth").gauge().value()).isEqualTo(7.0);
+        assertThat(registry.get("syncdb2.read.batch.limit").gauge().value()).isEqualTo(batchSize.current());
+    }
+}
@@ -9,6 +9,7 @@ import osplus.syncdb2.core.exec.SendToMqRepository;
 
 import java.sql.Connection;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -16,7 +17,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 /**
  * Zweck
  * -----
- * Unit-Tests für {@link SendToMqPortImpl}: Erfolg und Fehlerpfad (status != 0).
+ * Unit-Tests für {@link SendToMqPortImpl}: Erfolg und Fehlerpfad (status != 0), Batch-Aufruf.
  */
 public class SendToMqPortImplTest {
 
@@ -50,4 +51,22 @@ public class SendToMqPortImplTest {
 //                .isInstanceOf(MqSendException.class)
 //                .hasMessageContaining("status=99");
     }
+
+    @Test
+    @DisplayName("sendAllWithinTx: ein Batch-Aufruf für alle Envelopes der Transaktion")
+    void sendAll_batch() throws Exception {
+        SendToMqRepository repo = Mockito.mock(SendToMqRepository.class);
+        Mockito.when(repo.callSendToMqBatch(Mockito.any(), Mockito.anyList()))
+                .thenReturn(new SendToMqRepository.Result(0, null));
+
+        SendToMqPortImpl port = new SendToMqPortImpl(repo);
+        Connection c = Mockito.mock(Connection.class);
+        SyncEnvelope e1 = new SyncEnvelope("m1", "C", "M", Map.of(), null, null, "v1", "corr", Instant.now());
+        SyncEnvelope e2 = new SyncEnvelope("m2", "C", "M", Map.of(), null, null, "v1", "corr", Instant.now());
+
+        port.sendAllWithinTx(c, List.of(e1, e2));
+        Mockito.verify(repo, Mockito.times(1)).callSendToMqBatch(Mockito.eq(c),
+                Mockito.argThat((List<String> jsons) -> jsons.size() == 2));
+        Mockito.verify(repo, Mockito.never()).callSendToMq(Mockito.any(), Mockito.anyString());
+    }
 }